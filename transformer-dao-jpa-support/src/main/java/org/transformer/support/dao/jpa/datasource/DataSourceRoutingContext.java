@@ -0,0 +1,130 @@
+package org.transformer.support.dao.jpa.datasource;
+
+/**
+ * 当前线程的数据源路由状态：是否处于只读调用中、最近一次写主库的时间.
+ * web请求结束时需要调用{@link #clear()}.
+ *
+ */
+public final class DataSourceRoutingContext {
+
+  /** 只读调用的嵌套层数. */
+  private static final ThreadLocal<int[]> READ_ONLY_DEPTH = new ThreadLocal<int[]>() {
+    @Override
+    protected int[] initialValue() {
+      return new int[1];
+    }
+  };
+
+  /** 最近一次写主库的时间. */
+  private static final ThreadLocal<Long> LAST_WRITE_TIME = new ThreadLocal<Long>();
+
+  /**
+   * Instantiates a new data source routing context.
+   */
+  private DataSourceRoutingContext() {
+  }
+
+  /**
+   * 进入只读调用.
+   */
+  public static void enterReadOnly() {
+    READ_ONLY_DEPTH.get()[0]++;
+  }
+
+  /**
+   * 退出只读调用.
+   */
+  public static void exitReadOnly() {
+    int[] depth = READ_ONLY_DEPTH.get();
+    if (depth[0] > 0) {
+      depth[0]--;
+    }
+  }
+
+  /**
+   * 当前线程是否处于只读调用中.
+   *
+   * @return true, if is read only
+   */
+  public static boolean isReadOnly() {
+    return READ_ONLY_DEPTH.get()[0] > 0;
+  }
+
+  /**
+   * 记录当前线程写了主库.
+   */
+  public static void markWrite() {
+    LAST_WRITE_TIME.set(System.currentTimeMillis());
+  }
+
+  /**
+   * 当前线程是否在stickyWindow毫秒内写过主库，是则读也应使用主库(read-your-writes).
+   *
+   * @param stickyWindow
+   *            粘滞时间(毫秒)，小于0表示直到clear
+   * @return true, if is sticky to primary
+   */
+  public static boolean isStickyToPrimary(long stickyWindow) {
+    Long lastWriteTime = LAST_WRITE_TIME.get();
+    if (lastWriteTime == null) {
+      return false;
+    }
+    return stickyWindow < 0 || System.currentTimeMillis() - lastWriteTime < stickyWindow;
+  }
+
+  /**
+   * 清除当前线程的路由状态.
+   */
+  public static void clear() {
+    READ_ONLY_DEPTH.remove();
+    LAST_WRITE_TIME.remove();
+  }
+
+  /**
+   * 当前线程路由状态的快照，在其他线程(如并行查询的线程)中沿用调用线程的路由.
+   *
+   * @return the snapshot
+   */
+  public static Snapshot snapshot() {
+    return new Snapshot(isReadOnly(), LAST_WRITE_TIME.get());
+  }
+
+  /**
+   * 路由状态的快照.
+   */
+  public static final class Snapshot {
+
+    /** 是否处于只读调用中. */
+    private final boolean readOnly;
+
+    /** 最近一次写主库的时间. */
+    private final Long lastWriteTime;
+
+    /**
+     * Instantiates a new snapshot.
+     *
+     * @param readOnly
+     *            the read only
+     * @param lastWriteTime
+     *            the last write time
+     */
+    private Snapshot(boolean readOnly, Long lastWriteTime) {
+      this.readOnly = readOnly;
+      this.lastWriteTime = lastWriteTime;
+    }
+
+    /**
+     * 在当前线程恢复快照的路由状态，用完后需要调用{@link DataSourceRoutingContext#clear()}.
+     */
+    public void restore() {
+      clear();
+      if (readOnly) {
+        enterReadOnly();
+      }
+      if (lastWriteTime != null) {
+        LAST_WRITE_TIME.set(lastWriteTime);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,50 @@
+package org.transformer.support.dao.jpa.datasource;
+
+import org.aopalliance.aop.Advice;
+import org.springframework.aop.Pointcut;
+import org.springframework.aop.support.AbstractPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.core.Ordered;
+
+import java.lang.reflect.Method;
+
+/**
+ * 为{@link org.transformer.support.dao.jpa.datasource.annotation.ReadOnly}标注的bean方法
+ * (如BaseService的查询方法)织入只读路由，注册为bean即可生效.
+ * 默认优先级最高，在事务拦截器之前执行.
+ *
+ */
+public class ReadOnlyRoutingAdvisor extends AbstractPointcutAdvisor {
+
+  private static final long serialVersionUID = 1L;
+
+  /** The interceptor. */
+  private final ReadOnlyRoutingInterceptor interceptor = new ReadOnlyRoutingInterceptor();
+
+  /** The pointcut. */
+  private final Pointcut pointcut = new StaticMethodMatcherPointcut() {
+    @SuppressWarnings("synthetic-access")
+    @Override
+    public boolean matches(Method method, Class<?> targetClass) {
+      return interceptor.isReadOnly(method, targetClass);
+    }
+  };
+
+  /**
+   * Instantiates a new read only routing advisor.
+   */
+  public ReadOnlyRoutingAdvisor() {
+    setOrder(Ordered.HIGHEST_PRECEDENCE);
+  }
+
+  @Override
+  public Pointcut getPointcut() {
+    return pointcut;
+  }
+
+  @Override
+  public Advice getAdvice() {
+    return interceptor;
+  }
+
+}
@@ -0,0 +1,106 @@
+package org.transformer.support.dao.jpa.datasource;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.transformer.support.dao.jpa.datasource.annotation.ReadOnly;
+
+import java.lang.reflect.Method;
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 在{@link ReadOnly}标注的方法调用期间标记当前线程为只读，
+ * 由{@link ReadWriteRoutingDataSource}路由到从库.
+ *
+ */
+public class ReadOnlyRoutingInterceptor implements MethodInterceptor {
+
+  /** 额外检查的类型(如repository接口)，可为null. */
+  private final Class<?> annotatedType;
+
+  /** 方法(及目标类)是否只读. */
+  private final ConcurrentMap<Map.Entry<Method, Class<?>>, Boolean> readOnlyMethods =
+      new ConcurrentHashMap<Map.Entry<Method, Class<?>>, Boolean>();
+
+  /**
+   * Instantiates a new read only routing interceptor.
+   */
+  public ReadOnlyRoutingInterceptor() {
+    this(null);
+  }
+
+  /**
+   * Instantiates a new read only routing interceptor.
+   *
+   * @param annotatedType
+   *            额外检查的类型(如repository接口)
+   */
+  public ReadOnlyRoutingInterceptor(Class<?> annotatedType) {
+    this.annotatedType = annotatedType;
+  }
+
+  @Override
+  public Object invoke(MethodInvocation invocation) throws Throwable {
+    Object target = invocation.getThis();
+    if (!isReadOnly(invocation.getMethod(), target == null ? null : target.getClass())) {
+      return invocation.proceed();
+    }
+    DataSourceRoutingContext.enterReadOnly();
+    try {
+      return invocation.proceed();
+    } finally {
+      DataSourceRoutingContext.exitReadOnly();
+    }
+  }
+
+  /**
+   * 方法是否标注了只读.
+   *
+   * @param method
+   *            the method
+   * @param targetClass
+   *            the target class
+   * @return true, if is read only
+   */
+  public boolean isReadOnly(Method method, Class<?> targetClass) {
+    Map.Entry<Method, Class<?>> key = new AbstractMap.SimpleImmutableEntry<Method, Class<?>>(
+        method, targetClass);
+    Boolean readOnly = readOnlyMethods.get(key);
+    if (readOnly == null) {
+      Method specificMethod = AopUtils.getMostSpecificMethod(method, targetClass);
+      readOnly = AnnotationUtils.findAnnotation(specificMethod, ReadOnly.class) != null
+          || AnnotationUtils.findAnnotation(method, ReadOnly.class) != null
+          || AnnotationUtils.findAnnotation(method.getDeclaringClass(), ReadOnly.class) != null
+          || (targetClass != null
+              && AnnotationUtils.findAnnotation(targetClass, ReadOnly.class) != null)
+          || (annotatedType != null
+              && AnnotationUtils.findAnnotation(annotatedType, ReadOnly.class) != null);
+      readOnlyMethods.putIfAbsent(key, readOnly);
+    }
+    return readOnly;
+  }
+
+  /**
+   * 类型或其方法是否标注了只读.
+   *
+   * @param type
+   *            the type
+   * @return true, if successful
+   */
+  public static boolean hasReadOnly(Class<?> type) {
+    if (AnnotationUtils.findAnnotation(type, ReadOnly.class) != null) {
+      return true;
+    }
+    for (Method method : type.getMethods()) {
+      if (AnnotationUtils.findAnnotation(method, ReadOnly.class) != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+}
@@ -0,0 +1,154 @@
+package org.transformer.support.dao.jpa.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+/**
+ * 读写分离的路由数据源.
+ * 以下情况路由到从库，其余使用主库：
+ * 1、处于{@link org.transformer.support.dao.jpa.datasource.annotation.ReadOnly}调用中
+ * 或(routeReadOnlyTransactions为true时)只读事务中
+ * 2、当前没有读写事务
+ * 3、当前线程stickyWindow毫秒内没有使用过读写事务(read-your-writes)
+ * 
+ * 事务开始时就会获取连接，此时只读事务的标记还未设置，因此需要用
+ * LazyConnectionDataSourceProxy包装后再交给EntityManagerFactory：
+ * new LazyConnectionDataSourceProxy(routingDataSource).
+ *
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+  /** 主库的key. */
+  public static final String PRIMARY_KEY = "primary";
+
+  /** 从库key的前缀. */
+  public static final String REPLICA_KEY_PREFIX = "replica-";
+
+  /** 默认写后读主库的时间(毫秒). */
+  public static final long DEFAULT_STICKY_WINDOW = 1000;
+
+  /** The primary. */
+  private DataSource primary;
+
+  /** The replicas. */
+  private List<DataSource> replicas = new ArrayList<DataSource>();
+
+  /** 从库选择策略. */
+  private ReplicaSelectionPolicy policy = ReplicaSelectionPolicy.ROUND_ROBIN;
+
+  /** 写后读主库的时间(毫秒)，小于0表示直到DataSourceRoutingContext.clear. */
+  private long stickyWindow = DEFAULT_STICKY_WINDOW;
+
+  /** 只读事务是否路由到从库. */
+  private boolean routeReadOnlyTransactions = false;
+
+  @Override
+  public void afterPropertiesSet() {
+    Assert.notNull(primary, "primary data source is required");
+    Map<Object, Object> targetDataSources = new HashMap<Object, Object>();
+    targetDataSources.put(PRIMARY_KEY, primary);
+    for (int i = 0; i < replicas.size(); i++) {
+      targetDataSources.put(REPLICA_KEY_PREFIX + i, replicas.get(i));
+    }
+    setTargetDataSources(targetDataSources);
+    setDefaultTargetDataSource(primary);
+    super.afterPropertiesSet();
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    boolean transactionActive = TransactionSynchronizationManager.isActualTransactionActive();
+    boolean transactionReadOnly = TransactionSynchronizationManager
+        .isCurrentTransactionReadOnly();
+    if (transactionActive && !transactionReadOnly) {
+      markWrite();
+      return PRIMARY_KEY;
+    }
+
+    boolean readOnly = DataSourceRoutingContext.isReadOnly()
+        || (routeReadOnlyTransactions && transactionActive);
+    if (!readOnly || replicas.isEmpty()
+        || DataSourceRoutingContext.isStickyToPrimary(stickyWindow)) {
+      return PRIMARY_KEY;
+    }
+    return REPLICA_KEY_PREFIX + policy.select(replicas.size());
+  }
+
+  /**
+   * 记录写主库，读写事务结束时再记录一次，粘滞时间从事务结束开始计算.
+   */
+  private static void markWrite() {
+    DataSourceRoutingContext.markWrite();
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+              DataSourceRoutingContext.markWrite();
+            }
+          });
+    }
+  }
+
+  /**
+   * 设置主库.
+   *
+   * @param primary
+   *            the new primary
+   */
+  public void setPrimary(DataSource primary) {
+    this.primary = primary;
+  }
+
+  /**
+   * 设置从库.
+   *
+   * @param replicas
+   *            the new replicas
+   */
+  public void setReplicas(List<DataSource> replicas) {
+    this.replicas = new ArrayList<DataSource>(replicas);
+  }
+
+  /**
+   * 设置从库选择策略，默认轮询.
+   *
+   * @param policy
+   *            the new policy
+   */
+  public void setPolicy(ReplicaSelectionPolicy policy) {
+    Assert.notNull(policy, "policy is required");
+    this.policy = policy;
+  }
+
+  /**
+   * 设置写后读主库的时间(毫秒)，应大于主从复制延迟，小于0表示直到DataSourceRoutingContext.clear.
+   *
+   * @param stickyWindow
+   *            the new sticky window
+   */
+  public void setStickyWindow(long stickyWindow) {
+    this.stickyWindow = stickyWindow;
+  }
+
+  /**
+   * 设置只读事务(@Transactional(readOnly = true))是否路由到从库，默认只路由@ReadOnly调用.
+   * 注意SimpleJpaRepository的查询方法默认都是只读事务.
+   *
+   * @param routeReadOnlyTransactions
+   *            the new route read only transactions
+   */
+  public void setRouteReadOnlyTransactions(boolean routeReadOnlyTransactions) {
+    this.routeReadOnlyTransactions = routeReadOnlyTransactions;
+  }
+
+}
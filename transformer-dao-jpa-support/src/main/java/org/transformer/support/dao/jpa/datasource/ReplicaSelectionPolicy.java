@@ -0,0 +1,41 @@
+package org.transformer.support.dao.jpa.datasource;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 从库选择策略.
+ *
+ */
+public interface ReplicaSelectionPolicy {
+
+  /** 轮询. */
+  public static final ReplicaSelectionPolicy ROUND_ROBIN = new ReplicaSelectionPolicy() {
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public int select(int replicaCount) {
+      return (counter.getAndIncrement() & Integer.MAX_VALUE) % replicaCount;
+    }
+  };
+
+  /** 随机. */
+  public static final ReplicaSelectionPolicy RANDOM = new ReplicaSelectionPolicy() {
+
+    @Override
+    public int select(int replicaCount) {
+      return ThreadLocalRandom.current().nextInt(replicaCount);
+    }
+  };
+
+  /**
+   * 选择从库.
+   *
+   * @param replicaCount
+   *            从库数，大于0
+   * @return 从库下标
+   */
+  public int select(int replicaCount);
+
+}
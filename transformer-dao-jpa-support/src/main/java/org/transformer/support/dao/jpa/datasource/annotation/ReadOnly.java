@@ -0,0 +1,22 @@
+package org.transformer.support.dao.jpa.datasource.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 只读标记，标注的service方法或dao接口方法(标注在类型上时为所有方法)在配置了
+ * {@link org.transformer.support.dao.jpa.datasource.ReadWriteRoutingDataSource}时路由到从库.
+ * 当前线程有读写事务或刚写过主库时仍使用主库.
+ *
+ */
+@Target({ ElementType.METHOD, ElementType.TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+@Documented
+public @interface ReadOnly {
+
+}
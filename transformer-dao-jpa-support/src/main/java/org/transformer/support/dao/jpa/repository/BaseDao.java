@@ -6,10 +6,14 @@ import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.repository.NoRepositoryBean;
+import org.transformer.support.dao.jpa.search.KeysetSlice;
 import org.transformer.support.dao.jpa.search.Searchable;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import javax.persistence.EntityManager;
 
@@ -30,8 +34,53 @@ public interface BaseDao<M, ID extends Serializable> extends JpaRepository<M, ID
    * 
    * @param ids
    *            the ids
+   * @return 删除的记录数
    */
-  public void delete(ID[] ids);
+  public int delete(ID[] ids);
+
+  /**
+   * 批量保存，每batchSize个实体flush并clear一次，配合hibernate.jdbc.batch_size、
+   * hibernate.order_inserts、hibernate.order_updates使用jdbc批处理.
+   * 保存后的实体为游离态，当前持久化上下文中的其他实体也会变为游离态.
+   * 
+   * @param <S>
+   *            the generic type
+   * @param entities
+   *            the entities
+   * @param batchSize
+   *            每批实体数
+   * @return 保存后的实体列表
+   */
+  public <S extends M> List<S> save(Iterable<S> entities, int batchSize);
+
+  /**
+   * 批量保存，与{@link #save(Iterable, int)}相同但不收集保存后的实体，
+   * 内存占用与实体总数无关，用于百万级的大批量导入.
+   * 有更新的实体时提交后失效整个近端缓存.
+   * 
+   * @param <S>
+   *            the generic type
+   * @param entities
+   *            the entities
+   * @param batchSize
+   *            每批实体数
+   * @return 保存的实体数
+   */
+  public <S extends M> long saveAll(Iterable<S> entities, int batchSize);
+
+  /**
+   * 批量插入或更新(主键冲突时更新)，每upsertBatchSize个实体一条多行语句，
+   * mysql使用insert ... on duplicate key update，h2使用merge.
+   * 不经过持久化上下文(没有dirty checking和实体回调)，BaseEntity的createTime、modifyTime设置为当前时间.
+   * 新插入记录的自增主键不会回填.
+   * 
+   * @param entities
+   *            the entities
+   * @param updateColumns
+   *            主键冲突时更新的属性名或列名，为空时更新所有可更新的列
+   * @return 驱动返回的影响记录数
+   */
+  public int upsertAll(Iterable<M> entities, String... updateColumns);
 
   /**
    * 查询所有.
@@ -60,6 +109,99 @@ public interface BaseDao<M, ID extends Serializable> extends JpaRepository<M, ID
    */
   public Page<M> findAll(Searchable searchable);
 
+  /**
+   * 根据条件查询投影，只查询投影需要的属性，不创建实体，结果为只读的.
+   * 投影可以是接口(getter对应实体属性，可用ProjectedProperty指定路径)，
+   * 或有标注了java.beans.ConstructorProperties的构造方法的类(参数名为实体属性路径).
+   * 
+   * @param <P>
+   *            the generic type
+   * @param searchable
+   *            the searchable
+   * @param projection
+   *            投影类型
+   * @return the page
+   */
+  public <P> Page<P> findAll(Searchable searchable, Class<P> projection);
+
+  /**
+   * 键集(seek)分页查询，不统计总数，深分页时不需要数据库跳过前面的记录.
+   * searchable的分页为{@link org.transformer.support.dao.jpa.search.KeysetPageRequest}时
+   * 从其游标之后开始取，否则取第一页(页码大于0时抛出SearchException，键集分页不能跳页)；
+   * 排序字段最后会追加主键保证顺序唯一，排序字段必须是非空属性(nullable = false)，否则抛出SearchException.
+   * 
+   * @param searchable
+   *            the searchable
+   * @return the keyset slice
+   */
+  public KeysetSlice<M> findSlice(Searchable searchable);
+
+  /**
+   * 根据条件通过jdbc直接查询实体表，结果映射为DTO，不创建实体，用于只读的列表.
+   * 查询DTO中与实体同名且映射为单列的可写属性；条件语义与findAll(Searchable)一致，不支持customQl.
+   * 持久化上下文中未flush的修改不可见.
+   * 
+   * @param <D>
+   *            the generic type
+   * @param searchable
+   *            the searchable
+   * @param dtoType
+   *            DTO类型，需要无参构造方法
+   * @return the page
+   */
+  public <D> Page<D> findAllByJdbc(Searchable searchable, Class<D> dtoType);
+
+  /**
+   * 根据条件通过jdbc直接查询实体表，每行为属性路径到值的Map.
+   * 
+   * @param searchable
+   *            the searchable
+   * @param properties
+   *            查询的属性路径，为空时查询实体所有单列属性
+   * @return the page
+   */
+  public Page<Map<String, Object>> findAllByJdbc(Searchable searchable, String... properties);
+
+  /**
+   * 根据条件流式查询，基于只进游标，每批清空一次持久化上下文，内存占用与记录数无关.
+   * 必须在事务内调用并在事务内消费完，使用完后需要关闭(try-with-resources).
+   * 查询出的实体为只读的，下一批开始后即变为游离态.
+   * 
+   * @param searchable
+   *            the searchable
+   * @return the stream
+   */
+  public Stream<M> stream(Searchable searchable);
+
+  /**
+   * 根据条件流式遍历，每batchSize条记录清空一次持久化上下文，内存占用与记录数无关.
+   * 查询出的实体为只读的，对实体的修改不会被保存.
+   * 
+   * @param searchable
+   *            the searchable
+   * @param consumer
+   *            处理每条记录
+   * @param batchSize
+   *            每批记录数
+   * @return 遍历的记录数
+   */
+  public long forEach(Searchable searchable, Consumer<? super M> consumer, int batchSize);
+
+  /**
+   * 根据主键批量查询，结果按传入主键的顺序返回，不存在的主键被忽略.
+   * 已在持久化上下文或二级缓存中的实体直接返回，其余的按multiGetChunkSize分批in查询，
+   * 每批主键数补齐到2的幂以减少不同的sql.
+   * parallel为true时多批在独立的EntityManager上并行查询(沿用当前线程的数据源路由)，并行查出的实体为游离态；
+   * 读写事务中忽略parallel，在当前事务中查询以看到未提交的修改.
+   * 
+   * @param ids
+   *            the ids
+   * @param parallel
+   *            是否并行查询多批
+   * @return the list
+   */
+  public List<M> findAll(Iterable<ID> ids, boolean parallel);
+
   /**
    * 复杂查询,返回多条记录.
    * @param spec 查询条件
@@ -83,6 +225,17 @@ public interface BaseDao<M, ID extends Serializable> extends JpaRepository<M, ID
    */
   public long count(Searchable searchable);
 
+  /**
+   * 根据条件统计所有记录数，开启了count缓存时可以返回maxStaleness毫秒内加载的过期结果.
+   * 
+   * @param searchable
+   *            the searchable
+   * @param maxStaleness
+   *            可以接受的过期时间(毫秒)，0表示只返回未过期的结果
+   * @return the long
+   */
+  public long count(Searchable searchable, long maxStaleness);
+
   /**
    * 复杂查询,返回单条记录.
    * @param spec 查询条件
@@ -0,0 +1,133 @@
+package org.transformer.support.dao.jpa.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分批批量更新的结果：总影响记录数及每批的参数组数、影响记录数和耗时.
+ *
+ */
+public final class BatchUpdateResult {
+
+  /** 驱动没有返回影响记录数(Statement.SUCCESS_NO_INFO)的批的影响记录数. */
+  public static final int UNKNOWN_AFFECTED = -1;
+
+  /** 每批的参数组数. */
+  private final List<Integer> chunkSizes = new ArrayList<Integer>();
+
+  /** 每批影响的记录数. */
+  private final List<Integer> chunkAffected = new ArrayList<Integer>();
+
+  /** 每批耗时(纳秒). */
+  private final List<Long> chunkNanos = new ArrayList<Long>();
+
+  /** The total affected. */
+  private long totalAffected;
+
+  /** 是否有批的影响记录数未知. */
+  private boolean affectedUnknown;
+
+  /**
+   * 记录一批.
+   *
+   * @param size
+   *            参数组数
+   * @param affected
+   *            影响的记录数，未知为{@link #UNKNOWN_AFFECTED}
+   * @param nanos
+   *            耗时(纳秒)
+   */
+  void addChunk(int size, int affected, long nanos) {
+    chunkSizes.add(size);
+    chunkAffected.add(affected);
+    chunkNanos.add(nanos);
+    if (affected == UNKNOWN_AFFECTED) {
+      affectedUnknown = true;
+    } else {
+      totalAffected += affected;
+    }
+  }
+
+  /**
+   * 总影响记录数，有批的影响记录数未知时为{@link #UNKNOWN_AFFECTED}.
+   *
+   * @return the total affected
+   */
+  public long getTotalAffected() {
+    return affectedUnknown ? UNKNOWN_AFFECTED : totalAffected;
+  }
+
+  /**
+   * 是否有批的影响记录数未知(驱动返回Statement.SUCCESS_NO_INFO，
+   * 如mysql开启rewriteBatchedStatements、oracle).
+   *
+   * @return true, if is affected unknown
+   */
+  public boolean isAffectedUnknown() {
+    return affectedUnknown;
+  }
+
+  /**
+   * 批数.
+   *
+   * @return the chunk count
+   */
+  public int getChunkCount() {
+    return chunkSizes.size();
+  }
+
+  /**
+   * 第index批的参数组数.
+   *
+   * @param index
+   *            the index
+   * @return the chunk size
+   */
+  public int getChunkSize(int index) {
+    return chunkSizes.get(index);
+  }
+
+  /**
+   * 第index批影响的记录数.
+   *
+   * @param index
+   *            the index
+   * @return the chunk affected，未知为{@link #UNKNOWN_AFFECTED}
+   */
+  public int getChunkAffected(int index) {
+    return chunkAffected.get(index);
+  }
+
+  /**
+   * 第index批的耗时(毫秒).
+   *
+   * @param index
+   *            the index
+   * @return the chunk millis
+   */
+  public double getChunkMillis(int index) {
+    return chunkNanos.get(index) / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  /**
+   * 总耗时(毫秒).
+   *
+   * @return the total millis
+   */
+  public double getTotalMillis() {
+    long nanos = 0;
+    for (Long chunk : chunkNanos) {
+      nanos += chunk;
+    }
+    return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  @Override
+  public String toString() {
+    return "BatchUpdateResult{" + "chunks=" + getChunkCount() + ", totalAffected="
+        + (affectedUnknown ? "unknown" : String.valueOf(totalAffected)) + ", totalMillis="
+        + getTotalMillis() + '}';
+  }
+
+}
@@ -1,19 +1,66 @@
 package org.transformer.support.dao.jpa.repository;
 
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import org.hibernate.Filter;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.action.internal.BulkOperationCleanupAction;
+import org.hibernate.engine.query.spi.HQLQueryPlan;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.hql.spi.ParameterTranslations;
+import org.hibernate.hql.spi.QueryTranslator;
+import org.hibernate.jdbc.ReturningWork;
+import org.hibernate.type.Type;
 import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.support.JpaEntityInformation;
 import org.springframework.data.jpa.repository.support.JpaEntityInformationSupport;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.Assert;
+import org.transformer.support.dao.jpa.repository.callback.DefaultSearchCallback;
 import org.transformer.support.dao.jpa.repository.callback.SearchCallback;
+import org.transformer.support.dao.jpa.repository.support.CountCache;
+import org.transformer.support.dao.jpa.repository.support.NearCache;
+import org.transformer.support.dao.jpa.repository.support.QueryCacheRegions;
+import org.transformer.support.dao.jpa.repository.support.QueryCoalescer;
+import org.transformer.support.dao.jpa.repository.support.QueryMetrics;
+import org.transformer.support.dao.jpa.repository.support.SearchQlCache;
 import org.transformer.support.dao.jpa.repository.support.annotation.EnableQueryCache;
 import org.transformer.support.dao.jpa.search.Searchable;
+import org.transformer.support.dao.jpa.search.util.SearchableKeyUtils;
+import org.transformer.support.util.HibernateUtils;
+import org.transformer.util.SpringUtils;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 import javax.persistence.EntityManager;
+import javax.persistence.Parameter;
 import javax.persistence.Query;
 
 /**
@@ -22,15 +69,36 @@ import javax.persistence.Query;
  */
 public class RepositoryHelper {
 
+  /** 键集分页参数前缀. */
+  private static final String KEYSET_PARAM_PREFIX = "keyset_";
+
   /** The entity manager. */
   private EntityManager entityManager;
 
   /** The entity class. */
   private Class<?> entityClass;
 
+  /** 统计延迟使用的实体名. */
+  private String metricsName;
+
   /** The enable query cache. */
   private boolean enableQueryCache = false;
 
+  /** hibernate查询缓存区域，null为默认区域. */
+  private String queryCacheRegion;
+
+  /** 统计、投影查询的结果缓存区域，null为不缓存. */
+  private Cache<String, Object> resultCache;
+
+  /** 实体查询使用的命名实体图，null为不使用. */
+  private String entityGraph;
+
+  /** 合并相同的并发只读查询，null为不合并. */
+  private QueryCoalescer queryCoalescer;
+
+  /** 是否也合并实体查询. */
+  private boolean coalesceEntityReads = false;
+
   /**
    * Instantiates a new repository helper.;
    * 
@@ -39,6 +107,7 @@ public class RepositoryHelper {
    */
   public RepositoryHelper(Class<?> entityClass) {
     this.entityClass = entityClass;
+    this.metricsName = entityClass.getSimpleName();
 
     EnableQueryCache enableQueryCacheAnnotation = AnnotationUtils.findAnnotation(entityClass,
         EnableQueryCache.class);
@@ -46,6 +115,15 @@ public class RepositoryHelper {
     boolean enableQueryCache = false;
     if (enableQueryCacheAnnotation != null) {
       enableQueryCache = enableQueryCacheAnnotation.value();
+      String region = enableQueryCacheAnnotation.region();
+      if (!region.isEmpty()) {
+        this.queryCacheRegion = region;
+      }
+      if (enableQueryCacheAnnotation.ttl() > 0) {
+        this.resultCache = QueryCacheRegions.region(
+            region.isEmpty() ? entityClass.getName() : region, enableQueryCacheAnnotation.ttl(),
+            enableQueryCacheAnnotation.maxEntries());
+      }
     }
     this.enableQueryCache = enableQueryCache;
   }
@@ -54,6 +132,59 @@ public class RepositoryHelper {
     this.entityManager = entityManager;
   }
 
+  /**
+   * 设置合并相同并发只读查询的合并器，null为不合并.
+   * 
+   * @param queryCoalescer
+   *            the new query coalescer
+   */
+  public void setQueryCoalescer(QueryCoalescer queryCoalescer) {
+    this.queryCoalescer = queryCoalescer;
+  }
+
+  /**
+   * 设置是否也合并实体查询，其他调用者得到游离态副本而不是自己EntityManager中的实体.
+   * 
+   * @param coalesceEntityReads
+   *            the new coalesce entity reads
+   */
+  public void setCoalesceEntityReads(boolean coalesceEntityReads) {
+    this.coalesceEntityReads = coalesceEntityReads;
+  }
+
+  /**
+   * 设置实体查询使用的命名实体图.
+   * 
+   * @param entityGraph
+   *            the new entity graph
+   */
+  public void setEntityGraph(String entityGraph) {
+    this.entityGraph = entityGraph;
+  }
+
+  /**
+   * Gets the entity graph.
+   * 
+   * @return 实体查询使用的命名实体图，null为不使用
+   */
+  public String getEntityGraph() {
+    return entityGraph;
+  }
+
+  /**
+   * 实体查询应用命名实体图.
+   * 
+   * @param query
+   *            the query
+   * @param entityManager
+   *            创建query的EntityManager
+   */
+  public void applyEntityGraph(Query query, EntityManager entityManager) {
+    if (entityGraph != null) {
+      query.setHint("javax.persistence.loadgraph", entityManager.getEntityGraph(entityGraph));
+    }
+  }
+
   /**
    * Gets the entity manager.
    * 
@@ -99,15 +230,173 @@ public class RepositoryHelper {
       final SearchCallback searchCallback) {
 
     assertConverted(searchable);
-    StringBuilder sb = new StringBuilder(ql);
-    searchCallback.prepareQl(sb, searchable);
-    searchCallback.prepareOrder(sb, searchable);
-    Query query = getEntityManager().createQuery(sb.toString());
-    applyEnableQueryCache(query);
+    String searchQl = prepareSearchQl(ql, searchable, searchCallback, true);
+    final Query query = getEntityManager().createQuery(searchQl);
+    applyQueryCache(query, searchable);
+    applyEntityGraph(query, getEntityManager());
+    searchCallback.setValues(query, searchable);
+    searchCallback.setPageable(query, searchable);
+
+    long start = System.nanoTime();
+    List<M> result = coalesced(searchQl, query, new Callable<List<M>>() {
+      @SuppressWarnings("unchecked")
+      @Override
+      public List<M> call() {
+        return query.getResultList();
+      }
+    });
+    QueryMetrics.record(metricsName, "findAll", searchable, searchQl, result.size(), start);
+    return result;
+  }
+
+  /**
+   * ql条件查询非实体结果(如投影的多列)，开启了结果缓存区域时从区域中读取.
+   * 
+   * @param ql
+   *            the ql
+   * @param searchable
+   *            查询条件、分页 排序
+   * @param searchCallback
+   *            查询回调 自定义设置查询条件和赋值
+   * @return the list
+   */
+  @SuppressWarnings("unchecked")
+  public List<Object> findRows(final String ql, final Searchable searchable,
+      final SearchCallback searchCallback) {
+
+    assertConverted(searchable);
+    final String searchQl = prepareSearchQl(ql, searchable, searchCallback, true);
+    final Query query = getEntityManager().createQuery(searchQl);
+    if (resultCache == null) {
+      applyQueryCache(query, searchable);
+    }
+    searchCallback.setValues(query, searchable);
+    searchCallback.setPageable(query, searchable);
+
+    long start = System.nanoTime();
+    List<Object> result = cachedResult(searchQl, query, searchable,
+        new Callable<List<Object>>() {
+          @Override
+          public List<Object> call() {
+            return new ArrayList<Object>(query.getResultList());
+          }
+        });
+    QueryMetrics.record(metricsName, "findRows", searchable, searchQl, result.size(), start);
+    return result;
+  }
+
+  /**
+   * 键集(seek)分页查询，按orders排序，从cursorValues之后开始取，不使用offset.
+   * 
+   * @param <M>
+   *            the generic type
+   * @param ql
+   *            the ql
+   * @param searchable
+   *            查询条件
+   * @param searchCallback
+   *            查询回调
+   * @param orders
+   *            排序字段，最后一个必须是唯一的(如主键)
+   * @param cursorValues
+   *            上一页最后一条记录的排序值，null表示第一页
+   * @param maxResults
+   *            最多返回的记录数
+   * @return the list
+   */
+  @SuppressWarnings("unchecked")
+  public <M> List<M> findAllByKeyset(final String ql, final Searchable searchable,
+      final SearchCallback searchCallback, final List<Sort.Order> orders,
+      final Object[] cursorValues, final int maxResults) {
+
+    assertConverted(searchable);
+    String aliasWithDot = "";
+    if (searchCallback instanceof DefaultSearchCallback) {
+      aliasWithDot = ((DefaultSearchCallback) searchCallback).getAliasWithDot();
+    }
+
+    StringBuilder sb = new StringBuilder(prepareSearchQl(ql, searchable, searchCallback, false));
+    if (cursorValues != null) {
+      // (a, b, id) > (?, ?, ?) 展开为 a > ? or (a = ? and b > ?) or (a = ? and b = ? and id > ?)
+      sb.append(" and (");
+      for (int i = 0; i < orders.size(); i++) {
+        if (i > 0) {
+          sb.append(" or ");
+        }
+        sb.append("(");
+        for (int j = 0; j < i; j++) {
+          sb.append(aliasWithDot).append(orders.get(j).getProperty());
+          sb.append(" = :").append(KEYSET_PARAM_PREFIX).append(j).append(" and ");
+        }
+        Sort.Order order = orders.get(i);
+        sb.append(aliasWithDot).append(order.getProperty());
+        sb.append(order.isAscending() ? " > :" : " < :").append(KEYSET_PARAM_PREFIX).append(i);
+        sb.append(")");
+      }
+      sb.append(")");
+    }
+    sb.append(" order by ");
+    for (int i = 0; i < orders.size(); i++) {
+      Sort.Order order = orders.get(i);
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(aliasWithDot).append(order.getProperty()).append(" ")
+          .append(order.getDirection().name().toLowerCase());
+    }
+
+    String keysetQl = sb.toString();
+    Query query = getEntityManager().createQuery(keysetQl);
+    applyQueryCache(query, searchable);
+    applyEntityGraph(query, getEntityManager());
+    searchCallback.setValues(query, searchable);
+    if (cursorValues != null) {
+      for (int i = 0; i < cursorValues.length; i++) {
+        query.setParameter(KEYSET_PARAM_PREFIX + i, cursorValues[i]);
+      }
+    }
+    query.setMaxResults(maxResults);
+
+    long start = System.nanoTime();
+    List<M> result = query.getResultList();
+    QueryMetrics.record(metricsName, "findAllByKeyset", searchable, keysetQl, result.size(),
+        start);
+    return result;
+  }
+
+  /**
+   * ql条件查询，返回只进游标，查询出的实体为只读的，不做脏检查.
+   * 使用mysql的流式结果集(fetchSize为Integer.MIN_VALUE)时，
+   * 游标关闭前同一连接上不能执行其他查询(包括延迟加载).
+   * 
+   * @param ql
+   *            the ql
+   * @param searchable
+   *            查询条件、分页 排序
+   * @param searchCallback
+   *            查询回调
+   * @param fetchSize
+   *            jdbc fetch size
+   * @return the scrollable results
+   */
+  public ScrollableResults scroll(final String ql, final Searchable searchable,
+      final SearchCallback searchCallback, final int fetchSize) {
+
+    assertConverted(searchable);
+    String searchQl = prepareSearchQl(ql, searchable, searchCallback, true);
+    Query query = getEntityManager().createQuery(searchQl);
     searchCallback.setValues(query, searchable);
     searchCallback.setPageable(query, searchable);
 
-    return query.getResultList();
+    org.hibernate.Query hibernateQuery = query.unwrap(org.hibernate.Query.class);
+    hibernateQuery.setFetchSize(fetchSize);
+    hibernateQuery.setReadOnly(true);
+    hibernateQuery.setCacheable(false);
+    // 只统计打开游标的耗时
+    long start = System.nanoTime();
+    ScrollableResults results = hibernateQuery.scroll(ScrollMode.FORWARD_ONLY);
+    QueryMetrics.record(metricsName, "scroll", searchable, searchQl, -1, start);
+    return results;
   }
 
   /**
@@ -141,8 +430,8 @@ public class RepositoryHelper {
   @SuppressWarnings("unchecked")
   public <M> List<M> findAll(final String ql, final Pageable pageable, final Object... params) {
 
-    Query query = getEntityManager()
-        .createQuery(ql + prepareOrder(pageable != null ? pageable.getSort() : null));
+    String orderedQl = ql + prepareOrder(pageable != null ? pageable.getSort() : null);
+    Query query = getEntityManager().createQuery(orderedQl);
     applyEnableQueryCache(query);
     setParameters(query, params);
     if (pageable != null) {
@@ -150,7 +439,10 @@ public class RepositoryHelper {
       query.setMaxResults(pageable.getPageSize());
     }
 
-    return query.getResultList();
+    long start = System.nanoTime();
+    List<M> result = query.getResultList();
+    QueryMetrics.record(metricsName, "findAll", "", orderedQl, result.size(), start);
+    return result;
   }
 
   /**
@@ -166,11 +458,15 @@ public class RepositoryHelper {
   @SuppressWarnings("unchecked")
   public <M> List<M> findAll(final String ql, final Sort sort, final Object... params) {
 
-    Query query = getEntityManager().createQuery(ql + prepareOrder(sort));
+    String orderedQl = ql + prepareOrder(sort);
+    Query query = getEntityManager().createQuery(orderedQl);
     applyEnableQueryCache(query);
     setParameters(query, params);
 
-    return query.getResultList();
+    long start = System.nanoTime();
+    List<M> result = query.getResultList();
+    QueryMetrics.record(metricsName, "findAll", "", orderedQl, result.size(), start);
+    return result;
   }
 
   /**
@@ -189,13 +485,59 @@ public class RepositoryHelper {
 
     assertConverted(searchable);
 
-    StringBuilder sb = new StringBuilder(ql);
-    searchCallback.prepareQl(sb, searchable);
-    Query query = getEntityManager().createQuery(sb.toString());
-    applyEnableQueryCache(query);
+    final String searchQl = prepareSearchQl(ql, searchable, searchCallback, false);
+    final Query query = getEntityManager().createQuery(searchQl);
+    if (resultCache == null) {
+      applyQueryCache(query, searchable);
+    }
     searchCallback.setValues(query, searchable);
 
-    return (Long) query.getSingleResult();
+    long start = System.nanoTime();
+    long count = cachedResult(searchQl, query, searchable, new Callable<Long>() {
+      @Override
+      public Long call() {
+        return (Long) query.getSingleResult();
+      }
+    });
+    QueryMetrics.record(metricsName, "count", searchable, searchQl, 1, start);
+    return count;
+  }
+
+  /**
+   * 按条件统计，最多统计到limit + 1，用于超大结果集的估计总数.
+   * 
+   * @param ql
+   *            查询单列(如主键)的ql
+   * @param searchable
+   *            the searchable
+   * @param searchCallback
+   *            the search callback
+   * @param limit
+   *            统计上限
+   * @return 记录数，超过上限时返回limit + 1
+   */
+  public long count(final String ql, final Searchable searchable,
+      final SearchCallback searchCallback, final long limit) {
+
+    assertConverted(searchable);
+
+    final String searchQl = prepareSearchQl(ql, searchable, searchCallback, false);
+    final Query query = getEntityManager().createQuery(searchQl);
+    if (resultCache == null) {
+      applyQueryCache(query, searchable);
+    }
+    searchCallback.setValues(query, searchable);
+    query.setMaxResults((int) Math.min(limit + 1, Integer.MAX_VALUE));
+
+    long start = System.nanoTime();
+    long count = cachedResult(searchQl, query, searchable, new Callable<Long>() {
+      @Override
+      public Long call() {
+        return (long) query.getResultList().size();
+      }
+    });
+    QueryMetrics.record(metricsName, "countWithLimit", searchable, searchQl, count, start);
+    return count;
   }
 
   /**
@@ -212,7 +554,10 @@ public class RepositoryHelper {
     applyEnableQueryCache(query);
     setParameters(query, params);
 
-    return (Long) query.getSingleResult();
+    long start = System.nanoTime();
+    Long count = (Long) query.getSingleResult();
+    QueryMetrics.record(metricsName, "count", "", ql, 1, start);
+    return count;
   }
 
   /**
@@ -234,15 +579,16 @@ public class RepositoryHelper {
 
     assertConverted(searchable);
 
-    StringBuilder sb = new StringBuilder(ql);
-    searchCallback.prepareQl(sb, searchable);
-    searchCallback.prepareOrder(sb, searchable);
-    Query query = getEntityManager().createQuery(sb.toString());
-    applyEnableQueryCache(query);
+    String searchQl = prepareSearchQl(ql, searchable, searchCallback, true);
+    Query query = getEntityManager().createQuery(searchQl);
+    applyQueryCache(query, searchable);
+    applyEntityGraph(query, getEntityManager());
     searchCallback.setValues(query, searchable);
     searchCallback.setPageable(query, searchable);
     query.setMaxResults(1);
+    long start = System.nanoTime();
     List<M> result = query.getResultList();
+    QueryMetrics.record(metricsName, "findOne", searchable, searchQl, result.size(), start);
 
     if (result.size() > 0) {
       return result.get(0);
@@ -285,7 +631,245 @@ public class RepositoryHelper {
     Query query = getEntityManager().createQuery(ql);
     setParameters(query, params);
 
-    return query.executeUpdate();
+    long start = System.nanoTime();
+    int affected = query.executeUpdate();
+    QueryMetrics.record(metricsName, "batchUpdate", "", ql, affected, start);
+    markWrittenAfterCommit(ql);
+    return affected;
+  }
+
+  /**
+   * 用多组参数执行同一条批处理语句(update/delete)，每chunkSize组一批.
+   * 语句能翻译为单条sql时使用jdbc批处理，每批一次往返，否则逐组执行.
+   * 必须在事务内调用，执行前会flush持久化上下文，二级缓存的清理与executeUpdate一致.
+   * 
+   * @param ql
+   *            the ql，参数为?1、?2...
+   * @param paramSets
+   *            每组参数
+   * @param chunkSize
+   *            每批参数组数
+   * @return 总影响记录数及每批的耗时
+   */
+  public BatchUpdateResult batchUpdate(final String ql, final List<Object[]> paramSets,
+      final int chunkSize) {
+    return batchUpdate(ql, paramSets, chunkSize, false);
+  }
+
+  /**
+   * 用多组参数执行同一条批处理语句(update/delete)，每chunkSize组一批.
+   * commitPerChunk为true时每批在独立的新事务中执行并提交，避免大批量更新长时间持有一个大事务，
+   * 此时某批失败，之前的批已提交，不会回滚.
+   * 
+   * @param ql
+   *            the ql，参数为?1、?2...
+   * @param paramSets
+   *            每组参数
+   * @param chunkSize
+   *            每批参数组数
+   * @param commitPerChunk
+   *            是否每批提交
+   * @return 总影响记录数及每批的耗时
+   */
+  public BatchUpdateResult batchUpdate(final String ql, final List<Object[]> paramSets,
+      final int chunkSize, final boolean commitPerChunk) {
+    Assert.isTrue(chunkSize > 0, "chunkSize must be positive");
+    BatchUpdateResult result = new BatchUpdateResult();
+    TransactionTemplate transactionTemplate = null;
+    if (commitPerChunk) {
+      transactionTemplate = new TransactionTemplate(
+          SpringUtils.getBean(PlatformTransactionManager.class));
+      transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+    for (final List<Object[]> chunk : Lists.partition(paramSets, chunkSize)) {
+      long start = System.nanoTime();
+      int affected;
+      if (transactionTemplate == null) {
+        affected = executeChunk(ql, chunk);
+      } else {
+        affected = transactionTemplate.execute(new TransactionCallback<Integer>() {
+          @SuppressWarnings("synthetic-access")
+          @Override
+          public Integer doInTransaction(TransactionStatus status) {
+            return executeChunk(ql, chunk);
+          }
+        });
+      }
+      result.addChunk(chunk.size(), affected, System.nanoTime() - start);
+      QueryMetrics.record(metricsName, "batchUpdateChunk", "", ql, affected, start);
+    }
+    return result;
+  }
+
+  /**
+   * 事务提交后递增语句写入的表的写计数，使相关的count缓存过期，并失效这些表的实体的近端缓存.
+   * 
+   * @param ql
+   *            the ql
+   */
+  private void markWrittenAfterCommit(final String ql) {
+    markWrittenAfterCommit(queryPlanOf(ql));
+  }
+
+  /**
+   * 事务提交后递增语句写入的表的写计数，并失效这些表的实体的近端缓存及结果缓存区域.
+   * 
+   * @param plan
+   *            语句的查询计划
+   */
+  private void markWrittenAfterCommit(final HQLQueryPlan plan) {
+    CountCache.markWrittenAfterCommit(plan.getQuerySpaces());
+    NearCache.invalidateAllAfterCommit(plan.getQuerySpaces());
+    evictResultCacheAfterCommit();
+  }
+
+  /**
+   * 语句的hibernate查询计划(从查询计划缓存中获取).
+   * 
+   * @param ql
+   *            the ql
+   * @return the HQL query plan
+   */
+  private HQLQueryPlan queryPlanOf(final String ql) {
+    SessionImplementor session = (SessionImplementor) HibernateUtils
+        .getSession(getEntityManager());
+    return session.getFactory().getQueryPlanCache().getHQLQueryPlan(ql, false,
+        Collections.<String, Filter>emptyMap());
+  }
+
+  /**
+   * 执行一批.
+   * 
+   * @param ql
+   *            the ql
+   * @param chunk
+   *            the chunk
+   * @return 影响的记录数
+   */
+  private int executeChunk(final String ql, final List<Object[]> chunk) {
+    EntityManager em = getEntityManager();
+    final SessionImplementor session = (SessionImplementor) HibernateUtils.getSession(em);
+    HQLQueryPlan plan = queryPlanOf(ql);
+    markWrittenAfterCommit(plan);
+    QueryTranslator[] translators = plan.getTranslators();
+    if (translators.length != 1 || !translators[0].isManipulationStatement()
+        || translators[0].collectSqlStrings().size() != 1) {
+      // 多表(如joined继承)或多态语句，逐组执行
+      int affected = 0;
+      for (Object[] params : chunk) {
+        Query query = em.createQuery(ql);
+        setParameters(query, params);
+        affected += query.executeUpdate();
+      }
+      return affected;
+    }
+
+    final QueryTranslator translator = translators[0];
+    em.flush();
+    ((EventSource) session).getActionQueue().addAction(
+        new BulkOperationCleanupAction(session, translator.getQuerySpaces()));
+    int[] counts = ((Session) session).doReturningWork(new ReturningWork<int[]>() {
+      @Override
+      public int[] execute(Connection connection) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(translator.getSQLString());
+        try {
+          for (Object[] params : chunk) {
+            bindParameters(statement, translator.getParameterTranslations(), params, session);
+            statement.addBatch();
+          }
+          return statement.executeBatch();
+        } finally {
+          statement.close();
+        }
+      }
+    });
+    int affected = 0;
+    for (int count : counts) {
+      if (count < 0) {
+        // Statement.SUCCESS_NO_INFO(如mysql的rewriteBatchedStatements、oracle)，不能按0计
+        return BatchUpdateResult.UNKNOWN_AFFECTED;
+      }
+      affected += count;
+    }
+    return affected;
+  }
+
+  /**
+   * 按hibernate翻译的参数位置和类型绑定一组参数.
+   * 
+   * @param statement
+   *            the statement
+   * @param translations
+   *            the translations
+   * @param params
+   *            the params
+   * @param session
+   *            the session
+   * @throws SQLException
+   *             the SQL exception
+   */
+  private static void bindParameters(PreparedStatement statement,
+      ParameterTranslations translations, Object[] params, SessionImplementor session)
+      throws SQLException {
+    for (int i = 0; i < params.length; i++) {
+      String name = String.valueOf(i + 1);
+      int[] locations;
+      Type type;
+      if (translations.getNamedParameterNames().contains(name)) {
+        locations = translations.getNamedParameterSqlLocations(name);
+        type = translations.getNamedParameterExpectedType(name);
+      } else {
+        locations = new int[] { translations.getOrdinalParameterSqlLocation(i + 1) };
+        type = translations.getOrdinalParameterExpectedType(i + 1);
+      }
+      for (int location : locations) {
+        if (type != null) {
+          type.nullSafeSet(statement, params[i], location + 1, session);
+        } else if (params[i] == null) {
+          statement.setNull(location + 1, Types.NULL);
+        } else {
+          statement.setObject(location + 1, params[i]);
+        }
+      }
+    }
+  }
+
+  /**
+   * 根据查询条件拼ql，DefaultSearchCallback拼出的ql按查询条件形状缓存.
+   * 
+   * @param ql
+   *            the ql
+   * @param searchable
+   *            the searchable
+   * @param searchCallback
+   *            the search callback
+   * @param withOrder
+   *            是否拼排序
+   * @return the string
+   */
+  public static String prepareSearchQl(final String ql, final Searchable searchable,
+      final SearchCallback searchCallback, final boolean withOrder) {
+
+    String key = null;
+    if (SearchQlCache.isCacheable(searchCallback)) {
+      key = SearchQlCache.keyOf(ql, searchable, searchCallback, withOrder);
+      String cachedQl = SearchQlCache.get(key);
+      if (cachedQl != null) {
+        return cachedQl;
+      }
+    }
+
+    StringBuilder sb = new StringBuilder(ql);
+    searchCallback.prepareQl(sb, searchable);
+    if (withOrder) {
+      searchCallback.prepareOrder(sb, searchable);
+    }
+    String preparedQl = sb.toString();
+
+    if (key != null) {
+      SearchQlCache.put(key, preparedQl);
+    }
+    return preparedQl;
   }
 
   /**
@@ -363,9 +947,200 @@ public class RepositoryHelper {
    *            the query
    */
   public void applyEnableQueryCache(Query query) {
-    if (enableQueryCache) {
+    applyQueryCache(query, null);
+  }
+
+  /**
+   * 查询是否使用缓存，Searchable的设置优先于实体配置.
+   * 
+   * @param searchable
+   *            the searchable，可为null
+   * @return true, if is query cacheable
+   */
+  public boolean isQueryCacheable(Searchable searchable) {
+    if (searchable != null && searchable.getQueryCache() != null) {
+      return searchable.getQueryCache();
+    }
+    return enableQueryCache;
+  }
+
+  /**
+   * 需要时开启hibernate查询缓存并设置缓存区域.
+   * 
+   * @param query
+   *            the query
+   * @param searchable
+   *            the searchable，可为null
+   */
+  public void applyQueryCache(Query query, Searchable searchable) {
+    if (isQueryCacheable(searchable)) {
       query.setHint("org.hibernate.cacheable", true);// 开启查询缓存
+      if (queryCacheRegion != null) {
+        query.setHint("org.hibernate.cacheRegion", queryCacheRegion);
+      }
+    }
+  }
+
+  /**
+   * 从结果缓存区域中读取，未开启或本次查询不使用缓存时直接查询.
+   * 
+   * @param <T>
+   *            the generic type
+   * @param ql
+   *            the ql
+   * @param query
+   *            已赋值的query
+   * @param searchable
+   *            the searchable
+   * @param loader
+   *            the loader
+   * @return the t
+   */
+  @SuppressWarnings("unchecked")
+  private <T> T cachedResult(String ql, Query query, Searchable searchable,
+      Callable<T> loader) {
+    try {
+      // 读写事务中可能依赖本事务未提交的修改，不使用结果缓存
+      if (resultCache == null || !isQueryCacheable(searchable) || isReadWriteTransaction()) {
+        return coalescedCall(ql, query, loader);
+      }
+      return (T) resultCache.get(resultKeyOf(ql, query), loader);
+    } catch (ExecutionException exception) {
+      throw Throwables.propagate(exception.getCause());
+    } catch (UncheckedExecutionException exception) {
+      // 查询抛出的PersistenceException等需要原样抛出，异常转换才能识别
+      throw Throwables.propagate(exception.getCause());
+    } catch (ExecutionError error) {
+      throw Throwables.propagate(error.getCause());
+    } catch (Exception exception) {
+      throw Throwables.propagate(exception);
+    }
+  }
+
+  /**
+   * 合并相同的并发实体查询，只在显式开启了coalesceEntityReads时合并.
+   * 其他调用者得到的是游离态副本，repository的只读事务及open session in view的调用方都期望得到
+   * 自己EntityManager中的实体(dirty checking、延迟加载)，默认不合并.
+   * 
+   * @param <T>
+   *            the generic type
+   * @param ql
+   *            the ql
+   * @param query
+   *            the query
+   * @param loader
+   *            the loader
+   * @return the t
+   */
+  private <T> T coalesced(String ql, Query query, Callable<T> loader) {
+    try {
+      if (!coalesceEntityReads) {
+        return loader.call();
+      }
+      return coalescedCall(ql, query, loader);
+    } catch (Exception exception) {
+      throw Throwables.propagate(exception);
+    }
+  }
+
+  /**
+   * 开启了查询合并且不在读写事务中时合并相同的并发查询，键为实体、ql、参数值及分页.
+   * 读写事务中的查询可能依赖本事务未提交的修改，不合并.
+   * 
+   * @param <T>
+   *            the generic type
+   * @param ql
+   *            the ql
+   * @param query
+   *            the query
+   * @param loader
+   *            the loader
+   * @return the t
+   * @throws Exception
+   *             the exception
+   */
+  private <T> T coalescedCall(String ql, Query query, Callable<T> loader) throws Exception {
+    if (queryCoalescer == null || isReadWriteTransaction()) {
+      return loader.call();
+    }
+    return queryCoalescer.execute(entityClass.getName() + '|' + resultKeyOf(ql, query), loader);
+  }
+
+  /**
+   * 是否在读写事务中.
+   * 
+   * @return true, if is read write transaction
+   */
+  private static boolean isReadWriteTransaction() {
+    return TransactionSynchronizationManager.isActualTransactionActive()
+        && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+  }
+
+  /**
+   * 事务提交后清空结果缓存区域，没有事务时立即清空. 同一事务内多次写入只清空一次.
+   */
+  public void evictResultCacheAfterCommit() {
+    Cache<String, Object> cache = resultCache;
+    if (cache == null) {
+      return;
+    }
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      cache.invalidateAll();
+      return;
+    }
+    for (TransactionSynchronization synchronization : TransactionSynchronizationManager
+        .getSynchronizations()) {
+      if (synchronization instanceof EvictResultCacheSynchronization
+          && ((EvictResultCacheSynchronization) synchronization).cache == cache) {
+        return;
+      }
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new EvictResultCacheSynchronization(cache));
+  }
+
+  /**
+   * 事务提交后清空结果缓存区域.
+   */
+  private static final class EvictResultCacheSynchronization
+      extends TransactionSynchronizationAdapter {
+
+    /** The cache. */
+    private final Cache<String, Object> cache;
+
+    /**
+     * Instantiates a new evict result cache synchronization.
+     * 
+     * @param cache
+     *            the cache
+     */
+    private EvictResultCacheSynchronization(Cache<String, Object> cache) {
+      this.cache = cache;
+    }
+
+    @Override
+    public void afterCommit() {
+      cache.invalidateAll();
+    }
+  }
+
+  /**
+   * 结果缓存的键：ql、参数值及分页.
+   * 
+   * @param ql
+   *            the ql
+   * @param query
+   *            the query
+   * @return the string
+   */
+  private static String resultKeyOf(String ql, Query query) {
+    Map<String, String> values = new TreeMap<String, String>();
+    for (Parameter<?> parameter : query.getParameters()) {
+      String name = parameter.getName() != null ? parameter.getName()
+          : String.valueOf(parameter.getPosition());
+      values.put(name, SearchableKeyUtils.valueKeyOf(query.getParameterValue(parameter)));
     }
+    return ql + values + '|' + query.getFirstResult() + '|' + query.getMaxResults();
   }
 
 }
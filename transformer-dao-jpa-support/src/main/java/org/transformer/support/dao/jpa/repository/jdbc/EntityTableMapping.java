@@ -0,0 +1,249 @@
+package org.transformer.support.dao.jpa.repository.jdbc;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.type.CustomType;
+import org.hibernate.type.EnumType;
+import org.hibernate.type.Type;
+import org.transformer.support.dao.jpa.search.exception.InvalidSearchPropertyException;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 实体到表的映射，从hibernate的EntityPersister获取，按实体类缓存.
+ * 只支持映射为当前实体主表单列的属性(包括内嵌属性和多对一的外键，如 customer.id).
+ *
+ */
+final class EntityTableMapping {
+
+  /** 查询使用的表别名. */
+  static final String ALIAS = "t";
+
+  /** The Constant CACHE. */
+  private static final ConcurrentMap<Class<?>, EntityTableMapping> CACHE =
+      new ConcurrentHashMap<Class<?>, EntityTableMapping>();
+
+  /** The persister. */
+  private final AbstractEntityPersister persister;
+
+  /** 带别名的from子句及@Where、鉴别列等限制条件. */
+  private final String fromClause;
+
+  /** 属性路径对应的列. */
+  private final ConcurrentMap<String, Column> columns = new ConcurrentHashMap<String, Column>();
+
+  /** 实体的所有单列属性，主键在前. */
+  private final String[] simpleProperties;
+
+  /**
+   * Instantiates a new entity table mapping.
+   *
+   * @param persister
+   *            the persister
+   */
+  private EntityTableMapping(AbstractEntityPersister persister) {
+    this.persister = persister;
+    this.fromClause = " from " + persister.getTableName() + " " + ALIAS + " where 1=1"
+        + persister.filterFragment(ALIAS, Collections.emptyMap());
+    List<String> properties = new ArrayList<String>();
+    properties.add(persister.getIdentifierPropertyName());
+    for (String property : persister.getPropertyNames()) {
+      if (resolve(property) != null) {
+        properties.add(property);
+      }
+    }
+    this.simpleProperties = properties.toArray(new String[properties.size()]);
+  }
+
+  /**
+   * 获取实体的映射.
+   *
+   * @param sessionFactory
+   *            the session factory
+   * @param entityClass
+   *            the entity class
+   * @return the entity table mapping
+   */
+  static EntityTableMapping forEntity(SessionFactory sessionFactory, Class<?> entityClass) {
+    EntityTableMapping mapping = CACHE.get(entityClass);
+    if (mapping == null) {
+      Object persister = ((SessionFactoryImplementor) sessionFactory)
+          .getClassMetadata(entityClass);
+      if (!(persister instanceof AbstractEntityPersister)) {
+        throw new IllegalArgumentException(entityClass + " is not a mapped entity");
+      }
+      mapping = new EntityTableMapping((AbstractEntityPersister) persister);
+      EntityTableMapping existing = CACHE.putIfAbsent(entityClass, mapping);
+      if (existing != null) {
+        mapping = existing;
+      }
+    }
+    return mapping;
+  }
+
+  /**
+   * Gets the persister.
+   *
+   * @return the persister
+   */
+  AbstractEntityPersister getPersister() {
+    return persister;
+  }
+
+  /**
+   * 带别名的from子句，以where开始.
+   *
+   * @return the from clause
+   */
+  String getFromClause() {
+    return fromClause;
+  }
+
+  /**
+   * 实体的所有单列属性，主键在前.
+   *
+   * @return the simple properties
+   */
+  String[] getSimpleProperties() {
+    return simpleProperties.clone();
+  }
+
+  /**
+   * 属性是否映射为单列.
+   *
+   * @param path
+   *            属性路径
+   * @return true, if successful
+   */
+  boolean hasColumn(String path) {
+    return columnOf(path) != null;
+  }
+
+  /**
+   * 获取属性路径对应的列.
+   *
+   * @param searchProperty
+   *            查询属性，用于异常信息
+   * @param path
+   *            属性路径
+   * @return the column
+   * @throws InvalidSearchPropertyException
+   *             属性不存在或不是单列
+   */
+  Column getColumn(String searchProperty, String path) {
+    Column column = columnOf(path);
+    if (column == null) {
+      throw new InvalidSearchPropertyException(searchProperty, path);
+    }
+    return column;
+  }
+
+  /**
+   * Column of.
+   *
+   * @param path
+   *            the path
+   * @return the column，不支持时为null
+   */
+  private Column columnOf(String path) {
+    Column column = columns.get(path);
+    if (column == null) {
+      column = resolve(path);
+      if (column == null) {
+        return null;
+      }
+      columns.putIfAbsent(path, column);
+    }
+    return column;
+  }
+
+  /**
+   * 解析属性路径对应的列.
+   *
+   * @param path
+   *            the path
+   * @return the column，不支持时为null
+   */
+  private Column resolve(String path) {
+    String[] names;
+    Type type;
+    try {
+      names = persister.toColumns(path);
+      type = persister.toType(path);
+    } catch (RuntimeException exception) {
+      return null;
+    }
+    if (names == null || names.length != 1 || names[0] == null || type.isCollectionType()) {
+      return null;
+    }
+    String property = path.indexOf('.') > 0 ? path.substring(0, path.indexOf('.')) : path;
+    if (!property.equals(persister.getIdentifierPropertyName())
+        && !persister.getTableName().equals(persister.getPropertyTableName(property))) {
+      return null;
+    }
+    boolean enumOrdinal = type instanceof CustomType
+        && ((CustomType) type).getUserType() instanceof EnumType
+        && ((EnumType) ((CustomType) type).getUserType()).isOrdinal();
+    return new Column(ALIAS + "." + names[0], enumOrdinal);
+  }
+
+  /**
+   * 属性对应的列.
+   */
+  static final class Column {
+
+    /** 带别名的列名. */
+    private final String name;
+
+    /** 是否按序号保存的枚举. */
+    private final boolean enumOrdinal;
+
+    /**
+     * Instantiates a new column.
+     *
+     * @param name
+     *            the name
+     * @param enumOrdinal
+     *            the enum ordinal
+     */
+    Column(String name, boolean enumOrdinal) {
+      this.name = name;
+      this.enumOrdinal = enumOrdinal;
+    }
+
+    /**
+     * Gets the name.
+     *
+     * @return the name
+     */
+    String getName() {
+      return name;
+    }
+
+    /**
+     * 把实体属性值转换为jdbc参数值.
+     *
+     * @param value
+     *            the value
+     * @return the object
+     */
+    Object toJdbcValue(Object value) {
+      if (value instanceof Enum) {
+        return enumOrdinal ? ((Enum<?>) value).ordinal() : ((Enum<?>) value).name();
+      }
+      if (value instanceof Date && !(value instanceof java.sql.Date)
+          && !(value instanceof java.sql.Time) && !(value instanceof Timestamp)) {
+        return new Timestamp(((Date) value).getTime());
+      }
+      return value;
+    }
+  }
+
+}
@@ -0,0 +1,290 @@
+package org.transformer.support.dao.jpa.repository.jdbc;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+
+import org.hibernate.Session;
+import org.hibernate.action.internal.BulkOperationCleanupAction;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.jdbc.ReturningWork;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.type.Type;
+import org.springframework.util.Assert;
+import org.transformer.support.dao.jpa.repository.support.QueryMetrics;
+import org.transformer.support.entity.BaseEntity;
+import org.transformer.support.util.HibernateUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+
+/**
+ * 批量插入或更新(upsert)，每批生成一条多行语句：
+ * mysql为 insert ... on duplicate key update，h2为 merge into ... key(主键).
+ * 写入的列为主键及实体主表中所有可插入的属性列，值按hibernate类型绑定.
+ * BaseEntity的createTime、modifyTime与DefaultEntityListener一样设置为当前时间，
+ * createTime等不可更新的列不会被更新(h2的merge会更新所有列).
+ *
+ * @param <M>
+ *            实体类型
+ */
+public class EntityUpserter<M> {
+
+  /** The entity class. */
+  private final Class<M> entityClass;
+
+  /** The persister. */
+  private final AbstractEntityPersister persister;
+
+  /** 是否mysql，否则为h2. */
+  private final boolean mysql;
+
+  /** 写入的属性在persister中的序号. */
+  private final int[] propertyIndexes;
+
+  /** 写入的列，主键列在前. */
+  private final List<String> columns = new ArrayList<String>();
+
+  /** 默认更新的列：可更新的属性列. */
+  private final List<String> updatableColumns = new ArrayList<String>();
+
+  /** 一行的占位符. */
+  private final String rowPlaceholder;
+
+  /**
+   * Instantiates a new entity upserter.
+   *
+   * @param entityClass
+   *            the entity class
+   * @param em
+   *            the em
+   */
+  public EntityUpserter(Class<M> entityClass, EntityManager em) {
+    this.entityClass = entityClass;
+    this.persister = EntityTableMapping
+        .forEntity(HibernateUtils.getSessionFactory(em), entityClass).getPersister();
+    Dialect dialect = ((SessionImplementor) HibernateUtils.getSession(em)).getFactory()
+        .getDialect();
+    if (!(dialect instanceof MySQLDialect) && !(dialect instanceof H2Dialect)) {
+      throw new UnsupportedOperationException(
+          "upsert is only supported on mysql and h2, dialect : " + dialect);
+    }
+    this.mysql = dialect instanceof MySQLDialect;
+
+    columns.addAll(Arrays.asList(persister.getIdentifierColumnNames()));
+    List<Integer> indexes = new ArrayList<Integer>();
+    boolean[] insertable = persister.getPropertyInsertability();
+    boolean[] updatable = persister.getPropertyUpdateability();
+    String[] names = persister.getPropertyNames();
+    for (int i = 0; i < names.length; i++) {
+      String[] propertyColumns = persister.getPropertyColumnNames(i);
+      if (!insertable[i] || propertyColumns.length == 0 || propertyColumns[0] == null
+          || persister.getPropertyTypes()[i].isCollectionType()
+          || !persister.getTableName().equals(persister.getPropertyTableName(names[i]))) {
+        continue;
+      }
+      indexes.add(i);
+      columns.addAll(Arrays.asList(propertyColumns));
+      if (updatable[i]) {
+        updatableColumns.addAll(Arrays.asList(propertyColumns));
+      }
+    }
+    this.propertyIndexes = new int[indexes.size()];
+    for (int i = 0; i < propertyIndexes.length; i++) {
+      propertyIndexes[i] = indexes.get(i);
+    }
+    StringBuilder placeholder = new StringBuilder("(");
+    for (int i = 0; i < columns.size(); i++) {
+      placeholder.append(i == 0 ? "?" : ", ?");
+    }
+    this.rowPlaceholder = placeholder.append(')').toString();
+  }
+
+  /**
+   * 批量upsert，必须在事务内调用，执行前会flush持久化上下文，并清理实体的二级缓存.
+   * 实体不会变为持久态，新插入记录的自增主键不会回填.
+   *
+   * @param em
+   *            the em
+   * @param entities
+   *            the entities
+   * @param batchSize
+   *            每条语句的行数
+   * @param updateColumns
+   *            主键冲突时更新的属性名或列名，为空时更新所有可更新的列
+   * @return 驱动返回的影响记录数(mysql插入计1，更新计2，未变化计0)
+   */
+  public int upsertAll(EntityManager em, Iterable<? extends M> entities, int batchSize,
+      String... updateColumns) {
+    Assert.isTrue(batchSize > 0, "batchSize must be positive");
+    if (entities == null || Iterables.isEmpty(entities)) {
+      return 0;
+    }
+    String updateClause = updateClause(updateColumns);
+    final SessionImplementor session = (SessionImplementor) HibernateUtils.getSession(em);
+    em.flush();
+    ((EventSource) session).getActionQueue()
+        .addAction(new BulkOperationCleanupAction(session, persister));
+
+    int affected = 0;
+    Date now = new Date();
+    for (final List<? extends M> chunk : Lists.partition(Lists.newArrayList(entities),
+        batchSize)) {
+      long start = System.nanoTime();
+      for (M entity : chunk) {
+        if (entity instanceof BaseEntity) {
+          ((BaseEntity) entity).setCreateTime(now);
+          ((BaseEntity) entity).setModifyTime(now);
+        }
+      }
+      final String sql = upsertSql(chunk.size(), updateClause);
+      affected += ((Session) session).doReturningWork(new ReturningWork<Integer>() {
+        @SuppressWarnings("synthetic-access")
+        @Override
+        public Integer execute(Connection connection) throws SQLException {
+          PreparedStatement statement = connection.prepareStatement(sql);
+          try {
+            int index = 1;
+            for (M entity : chunk) {
+              index = bindRow(statement, index, entity, session);
+            }
+            return statement.executeUpdate();
+          } finally {
+            statement.close();
+          }
+        }
+      });
+      QueryMetrics.record(entityClass.getSimpleName(), "upsertAll", "rows" + chunk.size(), sql,
+          chunk.size(), start);
+    }
+    return affected;
+  }
+
+  /**
+   * 生成多行upsert语句.
+   *
+   * @param rows
+   *            行数
+   * @param updateClause
+   *            mysql的更新子句
+   * @return the string
+   */
+  private String upsertSql(int rows, String updateClause) {
+    StringBuilder sql = new StringBuilder(mysql ? "insert into " : "merge into ");
+    sql.append(persister.getTableName()).append(" (");
+    for (int i = 0; i < columns.size(); i++) {
+      sql.append(i == 0 ? "" : ", ").append(columns.get(i));
+    }
+    sql.append(')');
+    if (!mysql) {
+      sql.append(" key (");
+      String[] idColumns = persister.getIdentifierColumnNames();
+      for (int i = 0; i < idColumns.length; i++) {
+        sql.append(i == 0 ? "" : ", ").append(idColumns[i]);
+      }
+      sql.append(')');
+    }
+    sql.append(" values ");
+    for (int i = 0; i < rows; i++) {
+      sql.append(i == 0 ? "" : ", ").append(rowPlaceholder);
+    }
+    if (mysql) {
+      sql.append(" on duplicate key update ").append(updateClause);
+    }
+    return sql.toString();
+  }
+
+  /**
+   * mysql的更新子句.
+   *
+   * @param updateColumns
+   *            属性名或列名
+   * @return the string
+   */
+  private String updateClause(String... updateColumns) {
+    Set<String> targets = new LinkedHashSet<String>();
+    if (updateColumns == null || updateColumns.length == 0) {
+      targets.addAll(updatableColumns);
+    } else {
+      for (String name : updateColumns) {
+        targets.addAll(columnsOf(name));
+      }
+    }
+    if (targets.isEmpty()) {
+      // 没有可更新的列时主键冲突即忽略
+      String idColumn = persister.getIdentifierColumnNames()[0];
+      return idColumn + " = " + idColumn;
+    }
+    StringBuilder clause = new StringBuilder();
+    for (String column : targets) {
+      clause.append(clause.length() == 0 ? "" : ", ").append(column).append(" = values(")
+          .append(column).append(')');
+    }
+    return clause.toString();
+  }
+
+  /**
+   * 属性名或列名对应的列.
+   *
+   * @param name
+   *            the name
+   * @return the list
+   */
+  private List<String> columnsOf(String name) {
+    for (int index : propertyIndexes) {
+      if (persister.getPropertyNames()[index].equals(name)) {
+        return Arrays.asList(persister.getPropertyColumnNames(index));
+      }
+    }
+    for (String column : columns) {
+      if (column.equalsIgnoreCase(name)) {
+        return Arrays.asList(column);
+      }
+    }
+    throw new IllegalArgumentException(
+        "[" + name + "] is not a writable property or column of " + entityClass.getName());
+  }
+
+  /**
+   * 绑定一行的参数.
+   *
+   * @param statement
+   *            the statement
+   * @param startIndex
+   *            the start index
+   * @param entity
+   *            the entity
+   * @param session
+   *            the session
+   * @return 下一个参数位置
+   * @throws SQLException
+   *             the SQL exception
+   */
+  private int bindRow(PreparedStatement statement, int startIndex, M entity,
+      SessionImplementor session) throws SQLException {
+    int index = startIndex;
+    persister.getIdentifierType().nullSafeSet(statement,
+        persister.getIdentifier(entity, session), index, session);
+    index += persister.getIdentifierColumnNames().length;
+    Object[] values = persister.getPropertyValues(entity);
+    Type[] types = persister.getPropertyTypes();
+    for (int propertyIndex : propertyIndexes) {
+      types[propertyIndex].nullSafeSet(statement, values[propertyIndex], index, session);
+      index += persister.getPropertyColumnNames(propertyIndex).length;
+    }
+    return index;
+  }
+
+}
@@ -0,0 +1,251 @@
+package org.transformer.support.dao.jpa.repository.jdbc;
+
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.pagination.LimitHandler;
+import org.hibernate.engine.spi.RowSelection;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.BeanUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.orm.jpa.EntityManagerFactoryInfo;
+import org.transformer.support.dao.jpa.repository.support.QueryMetrics;
+import org.transformer.support.dao.jpa.search.Searchable;
+import org.transformer.support.util.HibernateUtils;
+
+import java.beans.PropertyDescriptor;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * 只读的jdbc查询，把Searchable转换为对实体表的sql直接执行，结果映射为DTO或Map，
+ * 不创建实体，没有持久化上下文的开销.
+ * 条件语义与DefaultSearchCallback一致(customQl除外)，只支持映射为实体主表单列的属性.
+ * 使用当前事务的连接(JpaTransactionManager会暴露jdbc连接)，但持久化上下文中未flush的修改不可见.
+ *
+ * @param <M>
+ *            实体类型
+ */
+public class JdbcSearchQuery<M> {
+
+  /** The entity class. */
+  private final Class<M> entityClass;
+
+  /** The mapping. */
+  private final EntityTableMapping mapping;
+
+  /** The sql builder. */
+  private final SearchableSqlBuilder sqlBuilder;
+
+  /** The dialect. */
+  private final Dialect dialect;
+
+  /** The jdbc template. */
+  private final JdbcTemplate jdbcTemplate;
+
+  /** DTO类型对应的row mapper. */
+  private final ConcurrentMap<Class<?>, SearchRowMapper<?>> rowMappers =
+      new ConcurrentHashMap<Class<?>, SearchRowMapper<?>>();
+
+  /**
+   * Instantiates a new jdbc search query.
+   *
+   * @param entityClass
+   *            the entity class
+   * @param em
+   *            the em
+   */
+  public JdbcSearchQuery(Class<M> entityClass, EntityManager em) {
+    EntityManagerFactory emf = em.getEntityManagerFactory();
+    if (!(emf instanceof EntityManagerFactoryInfo)
+        || ((EntityManagerFactoryInfo) emf).getDataSource() == null) {
+      throw new IllegalStateException(
+          "jdbc search query needs an EntityManagerFactory created by spring with a DataSource");
+    }
+    SessionFactoryImplementor sessionFactory = (SessionFactoryImplementor) HibernateUtils
+        .getSessionFactory(emf);
+    this.entityClass = entityClass;
+    this.mapping = EntityTableMapping.forEntity(sessionFactory, entityClass);
+    this.sqlBuilder = new SearchableSqlBuilder(mapping);
+    this.dialect = sessionFactory.getDialect();
+    this.jdbcTemplate = new JdbcTemplate(((EntityManagerFactoryInfo) emf).getDataSource());
+  }
+
+  /**
+   * 查询为DTO，查询DTO中与实体同名且映射为单列的可写属性.
+   *
+   * @param <D>
+   *            the generic type
+   * @param searchable
+   *            the searchable
+   * @param dtoType
+   *            DTO类型
+   * @return the page
+   */
+  @SuppressWarnings("unchecked")
+  public <D> Page<D> findAll(Searchable searchable, Class<D> dtoType) {
+    SearchRowMapper<?> rowMapper = rowMappers.get(dtoType);
+    if (rowMapper == null) {
+      List<String> properties = new ArrayList<String>();
+      for (PropertyDescriptor descriptor : BeanUtils.getPropertyDescriptors(dtoType)) {
+        if (descriptor.getWriteMethod() != null && mapping.hasColumn(descriptor.getName())) {
+          properties.add(descriptor.getName());
+        }
+      }
+      if (properties.isEmpty()) {
+        throw new IllegalArgumentException(
+            dtoType.getName() + " has no property mapped by " + entityClass.getName());
+      }
+      rowMapper = SearchRowMapper.forType(dtoType,
+          properties.toArray(new String[properties.size()]));
+      rowMappers.putIfAbsent(dtoType, rowMapper);
+    }
+    return findAll(searchable, (SearchRowMapper<D>) rowMapper);
+  }
+
+  /**
+   * 查询为Map，key为属性路径.
+   *
+   * @param searchable
+   *            the searchable
+   * @param properties
+   *            查询的属性路径，为空时查询实体所有单列属性
+   * @return the page
+   */
+  public Page<Map<String, Object>> findAll(Searchable searchable, String... properties) {
+    return findAll(searchable, SearchRowMapper.forMap(
+        properties == null || properties.length == 0 ? mapping.getSimpleProperties()
+            : properties));
+  }
+
+  /**
+   * 使用指定的row mapper查询，查询的列为rowMapper的属性对应的实体列.
+   *
+   * @param <T>
+   *            the generic type
+   * @param searchable
+   *            the searchable
+   * @param rowMapper
+   *            the row mapper
+   * @return the page
+   */
+  public <T> Page<T> findAll(Searchable searchable, final SearchRowMapper<T> rowMapper) {
+    long start = System.nanoTime();
+    prepare(searchable);
+    StringBuilder sql = new StringBuilder("select ");
+    for (String property : rowMapper.getProperties()) {
+      sql.append(mapping.getColumn(property, property).getName()).append(", ");
+    }
+    sql.setLength(sql.length() - 2);
+    sql.append(mapping.getFromClause());
+    final List<Object> params = new ArrayList<Object>();
+    sqlBuilder.appendWhere(sql, searchable, params);
+    sqlBuilder.appendOrder(sql, searchable);
+
+    final Pageable pageable = searchable.hasPageable() ? searchable.getPage() : null;
+    final RowSelection selection = new RowSelection();
+    if (pageable != null) {
+      selection.setFirstRow(pageable.getOffset());
+      selection.setMaxRows(pageable.getPageSize());
+    }
+    final LimitHandler limitHandler = dialect.buildLimitHandler(sql.toString(), selection);
+    final boolean skipRows = pageable != null
+        && !(limitHandler.supportsLimit() && limitHandler.supportsLimitOffset());
+    String querySql = pageable == null ? sql.toString() : limitHandler.getProcessedSql();
+
+    List<T> content = jdbcTemplate.query(querySql, new PreparedStatementSetter() {
+
+      @Override
+      public void setValues(PreparedStatement ps) throws SQLException {
+        int index = 1;
+        if (pageable != null) {
+          index += limitHandler.bindLimitParametersAtStartOfQuery(ps, index);
+        }
+        for (Object param : params) {
+          ps.setObject(index++, param);
+        }
+        if (pageable != null) {
+          index += limitHandler.bindLimitParametersAtEndOfQuery(ps, index);
+          limitHandler.setMaxRows(ps);
+        }
+      }
+    }, new ResultSetExtractor<List<T>>() {
+
+      @Override
+      public List<T> extractData(ResultSet rs) throws SQLException, DataAccessException {
+        List<T> result = new ArrayList<T>();
+        int skip = skipRows ? pageable.getOffset() : 0;
+        int rowNum = 0;
+        while (rs.next()) {
+          if (rowNum++ < skip) {
+            continue;
+          }
+          result.add(rowMapper.mapRow(rs, result.size()));
+          if (pageable != null && result.size() >= pageable.getPageSize()) {
+            break;
+          }
+        }
+        return result;
+      }
+    });
+    QueryMetrics.record(entityClass.getSimpleName(), "findAllByJdbc", searchable, querySql,
+        content.size(), start);
+
+    if (pageable == null) {
+      return new PageImpl<T>(content);
+    }
+    long total;
+    if (content.size() < pageable.getPageSize() && (pageable.getOffset() == 0
+        || !content.isEmpty())) {
+      total = pageable.getOffset() + content.size();
+    } else {
+      total = count(searchable);
+    }
+    return new PageImpl<T>(content, pageable, total);
+  }
+
+  /**
+   * 统计记录数.
+   *
+   * @param searchable
+   *            the searchable
+   * @return the long
+   */
+  public long count(Searchable searchable) {
+    long start = System.nanoTime();
+    prepare(searchable);
+    StringBuilder sql = new StringBuilder("select count(*)").append(mapping.getFromClause());
+    List<Object> params = new ArrayList<Object>();
+    sqlBuilder.appendWhere(sql, searchable, params);
+    Long total = jdbcTemplate.queryForObject(sql.toString(), params.toArray(), Long.class);
+    QueryMetrics.record(entityClass.getSimpleName(), "countByJdbc", searchable, sql.toString(),
+        1, start);
+    return total == null ? 0 : total;
+  }
+
+  /**
+   * 把查询值转换为实体属性类型.
+   *
+   * @param searchable
+   *            the searchable
+   */
+  private void prepare(Searchable searchable) {
+    if (!searchable.isConverted()) {
+      searchable.convert(entityClass);
+    }
+  }
+
+}
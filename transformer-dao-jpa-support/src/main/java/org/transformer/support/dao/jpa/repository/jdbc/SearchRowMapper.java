@@ -0,0 +1,142 @@
+package org.transformer.support.dao.jpa.repository.jdbc;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.convert.TypeDescriptor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.util.ReflectionUtils;
+import org.transformer.support.dao.jpa.search.util.SearchableConvertUtils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按列顺序把结果行映射为DTO或Map，可重复使用，线程安全.
+ * DTO通过setter赋值，值用conversionService转换为setter的参数类型，null值不赋值.
+ *
+ * @param <T>
+ *            the generic type
+ */
+public final class SearchRowMapper<T> implements RowMapper<T> {
+
+  /** DTO类型，映射为Map时为null. */
+  private final Class<T> type;
+
+  /** 列对应的属性. */
+  private final String[] properties;
+
+  /** 列对应的setter. */
+  private final Method[] setters;
+
+  /** setter参数类型. */
+  private final TypeDescriptor[] targetTypes;
+
+  /**
+   * Instantiates a new search row mapper.
+   *
+   * @param type
+   *            the type
+   * @param properties
+   *            the properties
+   */
+  private SearchRowMapper(Class<T> type, String[] properties) {
+    this.type = type;
+    this.properties = properties;
+    this.setters = new Method[properties.length];
+    this.targetTypes = new TypeDescriptor[properties.length];
+    if (type != null) {
+      for (int i = 0; i < properties.length; i++) {
+        PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(type, properties[i]);
+        if (descriptor == null || descriptor.getWriteMethod() == null) {
+          throw new IllegalArgumentException(
+              "no writable property [" + properties[i] + "] in " + type.getName());
+        }
+        setters[i] = descriptor.getWriteMethod();
+        ReflectionUtils.makeAccessible(setters[i]);
+        targetTypes[i] = new TypeDescriptor(new MethodParameter(setters[i], 0));
+      }
+    }
+  }
+
+  /**
+   * 映射为DTO，列按properties的顺序.
+   *
+   * @param <D>
+   *            the generic type
+   * @param type
+   *            DTO类型，需要无参构造方法
+   * @param properties
+   *            列对应的DTO属性
+   * @return the search row mapper
+   */
+  public static <D> SearchRowMapper<D> forType(Class<D> type, String... properties) {
+    return new SearchRowMapper<D>(type, properties);
+  }
+
+  /**
+   * 映射为Map，key为属性，按列顺序.
+   *
+   * @param properties
+   *            列对应的key
+   * @return the search row mapper
+   */
+  public static SearchRowMapper<Map<String, Object>> forMap(String... properties) {
+    return new SearchRowMapper<Map<String, Object>>(null, properties);
+  }
+
+  /**
+   * 列对应的属性.
+   *
+   * @return the properties
+   */
+  public String[] getProperties() {
+    return properties.clone();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public T mapRow(ResultSet rs, int rowNum) throws SQLException {
+    if (type == null) {
+      Map<String, Object> row = new LinkedHashMap<String, Object>(properties.length * 2);
+      for (int i = 0; i < properties.length; i++) {
+        row.put(properties[i], JdbcUtils.getResultSetValue(rs, i + 1));
+      }
+      return (T) row;
+    }
+    T row = BeanUtils.instantiate(type);
+    for (int i = 0; i < properties.length; i++) {
+      Object value = JdbcUtils.getResultSetValue(rs, i + 1);
+      if (value != null) {
+        ReflectionUtils.invokeMethod(setters[i], row, convert(value, targetTypes[i]));
+      }
+    }
+    return row;
+  }
+
+  /**
+   * 转换为setter参数类型，按序号保存的枚举单独处理.
+   *
+   * @param value
+   *            the value
+   * @param targetType
+   *            the target type
+   * @return the object
+   */
+  private static Object convert(Object value, TypeDescriptor targetType) {
+    Class<?> target = targetType.getObjectType();
+    if (target.isInstance(value)) {
+      return value;
+    }
+    if (target.isEnum() && value instanceof Number) {
+      return target.getEnumConstants()[((Number) value).intValue()];
+    }
+    return SearchableConvertUtils.getConversionService().convert(value,
+        TypeDescriptor.forObject(value), targetType);
+  }
+
+}
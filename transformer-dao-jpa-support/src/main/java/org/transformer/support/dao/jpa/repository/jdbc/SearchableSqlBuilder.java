@@ -0,0 +1,195 @@
+package org.transformer.support.dao.jpa.repository.jdbc;
+
+import org.springframework.data.domain.Sort;
+import org.transformer.support.dao.jpa.search.SearchOperator;
+import org.transformer.support.dao.jpa.search.Searchable;
+import org.transformer.support.dao.jpa.search.exception.SearchException;
+import org.transformer.support.dao.jpa.search.filter.AndCondition;
+import org.transformer.support.dao.jpa.search.filter.Condition;
+import org.transformer.support.dao.jpa.search.filter.OrCondition;
+import org.transformer.support.dao.jpa.search.filter.SearchFilter;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 把Searchable转换为sql，条件的语义与DefaultSearchCallback一致，参数为jdbc位置参数.
+ * 不支持customQl条件(其内容是jpql).
+ *
+ */
+final class SearchableSqlBuilder {
+
+  /** The mapping. */
+  private final EntityTableMapping mapping;
+
+  /**
+   * Instantiates a new searchable sql builder.
+   *
+   * @param mapping
+   *            the mapping
+   */
+  SearchableSqlBuilder(EntityTableMapping mapping) {
+    this.mapping = mapping;
+  }
+
+  /**
+   * 生成查询条件.
+   *
+   * @param sql
+   *            the sql
+   * @param searchable
+   *            the searchable
+   * @param params
+   *            参数，按顺序添加
+   */
+  void appendWhere(StringBuilder sql, Searchable searchable, List<Object> params) {
+    if (!searchable.hasSearchFilter()) {
+      return;
+    }
+    for (SearchFilter searchFilter : searchable.getSearchFilters()) {
+      StringBuilder condition = new StringBuilder();
+      if (appendFilter(condition, searchFilter, params)) {
+        sql.append(" and ").append(condition);
+      }
+    }
+  }
+
+  /**
+   * 生成排序.
+   *
+   * @param sql
+   *            the sql
+   * @param searchable
+   *            the searchable
+   */
+  void appendOrder(StringBuilder sql, Searchable searchable) {
+    if (searchable.hashSort()) {
+      sql.append(" order by ");
+      for (Sort.Order order : searchable.getSort()) {
+        sql.append(mapping.getColumn(order.getProperty(), order.getProperty()).getName())
+            .append(' ').append(order.getDirection().name().toLowerCase()).append(", ");
+      }
+      sql.delete(sql.length() - 2, sql.length());
+    }
+  }
+
+  /**
+   * Append filter.
+   *
+   * @param sql
+   *            the sql
+   * @param searchFilter
+   *            the search filter
+   * @param params
+   *            the params
+   * @return 是否生成了条件，custom条件不生成
+   */
+  private boolean appendFilter(StringBuilder sql, SearchFilter searchFilter,
+      List<Object> params) {
+    if (searchFilter instanceof Condition) {
+      return appendCondition(sql, (Condition) searchFilter, params);
+    }
+    List<SearchFilter> filters;
+    String junction;
+    if (searchFilter instanceof OrCondition) {
+      filters = ((OrCondition) searchFilter).getOrFilters();
+      junction = " or ";
+    } else if (searchFilter instanceof AndCondition) {
+      filters = ((AndCondition) searchFilter).getAndFilters();
+      junction = " and ";
+    } else {
+      return false;
+    }
+    int start = sql.length();
+    sql.append('(');
+    boolean isFirst = true;
+    for (SearchFilter filter : filters) {
+      StringBuilder condition = new StringBuilder();
+      if (appendFilter(condition, filter, params)) {
+        if (!isFirst) {
+          sql.append(junction);
+        }
+        sql.append(condition);
+        isFirst = false;
+      }
+    }
+    if (isFirst) {
+      sql.setLength(start);
+      return false;
+    }
+    sql.append(')');
+    return true;
+  }
+
+  /**
+   * Append condition.
+   *
+   * @param sql
+   *            the sql
+   * @param condition
+   *            the condition
+   * @param params
+   *            the params
+   * @return true, if successful
+   */
+  private boolean appendCondition(StringBuilder sql, Condition condition, List<Object> params) {
+    SearchOperator operator = condition.getOperator();
+    if (operator == SearchOperator.custom) {
+      return false;
+    }
+    if (operator == SearchOperator.customQl) {
+      throw new SearchException(
+          "customQl condition [" + condition.getEntityProperty() + "] is not supported by jdbc");
+    }
+    EntityTableMapping.Column column = mapping.getColumn(condition.getSearchProperty(),
+        condition.getEntityProperty());
+    if (condition.isUnaryFilter()) {
+      sql.append(column.getName()).append(' ').append(operator.getSymbol());
+      return true;
+    }
+    Object value = condition.getValue();
+    if (operator == SearchOperator.in || operator == SearchOperator.notIn) {
+      Collection<?> values = value instanceof Collection ? (Collection<?>) value
+          : Collections.singletonList(value);
+      if (values.isEmpty()) {
+        sql.append(operator == SearchOperator.in ? "1=0" : "1=1");
+        return true;
+      }
+      sql.append(column.getName()).append(' ').append(operator.getSymbol()).append(" (");
+      for (Object element : values) {
+        sql.append("?, ");
+        params.add(column.toJdbcValue(element));
+      }
+      sql.setLength(sql.length() - 2);
+      sql.append(')');
+      return true;
+    }
+    sql.append(column.getName()).append(' ').append(operator.getSymbol()).append(" ?");
+    params.add(formatValue(operator, column.toJdbcValue(value)));
+    return true;
+  }
+
+  /**
+   * 与DefaultSearchCallback一致的like值.
+   *
+   * @param operator
+   *            the operator
+   * @param value
+   *            the value
+   * @return the object
+   */
+  private static Object formatValue(SearchOperator operator, Object value) {
+    if (operator == SearchOperator.like || operator == SearchOperator.notLike) {
+      return "%" + value + "%";
+    }
+    if (operator == SearchOperator.prefixLike || operator == SearchOperator.prefixNotLike) {
+      return value + "%";
+    }
+    if (operator == SearchOperator.suffixLike || operator == SearchOperator.suffixNotLike) {
+      return "%" + value;
+    }
+    return value;
+  }
+
+}
@@ -0,0 +1,270 @@
+package org.transformer.support.dao.jpa.repository.support;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 异步查询(如BaseService.findAllAsync)的执行器，有界并带统计.
+ * JVM支持虚拟线程(Java 21+)时每个查询一个虚拟线程，否则使用固定大小的线程池.
+ * 最多maxConcurrency个查询同时执行(不要超过数据库连接池大小)，
+ * 另有queueSize个可以排队，再提交的查询直接以RejectedExecutionException失败.
+ *
+ */
+public final class AsyncQueryExecutor {
+
+  /** 日志. */
+  private static Logger logger = LoggerFactory.getLogger(AsyncQueryExecutor.class);
+
+  /** 默认同时执行的查询数. */
+  public static final int DEFAULT_MAX_CONCURRENCY = 16;
+
+  /** 默认排队的查询数. */
+  public static final int DEFAULT_QUEUE_SIZE = 256;
+
+  /** The instance. */
+  private static volatile AsyncQueryExecutor instance = new AsyncQueryExecutor(
+      DEFAULT_MAX_CONCURRENCY, DEFAULT_QUEUE_SIZE);
+
+  /** The executor. */
+  private final ExecutorService executor;
+
+  /** 是否使用虚拟线程. */
+  private final boolean virtualThreads;
+
+  /** 执行许可，虚拟线程时限制同时执行的查询数. */
+  private final Semaphore running;
+
+  /** 提交许可，限制执行和排队的查询总数. */
+  private final Semaphore admitted;
+
+  /** The submitted. */
+  private final AtomicLong submitted = new AtomicLong();
+
+  /** The rejected. */
+  private final AtomicLong rejected = new AtomicLong();
+
+  /** The failed. */
+  private final AtomicLong failed = new AtomicLong();
+
+  /** The active. */
+  private final AtomicLong active = new AtomicLong();
+
+  /** 排队时间. */
+  private final LatencyHistogram queueTime = new LatencyHistogram();
+
+  /** 执行时间. */
+  private final LatencyHistogram runTime = new LatencyHistogram();
+
+  /**
+   * Instantiates a new async query executor.
+   *
+   * @param maxConcurrency
+   *            同时执行的查询数
+   * @param queueSize
+   *            排队的查询数
+   */
+  private AsyncQueryExecutor(int maxConcurrency, int queueSize) {
+    ExecutorService virtualExecutor = newVirtualThreadExecutor();
+    this.virtualThreads = virtualExecutor != null;
+    if (virtualThreads) {
+      this.executor = virtualExecutor;
+    } else {
+      ThreadPoolExecutor threadPool = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60L,
+          TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueSize),
+          new ThreadFactoryBuilder().setNameFormat("async-query-%d").setDaemon(true).build());
+      threadPool.allowCoreThreadTimeOut(true);
+      this.executor = threadPool;
+    }
+    this.running = new Semaphore(maxConcurrency);
+    this.admitted = new Semaphore(maxConcurrency + queueSize);
+  }
+
+  /**
+   * 重新配置执行器，原执行器中的查询继续执行完.
+   *
+   * @param maxConcurrency
+   *            同时执行的查询数
+   * @param queueSize
+   *            排队的查询数
+   */
+  public static void configure(int maxConcurrency, int queueSize) {
+    AsyncQueryExecutor oldInstance = instance;
+    instance = new AsyncQueryExecutor(maxConcurrency, queueSize);
+    oldInstance.executor.shutdown();
+  }
+
+  /**
+   * Gets the instance.
+   *
+   * @return the instance
+   */
+  public static AsyncQueryExecutor getInstance() {
+    return instance;
+  }
+
+  /**
+   * 异步执行查询.
+   *
+   * @param <T>
+   *            the generic type
+   * @param query
+   *            the query
+   * @return 查询结果，执行器已满时以RejectedExecutionException失败
+   */
+  public static <T> CompletableFuture<T> supply(Callable<T> query) {
+    return instance.submit(query);
+  }
+
+  /**
+   * Submit.
+   *
+   * @param <T>
+   *            the generic type
+   * @param query
+   *            the query
+   * @return the completable future
+   */
+  private <T> CompletableFuture<T> submit(final Callable<T> query) {
+    final CompletableFuture<T> future = new CompletableFuture<T>();
+    submitted.incrementAndGet();
+    if (!admitted.tryAcquire()) {
+      rejected.incrementAndGet();
+      future.completeExceptionally(new RejectedExecutionException("async query executor is full"));
+      return future;
+    }
+    final long submitNanos = System.nanoTime();
+    try {
+      executor.execute(new Runnable() {
+
+        @Override
+        public void run() {
+          try {
+            if (virtualThreads) {
+              running.acquireUninterruptibly();
+            }
+            try {
+              long startNanos = System.nanoTime();
+              queueTime.record(startNanos - submitNanos);
+              active.incrementAndGet();
+              try {
+                future.complete(query.call());
+              } catch (Throwable throwable) {
+                failed.incrementAndGet();
+                future.completeExceptionally(throwable);
+              } finally {
+                active.decrementAndGet();
+                runTime.record(System.nanoTime() - startNanos);
+              }
+            } finally {
+              if (virtualThreads) {
+                running.release();
+              }
+            }
+          } finally {
+            admitted.release();
+          }
+        }
+      });
+    } catch (RejectedExecutionException exception) {
+      admitted.release();
+      rejected.incrementAndGet();
+      future.completeExceptionally(exception);
+    }
+    return future;
+  }
+
+  /**
+   * 通过反射创建虚拟线程执行器，JVM不支持时返回null.
+   *
+   * @return the executor service
+   */
+  private static ExecutorService newVirtualThreadExecutor() {
+    try {
+      Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) method.invoke(null);
+    } catch (NoSuchMethodException exception) {
+      return null;
+    } catch (Exception exception) {
+      logger.warn("virtual threads are not available, use platform threads", exception);
+      return null;
+    }
+  }
+
+  /**
+   * 是否使用虚拟线程.
+   *
+   * @return true, if is virtual threads
+   */
+  public boolean isVirtualThreads() {
+    return virtualThreads;
+  }
+
+  /**
+   * 提交的查询数.
+   *
+   * @return the submitted count
+   */
+  public long getSubmittedCount() {
+    return submitted.get();
+  }
+
+  /**
+   * 因执行器已满被拒绝的查询数.
+   *
+   * @return the rejected count
+   */
+  public long getRejectedCount() {
+    return rejected.get();
+  }
+
+  /**
+   * 执行失败的查询数.
+   *
+   * @return the failed count
+   */
+  public long getFailedCount() {
+    return failed.get();
+  }
+
+  /**
+   * 正在执行的查询数.
+   *
+   * @return the active count
+   */
+  public long getActiveCount() {
+    return active.get();
+  }
+
+  /**
+   * 排队时间分布.
+   *
+   * @return the queue time
+   */
+  public LatencyHistogram getQueueTime() {
+    return queueTime;
+  }
+
+  /**
+   * 执行时间分布.
+   *
+   * @return the run time
+   */
+  public LatencyHistogram getRunTime() {
+    return runTime;
+  }
+
+}
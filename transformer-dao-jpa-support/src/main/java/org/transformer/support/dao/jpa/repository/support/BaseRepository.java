@@ -1,8 +1,21 @@
 package org.transformer.support.dao.jpa.repository.support;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+
 import org.apache.commons.lang3.ArrayUtils;
+import org.hibernate.ScrollableResults;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
@@ -11,28 +24,70 @@ import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.query.QueryUtils;
 import org.springframework.data.jpa.repository.support.JpaEntityInformation;
 import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
 import org.transformer.support.dao.jpa.repository.BaseDao;
 import org.transformer.support.dao.jpa.repository.RepositoryHelper;
+import org.transformer.support.dao.jpa.repository.callback.DefaultSearchCallback;
 import org.transformer.support.dao.jpa.repository.callback.SearchCallback;
+import org.transformer.support.dao.jpa.repository.jdbc.EntityUpserter;
+import org.transformer.support.dao.jpa.repository.jdbc.JdbcSearchQuery;
+import org.transformer.support.dao.jpa.repository.support.annotation.EnableIdBloomFilter;
+import org.transformer.support.dao.jpa.repository.support.annotation.EnableNearCache;
 import org.transformer.support.dao.jpa.repository.support.annotation.QueryJoin;
+import org.transformer.support.dao.jpa.search.KeysetPageRequest;
+import org.transformer.support.dao.jpa.search.KeysetSlice;
+import org.transformer.support.dao.jpa.search.LazyCountPage;
 import org.transformer.support.dao.jpa.search.Searchable;
-import org.transformer.util.Reflections;
+import org.transformer.support.dao.jpa.search.exception.SearchException;
+import org.transformer.support.dao.jpa.search.util.EntityPropertyConverters;
+import org.transformer.support.dao.jpa.search.util.KeysetCursorUtils;
+import org.transformer.support.dao.jpa.search.util.SearchableKeyUtils;
+import org.transformer.support.util.HibernateUtils;
 
 import java.io.Serializable;
+import java.lang.reflect.AccessibleObject;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.persistence.Cache;
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
 import javax.persistence.NoResultException;
+import javax.persistence.PersistenceException;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.ManagedType;
+import javax.persistence.metamodel.SingularAttribute;
 
 /**
  * <p>
@@ -54,12 +109,39 @@ public class BaseRepository<M, I extends Serializable> extends SimpleJpaReposito
   /** The Constant DELETE_ALL_QUERY_STRING. */
   public static final String DELETE_ALL_QUERY_STRING = "delete from %s x where x in (?1)";
 
+  /** The Constant DELETE_BY_IDS_QUERY_STRING. */
+  public static final String DELETE_BY_IDS_QUERY_STRING = "delete from %s x where x.%s in (?1)";
+
+  /** 默认批量删除每批主键数. */
+  public static final int DEFAULT_DELETE_CHUNK_SIZE = 1000;
+
   /** The Constant FIND_QUERY_STRING. */
   public static final String FIND_QUERY_STRING = "from %s x where 1=1 ";
 
   /** The Constant COUNT_QUERY_STRING. */
   public static final String COUNT_QUERY_STRING = "select count(x) from %s x where 1=1 ";
 
+  /** The Constant LIMITED_COUNT_QUERY_STRING. */
+  public static final String LIMITED_COUNT_QUERY_STRING = "select x.%s from %s x where 1=1 ";
+
+  /** 默认流式查询每批记录数. */
+  public static final int DEFAULT_STREAM_BATCH_SIZE = 1000;
+
+  /** 默认并行count查询超时时间(毫秒). */
+  public static final long DEFAULT_COUNT_TIMEOUT = 3000;
+
+  /** 默认根据主键批量查询每批主键数. */
+  public static final int DEFAULT_MULTI_GET_CHUNK_SIZE = 512;
+
+  /** 默认upsert每条语句的行数. */
+  public static final int DEFAULT_UPSERT_BATCH_SIZE = 500;
+
+  /** 按主键判断是否存在的ql. */
+  public static final String EXISTS_QUERY_STRING = "select 1 from %s x where x.%s = ?1";
+
+  /** 按主键查询(EntityManager.find)在慢查询日志中的描述. */
+  private static final String FIND_ONE_DESCRIPTION = "find %s by %s";
+
   /** The em. */
   private final EntityManager em;
 
@@ -69,6 +151,9 @@ public class BaseRepository<M, I extends Serializable> extends SimpleJpaReposito
   /** The repository helper. */
   private final RepositoryHelper repositoryHelper;
 
+  /** jdbc查询，第一次使用时创建. */
+  private volatile JdbcSearchQuery<M> jdbcSearchQuery;
+
   /** The entity class. */
   protected Class<M> entityClass;
 
@@ -84,12 +169,94 @@ public class BaseRepository<M, I extends Serializable> extends SimpleJpaReposito
   /** 统计QL. */
   private String countAllQl;
 
+  /** 有统计上限时的统计QL，自定义了查询ql时为null，只能精确统计. */
+  private String limitedCountAllQl;
+
+  /** 统计上限，0表示精确统计. */
+  private long countLimit = 0;
+
+  /** 是否与内容查询并行执行count查询. */
+  private boolean parallelCount = false;
+
+  /** 并行count查询的超时时间(毫秒)，超时后总数未知. */
+  private long countTimeout = DEFAULT_COUNT_TIMEOUT;
+
+  /** 根据主键批量删除的ql. */
+  private final String deleteByIdsQl;
+
+  /** The exists ql. */
+  private final String existsQl;
+
+  /** 按主键查询在慢查询日志中的描述. */
+  private final String findOneQl;
+
+  /** 删除时是否需要生命周期处理(回调、级联). */
+  private final boolean removeLifecycle;
+
+  /** 批量删除每批主键数. */
+  private int deleteChunkSize = DEFAULT_DELETE_CHUNK_SIZE;
+
+  /** save(Iterable)每批实体数，0表示不分批. */
+  private int saveBatchSize = 0;
+
+  /** 根据主键批量查询每批主键数. */
+  private int multiGetChunkSize = DEFAULT_MULTI_GET_CHUNK_SIZE;
+
+  /** 合并相同的并发只读查询，null为不合并. */
+  private QueryCoalescer queryCoalescer;
+
+  /** 是否也合并实体查询. */
+  private boolean coalesceEntityReads = false;
+
+  /** count(Searchable)缓存，未开启为null. */
+  private CountCache countCache;
+
+  /** count(Searchable)默认可以接受的过期时间(毫秒). */
+  private long countMaxStaleness = 0;
+
+  /** 实体的表(hibernate query spaces)，第一次写入时获取. */
+  private volatile List<Serializable> querySpaces;
+
+  /** upsert每条语句的行数. */
+  private int upsertBatchSize = DEFAULT_UPSERT_BATCH_SIZE;
+
+  /** upsert，第一次使用时创建. */
+  private volatile EntityUpserter<M> entityUpserter;
+
+  /**
+   * 流式查询的jdbc fetch size，Integer.MIN_VALUE为mysql流式结果集，
+   * 0为按方言选择，第一次流式查询时确定.
+   */
+  private volatile int streamFetchSize = 0;
+
   /** The joins. */
   private QueryJoin[] joins;
 
+  /** 是否连接了集合属性，是则查询去重、按countDistinct统计. */
+  private boolean collectionJoin = false;
+
+  /** 是否抓取了集合属性，是则不能分页(hibernate会在内存中分页). */
+  private boolean collectionFetch = false;
+
+  /** 是否自定义了查询所有的ql. */
+  private boolean customFindAllQl = false;
+
+  /** 是否自定义了统计的ql. */
+  private boolean customCountAllQl = false;
+
   /** The search callback. */
   private SearchCallback searchCallback = SearchCallback.DEFAULT;
 
+  /** 近端缓存，未开启为null. */
+  private final NearCache nearCache;
+
+  /** 主键布隆过滤器，未开启为null. */
+  private final IdBloomFilter idBloomFilter;
+
+  /** 投影类型对应的查询ql. */
+  private final ConcurrentMap<Class<?>, String> projectionQls =
+      new ConcurrentHashMap<Class<?>, String>();
+
   /**
    * Instantiates a new simple base repository.
    * 
@@ -112,6 +279,30 @@ public class BaseRepository<M, I extends Serializable> extends SimpleJpaReposito
 
     findAllQl = String.format(FIND_QUERY_STRING, entityName);
     countAllQl = String.format(COUNT_QUERY_STRING, entityName);
+    limitedCountAllQl = String.format(LIMITED_COUNT_QUERY_STRING, idName, entityName);
+    deleteByIdsQl = String.format(DELETE_BY_IDS_QUERY_STRING, entityName, idName);
+    existsQl = String.format(EXISTS_QUERY_STRING, entityName, idName);
+    findOneQl = String.format(FIND_ONE_DESCRIPTION, entityName, idName);
+    removeLifecycle = RemoveLifecycleDetector.hasRemoveLifecycle(entityClass);
+
+    EnableNearCache enableNearCache = AnnotationUtils.findAnnotation(entityClass,
+        EnableNearCache.class);
+    if (enableNearCache != null) {
+      Assert.isTrue(Serializable.class.isAssignableFrom(entityClass),
+          "near cached entity must be serializable : " + entityClass);
+      AccessibleObject lazyMember = LazyAssociationDetector.findLazyMember(entityClass);
+      Assert.isNull(lazyMember, "near cached entity must not have lazy associations : "
+          + lazyMember);
+      nearCache = NearCache.forEntity(entityName, getQuerySpaces(),
+          enableNearCache.maximumSize(), enableNearCache.expireAfterWrite());
+    } else {
+      nearCache = null;
+    }
+
+    EnableIdBloomFilter enableIdBloomFilter = AnnotationUtils.findAnnotation(entityClass,
+        EnableIdBloomFilter.class);
+    idBloomFilter = enableIdBloomFilter == null ? null : IdBloomFilter.forEntity(
+        entityManager.getEntityManagerFactory(), entityName, idName, enableIdBloomFilter);
   }
 
   /**
@@ -122,6 +313,7 @@ public class BaseRepository<M, I extends Serializable> extends SimpleJpaReposito
    */
   public void setSearchCallback(SearchCallback searchCallback) {
     this.searchCallback = searchCallback;
+    this.projectionQls.clear();
   }
 
   /**
@@ -131,6 +323,8 @@ public class BaseRepository<M, I extends Serializable> extends SimpleJpaReposito
    */
   public void setFindAllQl(String findAllQl) {
     this.findAllQl = findAllQl;
+    this.limitedCountAllQl = null;
+    this.customFindAllQl = true;
   }
 
   /**
@@ -141,6 +335,137 @@ public class BaseRepository<M, I extends Serializable> extends SimpleJpaReposito
    */
   public void setCountAllQl(String countAllQl) {
     this.countAllQl = countAllQl;
+    this.limitedCountAllQl = null;
+    this.customCountAllQl = true;
+  }
+
+  /**
+   * 设置统计上限，超过上限的总数按上限返回并标记为估计值，0表示精确统计.
+   * 
+   * @param countLimit
+   *            the new count limit
+   */
+  public void setCountLimit(long countLimit) {
+    this.countLimit = countLimit;
+  }
+
+  /**
+   * 设置是否在独立的EntityManager上与内容查询并行执行count查询.
+   * 并行的count不参与当前事务，看不到当前事务未提交的修改.
+   * 
+   * @param parallelCount
+   *            the new parallel count
+   */
+  public void setParallelCount(boolean parallelCount) {
+    this.parallelCount = parallelCount;
+  }
+
+  /**
+   * 设置并行count查询的超时时间(毫秒)，从提交count查询开始计时.
+   * 
+   * @param countTimeout
+   *            the new count timeout
+   */
+  public void setCountTimeout(long countTimeout) {
+    this.countTimeout = countTimeout;
+  }
+
+  /**
+   * 设置流式查询的jdbc fetch size，0(默认)按方言选择：MySQL使用Integer.MIN_VALUE(流式结果集)，
+   * 其他数据库(h2、postgresql等不接受负数)使用{@link #DEFAULT_STREAM_BATCH_SIZE}.
+   * 
+   * @param streamFetchSize
+   *            the new stream fetch size
+   */
+  public void setStreamFetchSize(int streamFetchSize) {
+    this.streamFetchSize = streamFetchSize;
+  }
+
+  /**
+   * 设置save(Iterable)每批flush并clear的实体数，0表示不分批.
+   * 
+   * @param saveBatchSize
+   *            the new save batch size
+   */
+  public void setSaveBatchSize(int saveBatchSize) {
+    this.saveBatchSize = saveBatchSize;
+  }
+
+  /**
+   * 设置是否合并相同的并发统计及投影查询，同一时刻只有一个调用者查询数据库，
+   * 其他调用者得到结果的副本，合并次数见{@link QueryCoalescer#all()}.
+   * 
+   * @param coalesceReads
+   *            the new coalesce reads
+   */
+  public void setCoalesceReads(boolean coalesceReads) {
+    this.queryCoalescer = coalesceReads ? QueryCoalescer.forName(entityName) : null;
+    repositoryHelper.setQueryCoalescer(queryCoalescer);
+  }
+
+  /**
+   * 设置是否也合并实体查询，其他调用者得到游离态副本，需要同时开启coalesceReads.
+   * 
+   * @param coalesceEntityReads
+   *            the new coalesce entity reads
+   */
+  public void setCoalesceEntityReads(boolean coalesceEntityReads) {
+    this.coalesceEntityReads = coalesceEntityReads;
+    repositoryHelper.setCoalesceEntityReads(coalesceEntityReads);
+  }
+
+  /**
+   * 设置count(Searchable)缓存，缓存统计见{@link CountCache#all()}.
+   * 
+   * @param countCacheSize
+   *            最大缓存条件数，0表示不缓存
+   * @param countMaxStaleness
+   *            默认可以接受的过期时间(毫秒)
+   * @param countCacheExpireAfterWrite
+   *            缓存的结果写入后的过期时间(秒)
+   */
+  public void setCountCache(long countCacheSize, long countMaxStaleness,
+      long countCacheExpireAfterWrite) {
+    Assert.isTrue(countCacheSize >= 0 && countMaxStaleness >= 0,
+        "countCacheSize and countMaxStaleness must not be negative");
+    Assert.isTrue(countCacheExpireAfterWrite > 0, "countCacheExpireAfterWrite must be positive");
+    this.countCache = countCacheSize > 0 ? CountCache.forEntity(entityName,
+        getQuerySpaces().toArray(new Serializable[0]), countCacheSize,
+        countCacheExpireAfterWrite) : null;
+    this.countMaxStaleness = countMaxStaleness;
+  }
+
+  /**
+   * 设置upsertAll每条语句的行数.
+   * 
+   * @param upsertBatchSize
+   *            the new upsert batch size
+   */
+  public void setUpsertBatchSize(int upsertBatchSize) {
+    Assert.isTrue(upsertBatchSize > 0, "upsertBatchSize must be positive");
+    this.upsertBatchSize = upsertBatchSize;
+  }
+
+  /**
+   * 设置根据主键批量删除时每批的主键数.
+   * 
+   * @param deleteChunkSize
+   *            the new delete chunk size
+   */
+  public void setDeleteChunkSize(int deleteChunkSize) {
+    Assert.isTrue(deleteChunkSize > 0, "deleteChunkSize must be positive");
+    this.deleteChunkSize = deleteChunkSize;
+  }
+
+  /**
+   * 设置根据主键批量查询时每批in查询的主键数.
+   * 
+   * @param multiGetChunkSize
+   *            the new multi get chunk size
+   */
+  public void setMultiGetChunkSize(int multiGetChunkSize) {
+    Assert.isTrue(multiGetChunkSize > 0, "multiGetChunkSize must be positive");
+    this.multiGetChunkSize = multiGetChunkSize;
   }
 
   /**
@@ -151,6 +476,81 @@ public class BaseRepository<M, I extends Serializable> extends SimpleJpaReposito
    */
   public void setJoins(QueryJoin[] joins) {
     this.joins = joins;
+    this.collectionJoin = false;
+    this.collectionFetch = false;
+    if (joins == null || joins.length == 0) {
+      return;
+    }
+
+    boolean fetchJoin = false;
+    for (QueryJoin join : joins) {
+      fetchJoin |= join.fetch();
+      if (em.getMetamodel().entity(entityClass).getAttribute(join.property()).isCollection()) {
+        collectionJoin = true;
+        collectionFetch |= join.fetch();
+      }
+    }
+    if (!fetchJoin) {
+      // 只连接不抓取的声明与之前一样只作用于Specification查询
+      return;
+    }
+    // 未自定义ql时，Searchable查询也使用抓取的连接
+    String distinct = collectionFetch ? "distinct " : "";
+    if (!customFindAllQl) {
+      findAllQl = "select " + distinct + "x from " + entityName + " x" + joinClause(true)
+          + " where 1=1 ";
+    }
+    if (!customCountAllQl) {
+      countAllQl = "select count(" + distinct + "x) from " + entityName + " x"
+          + joinClause(false) + " where 1=1 ";
+    }
+    if (!customFindAllQl && !customCountAllQl) {
+      limitedCountAllQl = "select " + distinct + "x." + idName + " from " + entityName + " x"
+          + joinClause(false) + " where 1=1 ";
+    }
+  }
+
+  /**
+   * Searchable查询的连接ql片段，别名为x，只包含标注了fetch的连接.
+   * 
+   * @param fetch
+   *            是否抓取，count查询只连接
+   * @return the string
+   */
+  private String joinClause(boolean fetch) {
+    StringBuilder clause = new StringBuilder();
+    for (QueryJoin join : joins) {
+      if (!join.fetch()) {
+        continue;
+      }
+      clause.append(' ').append(join.joinType().name().toLowerCase()).append(" join ");
+      if (fetch && join.fetch()) {
+        clause.append("fetch ");
+      }
+      clause.append("x.").append(join.property());
+    }
+    return clause.toString();
+  }
+
+  /**
+   * 抓取集合属性时不能分页，hibernate会取出所有记录在内存中分页(HHH000104).
+   * 
+   * @param pageable
+   *            the pageable
+   */
+  private void assertPageableFetch(Pageable pageable) {
+    Assert.state(pageable == null || !collectionFetch, "can't page " + entityName
+        + " with a collection fetch join, use @BatchSize or an entity graph instead");
+  }
+
+  /**
+   * 设置实体查询使用的命名实体图.
+   * 
+   * @param entityGraph
+   *            the new entity graph
+   */
+  public void setEntityGraph(String entityGraph) {
+    repositoryHelper.setEntityGraph(entityGraph);
   }
 
   /**
@@ -178,46 +578,262 @@ public class BaseRepository<M, I extends Serializable> extends SimpleJpaReposito
       return;
     }
     super.delete(entity);
+    evictNearCacheAfterCommit(Collections.singletonList(entityInformation.getId(entity)));
+    markWrittenAfterCommit();
   }
 
   /**
    * 根据主键删除相应实体.
+   * 实体没有删除回调、级联删除及集合表时，按deleteChunkSize分批执行delete ... where id in (...)，
+   * 否则逐个加载后em.remove以保留生命周期处理.
    * 
    * @param ids
    *            实体
+   * @return 删除的记录数
    */
   @Transactional
   @Override
-  public void delete(final I[] ids) {
+  public int delete(final I[] ids) {
     if (ArrayUtils.isEmpty(ids)) {
-      return;
+      return 0;
+    }
+    List<I> idList = Arrays.asList(ids);
+    evictNearCacheAfterCommit(idList);
+    markWrittenAfterCommit();
+    int affected = 0;
+    if (removeLifecycle) {
+      for (List<I> chunk : Lists.partition(idList, deleteChunkSize)) {
+        for (M entity : findAll(chunk)) {
+          em.remove(entity);
+          affected++;
+        }
+      }
+      return affected;
+    }
+
+    // 先把未提交的修改刷到数据库，再批量删除
+    repositoryHelper.flush();
+    for (List<I> chunk : Lists.partition(idList, deleteChunkSize)) {
+      affected += repositoryHelper.batchUpdate(deleteByIdsQl, chunk);
+      detachAll(chunk);
     }
-    List<M> models = new ArrayList<M>();
+    return affected;
+  }
+
+  /**
+   * 批量delete语句不经过持久化上下文，把已加载的实体变为游离态，避免后续读到已删除的实体.
+   * 二级缓存由hibernate在批量操作后按实体region失效.
+   * 
+   * @param ids
+   *            the ids
+   */
+  private void detachAll(List<I> ids) {
+    SessionImplementor session = em.unwrap(SessionImplementor.class);
+    EntityPersister persister = session.getFactory().getEntityPersister(entityClass.getName());
+    PersistenceContext persistenceContext = session.getPersistenceContext();
     for (I id : ids) {
-      M model = null;
-      try {
-        model = entityClass.newInstance();
-      } catch (Exception e) {
-        throw new RuntimeException("batch delete " + entityClass + " error", e);
+      Object entity = persistenceContext.getEntity(session.generateEntityKey(id, persister));
+      if (entity != null) {
+        em.detach(entity);
       }
-      try {
-        Reflections.setFieldValue(model, idName, id);
-      } catch (Exception e) {
-        throw new RuntimeException("batch delete " + entityClass + " error, can not set id", e);
+    }
+  }
+
+  @Transactional
+  @Override
+  public <S extends M> S save(S entity) {
+    boolean isNew = entityInformation.isNew(entity);
+    S saved = super.save(entity);
+    putIdBloomFilter(saved);
+    if (!isNew) {
+      evictNearCacheAfterCommit(Collections.singletonList(entityInformation.getId(saved)));
+    }
+    markWrittenAfterCommit();
+    return saved;
+  }
+
+  /**
+   * 批量保存，配置了saveBatchSize时按批flush并clear，否则与默认实现相同.
+   * 
+   * @param entities
+   *            the entities
+   * @return the list
+   */
+  @Transactional
+  @Override
+  public <S extends M> List<S> save(Iterable<S> entities) {
+    if (saveBatchSize > 0) {
+      return save(entities, saveBatchSize);
+    }
+    return super.save(entities);
+  }
+
+  @Transactional
+  @Override
+  public <S extends M> List<S> save(Iterable<S> entities, int batchSize) {
+    Assert.isTrue(batchSize > 0, "batchSize must be positive");
+    List<S> result = new ArrayList<S>();
+    if (entities != null) {
+      saveInBatches(entities, batchSize, result);
+    }
+    return result;
+  }
+
+  @Transactional
+  @Override
+  public <S extends M> long saveAll(Iterable<S> entities, int batchSize) {
+    Assert.isTrue(batchSize > 0, "batchSize must be positive");
+    if (entities == null) {
+      return 0;
+    }
+    return saveInBatches(entities, batchSize, null);
+  }
+
+  /**
+   * 按批保存，每batchSize个实体flush并clear一次.
+   * result为null时不收集保存后的实体，也不记录更新的主键(提交后失效整个近端缓存)，
+   * 内存占用与实体总数无关.
+   * 
+   * @param entities
+   *            the entities
+   * @param batchSize
+   *            每批实体数
+   * @param result
+   *            保存后的实体，为null时不收集
+   * @return 保存的实体数
+   */
+  private <S extends M> long saveInBatches(Iterable<S> entities, int batchSize, List<S> result) {
+    long start = System.currentTimeMillis();
+    long count = 0;
+    List<I> mergedIds = result == null ? null : new ArrayList<I>();
+    boolean merged = false;
+    for (S entity : entities) {
+      S saved;
+      if (entityInformation.isNew(entity)) {
+        em.persist(entity);
+        saved = entity;
+      } else {
+        saved = em.merge(entity);
+        merged = true;
+        if (mergedIds != null) {
+          mergedIds.add(entityInformation.getId(saved));
+        }
+      }
+      putIdBloomFilter(saved);
+      if (result != null) {
+        result.add(saved);
       }
-      models.add(model);
+      if (++count % batchSize == 0) {
+        repositoryHelper.clear();
+      }
+    }
+    repositoryHelper.clear();
+    if (merged) {
+      evictNearCacheAfterCommit(mergedIds);
     }
-    deleteInBatch(models);
+    if (count > 0) {
+      markWrittenAfterCommit();
+    }
+
+    long elapsed = Math.max(1, System.currentTimeMillis() - start);
+    logger.info("bulk saved {} {} in {}ms, batch size {}, {} rows/s", count, entityName, elapsed,
+        batchSize, count * 1000L / elapsed);
+    return count;
+  }
+
+  @Transactional
+  @Override
+  public int upsertAll(final Iterable<M> entities, final String... updateColumns) {
+    EntityUpserter<M> upserter = entityUpserter;
+    if (upserter == null) {
+      upserter = new EntityUpserter<M>(entityClass, em);
+      entityUpserter = upserter;
+    }
+    int affected = upserter.upsertAll(em, entities, upsertBatchSize, updateColumns);
+    if (idBloomFilter != null) {
+      for (M entity : entities) {
+        I id = entityInformation.getId(entity);
+        if (id == null) {
+          // 自动生成的主键无法得知
+          idBloomFilter.disable();
+          break;
+        }
+        idBloomFilter.put(id);
+      }
+    }
+    evictNearCacheAfterCommit(null);
+    markWrittenAfterCommit();
+    return affected;
   }
 
   @Transactional
   @Override
   public void deleteInBatch(final Iterable<M> entities) {
     super.delete(entities);
+    markWrittenAfterCommit();
+  }
+
+  @Transactional
+  @Override
+  public void deleteAllInBatch() {
+    super.deleteAllInBatch();
+    evictNearCacheAfterCommit(null);
+    markWrittenAfterCommit();
+  }
+
+  /**
+   * 事务提交后失效近端缓存，没有事务时立即失效. 同一事务内的多次写入在提交后一起失效.
+   * 
+   * @param ids
+   *            主键，null表示全部
+   */
+  private void evictNearCacheAfterCommit(Collection<?> ids) {
+    if (nearCache != null) {
+      nearCache.invalidateAfterCommit(ids);
+    }
+  }
+
+  /**
+   * 把实体的主键加入布隆过滤器，在提交前加入，回滚只增加误判.
+   * 
+   * @param entity
+   *            the entity
+   */
+  private void putIdBloomFilter(M entity) {
+    if (idBloomFilter != null) {
+      idBloomFilter.put(entityInformation.getId(entity));
+    }
+  }
+
+  /**
+   * 事务提交后递增实体的表的写计数，使count缓存过期，并清空实体的查询结果缓存区域.
+   */
+  private void markWrittenAfterCommit() {
+    CountCache.markWrittenAfterCommit(getQuerySpaces());
+    repositoryHelper.evictResultCacheAfterCommit();
+  }
+
+  /**
+   * 实体的表(hibernate query spaces)，包括继承及secondary table的表.
+   * 
+   * @return the query spaces
+   */
+  private List<Serializable> getQuerySpaces() {
+    List<Serializable> spaces = querySpaces;
+    if (spaces == null) {
+      SessionFactoryImplementor sessionFactory = (SessionFactoryImplementor) HibernateUtils
+          .getSessionFactory(em.getEntityManagerFactory());
+      spaces = Arrays.asList(
+          sessionFactory.getEntityPersister(entityClass.getName()).getQuerySpaces());
+      querySpaces = spaces;
+    }
+    return spaces;
   }
 
   /**
    * 按照主键查询.
+   * 实体开启了近端缓存时，不在读写事务中(包括repository默认的只读事务)则优先从缓存读取，
+   * 返回的是游离态的副本；读写事务中返回受管理的实体，不读近端缓存.
    * 
    * @param id
    *            主键
@@ -234,14 +850,76 @@ public class BaseRepository<M, I extends Serializable> extends SimpleJpaReposito
     if (id instanceof Long && ((Long) id).longValue() == 0L) {
       return null;
     }
-    return super.findOne(id);
+    // 读写事务中需要受管理的实体，且可能读到本事务的修改，不走近端缓存及主键布隆过滤器
+    if (isReadWriteTransaction()) {
+      return loadOne(id);
+    }
+    if (idBloomFilter != null && !idBloomFilter.mightContain(id)) {
+      return null;
+    }
+    if (nearCache == null) {
+      return recordMiss(loadOne(id));
+    }
+    Object cached = nearCache.get(id);
+    if (cached != null) {
+      return entityClass.cast(cached);
+    }
+    long version = nearCache.version();
+    M entity = recordMiss(loadOne(id));
+    if (entity != null) {
+      nearCache.put(id, (Serializable) entity, version);
+    }
+    return entity;
+  }
+
+  /**
+   * 按主键加载实体(EntityManager.find，可能命中一级、二级缓存)，记录耗时.
+   * 
+   * @param id
+   *            the id
+   * @return the m
+   */
+  private M loadOne(I id) {
+    long start = System.nanoTime();
+    M entity = super.findOne(id);
+    QueryMetrics.record(entityName, "findOne", "id", findOneQl, entity == null ? 0 : 1, start);
+    return entity;
+  }
+
+  /**
+   * 是否在读写事务中.
+   * 
+   * @return true, if is read write transaction
+   */
+  private static boolean isReadWriteTransaction() {
+    return TransactionSynchronizationManager.isActualTransactionActive()
+        && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+  }
+
+  /**
+   * 布隆过滤器判断可能存在但没有查到时记录误判.
+   * 
+   * @param entity
+   *            the entity
+   * @return the entity
+   */
+  private M recordMiss(M entity) {
+    if (entity == null && idBloomFilter != null) {
+      idBloomFilter.recordMiss();
+    }
+    return entity;
   }
 
   @Override
   public M findOne(Specification<M> spec) {
+    TypedQuery<M> query = getQuery(spec, (Sort) null);
+    long start = System.nanoTime();
     try {
-      return getQuery(spec, (Sort) null).getSingleResult();
+      M result = query.getSingleResult();
+      QueryMetrics.record(entityName, "findOne", fingerprintOf(spec), qlOf(query), 1, start);
+      return result;
     } catch (NoResultException e) {
+      QueryMetrics.record(entityName, "findOne", fingerprintOf(spec), qlOf(query), 0, start);
       logger.info("no result", e);
       return null;
     }
@@ -249,34 +927,217 @@ public class BaseRepository<M, I extends Serializable> extends SimpleJpaReposito
 
   @Override
   public List<M> findAll(Iterable<I> ids) {
+    return findAll(ids, false);
+  }
 
-    return getQuery(new Specification<M>() {
-      @SuppressWarnings("synthetic-access")
-      @Override
-      public Predicate toPredicate(Root<M> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
-        Path<?> path = root.get(entityInformation.getIdAttribute());
-        return path.in(cb.parameter(Iterable.class, "ids"));
+  @Override
+  public List<M> findAll(Iterable<I> ids, boolean parallel) {
+    Set<I> distinctIds = new LinkedHashSet<I>();
+    if (ids != null) {
+      for (I id : ids) {
+        if (id != null) {
+          distinctIds.add(id);
+        }
+      }
+    }
+    if (distinctIds.isEmpty()) {
+      return new ArrayList<M>(0);
+    }
+
+    Map<I, M> found = new HashMap<I, M>(distinctIds.size() * 2);
+    List<I> missingIds = findCached(distinctIds, found);
+
+    List<List<I>> chunks = Lists.partition(missingIds, multiGetChunkSize);
+    // 读写事务中并行查询看不到事务中未提交的修改，在当前事务中查询
+    if (parallel && chunks.size() > 1 && !isReadWriteTransaction()) {
+      findChunksInParallel(chunks, found);
+    } else {
+      for (List<I> chunk : chunks) {
+        putAll(found, findChunk(em, chunk));
+      }
+    }
+
+    List<M> result = new ArrayList<M>(found.size());
+    for (I id : distinctIds) {
+      M entity = found.get(id);
+      if (entity != null) {
+        result.add(entity);
       }
-    }, (Sort) null).setParameter("ids", ids).getResultList();
+    }
+    return result;
+  }
+
+  /**
+   * 从持久化上下文和二级缓存中查找实体，不产生sql.
+   * 
+   * @param ids
+   *            the ids
+   * @param found
+   *            找到的实体
+   * @return 未找到的主键
+   */
+  @SuppressWarnings("unchecked")
+  private List<I> findCached(Set<I> ids, Map<I, M> found) {
+    EntityManager bound = EntityManagerFactoryUtils
+        .getTransactionalEntityManager(em.getEntityManagerFactory());
+    SessionImplementor session = null;
+    EntityPersister persister = null;
+    if (bound != null) {
+      session = bound.unwrap(SessionImplementor.class);
+      persister = session.getFactory().getEntityPersister(entityClass.getName());
+    }
+    Cache cache = em.getEntityManagerFactory().getCache();
+
+    List<I> missingIds = new ArrayList<I>();
+    for (I id : ids) {
+      Object entity = null;
+      if (session != null) {
+        entity = session.getPersistenceContext()
+            .getEntity(session.generateEntityKey(id, persister));
+      }
+      if (entity == null && cache != null && cache.contains(entityClass, id)) {
+        entity = em.find(entityClass, id);
+      }
+      if (entity != null) {
+        found.put(id, (M) entity);
+      } else {
+        missingIds.add(id);
+      }
+    }
+    return missingIds;
+  }
+
+  /**
+   * 在独立的EntityManager上并行查询多批主键，线程池已满的批次在当前线程查询.
+   * 并行的批次沿用当前线程的数据源路由，与当前线程一样应用连接和实体图.
+   * 
+   * @param chunks
+   *            the chunks
+   * @param found
+   *            找到的实体
+   */
+  private void findChunksInParallel(List<List<I>> chunks, Map<I, M> found) {
+    final EntityManagerFactory entityManagerFactory = em.getEntityManagerFactory();
+    List<Future<List<M>>> futures = new ArrayList<Future<List<M>>>(chunks.size());
+    List<List<I>> rejected = new ArrayList<List<I>>();
+    for (final List<I> chunk : chunks) {
+      Future<List<M>> future = ParallelQueryExecutor.submit(new Callable<List<M>>() {
+        @SuppressWarnings("synthetic-access")
+        @Override
+        public List<M> call() throws Exception {
+          EntityManager chunkEntityManager = entityManagerFactory.createEntityManager();
+          try {
+            return findChunk(chunkEntityManager, chunk);
+          } finally {
+            chunkEntityManager.close();
+          }
+        }
+      });
+      if (future != null) {
+        futures.add(future);
+      } else {
+        rejected.add(chunk);
+      }
+    }
+
+    try {
+      for (List<I> chunk : rejected) {
+        putAll(found, findChunk(em, chunk));
+      }
+      for (Future<List<M>> future : futures) {
+        putAll(found, future.get());
+      }
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("multi get of " + entityName + " interrupted", exception);
+    } catch (ExecutionException exception) {
+      throw Throwables.propagate(exception.getCause());
+    } finally {
+      for (Future<List<M>> future : futures) {
+        future.cancel(false);
+      }
+    }
+  }
+
+  /**
+   * 查询一批主键，主键数补齐到2的幂(不超过multiGetChunkSize)，
+   * 使不同数量的主键复用少数几条sql及其执行计划.
+   * 
+   * @param entityManager
+   *            the entity manager
+   * @param chunk
+   *            the chunk
+   * @return the list
+   */
+  private List<M> findChunk(EntityManager entityManager, List<I> chunk) {
+    int paddedSize = Math.min(Integer.highestOneBit(chunk.size() * 2 - 1), multiGetChunkSize);
+    List<I> paddedIds = new ArrayList<I>(paddedSize);
+    paddedIds.addAll(chunk);
+    I last = chunk.get(chunk.size() - 1);
+    while (paddedIds.size() < paddedSize) {
+      paddedIds.add(last);
+    }
+
+    CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<M> query = builder.createQuery(entityClass);
+    Root<M> root = query.from(entityClass);
+    query.select(root);
+    applyJoins(root, query, true);
+    Path<?> path = root.get(entityInformation.getIdAttribute());
+    query.where(path.in(builder.parameter(Collection.class, "ids")));
+
+    TypedQuery<M> tq = entityManager.createQuery(query);
+    repositoryHelper.applyEnableQueryCache(tq);
+    repositoryHelper.applyEntityGraph(tq, entityManager);
+    long start = System.nanoTime();
+    List<M> result = tq.setParameter("ids", paddedIds).getResultList();
+    QueryMetrics.record(entityName, "findAllById", "in" + paddedSize, null, result.size(), start);
+    return result;
+  }
+
+  /**
+   * 按主键放入map.
+   * 
+   * @param found
+   *            the found
+   * @param entities
+   *            the entities
+   */
+  private void putAll(Map<I, M> found, List<M> entities) {
+    for (M entity : entities) {
+      found.put(entityInformation.getId(entity), entity);
+    }
   }
 
   @Override
   public List<M> findAll(Specification<M> spec) {
-    return getQuery(spec, (Sort) null).getResultList();
+    TypedQuery<M> query = getQuery(spec, (Sort) null);
+    long start = System.nanoTime();
+    List<M> result = query.getResultList();
+    QueryMetrics.record(entityName, "findAll", fingerprintOf(spec), qlOf(query), result.size(),
+        start);
+    return result;
   }
 
   @Override
   public Page<M> findAll(Specification<M> spec, Pageable pageable) {
 
-    TypedQuery<M> query = getQuery(spec, pageable);
-    return pageable == null ? new PageImpl<M>(query.getResultList())
-        : readPage(query, pageable, spec);
+    if (pageable == null) {
+      return new PageImpl<M>(findAll(spec));
+    }
+    assertPageableFetch(pageable);
+    return readPage(getQuery(spec, pageable), pageable, spec);
   }
 
   @Override
   public List<M> findAll(Specification<M> spec, Sort sort) {
 
-    return getQuery(spec, sort).getResultList();
+    TypedQuery<M> query = getQuery(spec, sort);
+    long start = System.nanoTime();
+    List<M> result = query.getResultList();
+    QueryMetrics.record(entityName, "findAll", fingerprintOf(spec), qlOf(query), result.size(),
+        start);
+    return result;
   }
 
   @Override
@@ -291,21 +1152,404 @@ public class BaseRepository<M, I extends Serializable> extends SimpleJpaReposito
 
   @Override
   public Page<M> findAll(final Pageable pageable) {
-    return new PageImpl<M>(repositoryHelper.<M>findAll(findAllQl, pageable), pageable,
-        repositoryHelper.count(countAllQl));
+    if (!customFindAllQl) {
+      assertPageableFetch(pageable);
+    }
+    List<M> list = repositoryHelper.<M>findAll(findAllQl, pageable);
+    if (pageable == null) {
+      return new PageImpl<M>(list, pageable, list.size());
+    }
+    if (isTotalKnown(list, pageable)) {
+      return new PageImpl<M>(list, pageable, pageable.getOffset() + list.size());
+    }
+    return new LazyCountPage<M>(list, pageable, new Supplier<Long>() {
+      @Override
+      public Long get() {
+        return count();
+      }
+    }, 0);
   }
 
+  /**
+   * 根据条件分页查询，第一页不满时不执行count，否则返回延迟统计总数的{@link LazyCountPage}.
+   */
   @Override
   public Page<M> findAll(final Searchable searchable) {
-    List<M> list = repositoryHelper.findAll(findAllQl, searchable, searchCallback);
-    long total = searchable.hasPageable() ? count(searchable) : list.size();
-    return new PageImpl<M>(list, searchable.getPage(), total);
+    if (!customFindAllQl && searchable.hasPageable()) {
+      assertPageableFetch(searchable.getPage());
+    }
+    return findPage(findAllQl, searchable, null);
+  }
+
+  /**
+   * 根据条件查询投影，只查询投影需要的属性，不创建实体，不进入持久化上下文.
+   * 分页及总数的处理与{@link #findAll(Searchable)}相同.
+   */
+  @Override
+  public <P> Page<P> findAll(final Searchable searchable, final Class<P> projection) {
+    ProjectionMetadata<P> metadata = ProjectionMetadata.forType(projection);
+    String projectionQl = projectionQls.get(projection);
+    if (projectionQl == null) {
+      String alias = "x";
+      if (searchCallback instanceof DefaultSearchCallback
+          && !StringUtils.isEmpty(((DefaultSearchCallback) searchCallback).getAlias())) {
+        alias = ((DefaultSearchCallback) searchCallback).getAlias();
+      }
+      StringBuilder ql = new StringBuilder("select ");
+      for (String path : metadata.getPaths()) {
+        ql.append(alias).append('.').append(path).append(", ");
+      }
+      ql.delete(ql.length() - 2, ql.length());
+      ql.append(String.format(" from %s %s where 1=1 ", entityName, alias));
+      projectionQl = ql.toString();
+      projectionQls.putIfAbsent(projection, projectionQl);
+    }
+    return findPage(projectionQl, searchable, metadata);
+  }
+
+  /**
+   * 根据条件分页查询，第一页不满时不执行count，否则返回延迟统计总数的{@link LazyCountPage}.
+   * 
+   * @param <T>
+   *            the generic type
+   * @param ql
+   *            查询ql
+   * @param searchable
+   *            the searchable
+   * @param projection
+   *            投影，null表示查询实体
+   * @return the page
+   */
+  @SuppressWarnings("unchecked")
+  private <T> Page<T> findPage(final String ql, final Searchable searchable,
+      final ProjectionMetadata<T> projection) {
+    // 在调用线程判断是否使用count缓存，并行或延迟的count可能在其他线程或事务结束后执行
+    final boolean countCacheable = countCache != null && !isReadWriteTransaction();
+    ParallelCount countFuture = null;
+    if (parallelCount && searchable.hasPageable()) {
+      // 先转换再提交，避免两个线程同时转换查询值
+      if (!searchable.isConverted()) {
+        searchable.convert(entityClass);
+      }
+      countFuture = submitCount(new CountCallback() {
+        @SuppressWarnings("synthetic-access")
+        @Override
+        public long count(EntityManager entityManager) {
+          return countWithLimit(newRepositoryHelper(entityManager), searchable,
+              countCacheable);
+        }
+      });
+    }
+
+    List<?> rows = projection == null ? repositoryHelper.findAll(ql, searchable, searchCallback)
+        : repositoryHelper.findRows(ql, searchable, searchCallback);
+    List<T> list = projection == null ? (List<T>) rows : projection.map(rows);
+    if (!searchable.hasPageable()) {
+      return new PageImpl<T>(list, searchable.getPage(), list.size());
+    }
+    Pageable pageable = searchable.getPage();
+    if (isTotalKnown(list, pageable)) {
+      cancel(countFuture);
+      return new PageImpl<T>(list, pageable, pageable.getOffset() + list.size());
+    }
+    if (countFuture != null) {
+      return new LazyCountPage<T>(list, pageable, countFuture, countLimit);
+    }
+    return new LazyCountPage<T>(list, pageable, new Supplier<Long>() {
+      @SuppressWarnings("synthetic-access")
+      @Override
+      public Long get() {
+        return countWithLimit(repositoryHelper, searchable, countCacheable);
+      }
+    }, countLimit);
+  }
+
+  /**
+   * 有统计上限时最多统计到上限 + 1，否则精确统计.
+   * 
+   * @param helper
+   *            执行统计的repositoryHelper
+   * @param searchable
+   *            the searchable
+   * @param cacheable
+   *            是否使用count缓存
+   * @return the long
+   */
+  private long countWithLimit(final RepositoryHelper helper, final Searchable searchable,
+      final boolean cacheable) {
+    boolean limited = countLimit > 0 && limitedCountAllQl != null;
+    String ql = limited ? limitedCountAllQl : countAllQl;
+    long limit = limited ? countLimit : 0;
+    if (cacheable) {
+      return cachedCount(helper, ql, limit, searchable, countMaxStaleness);
+    }
+    return limited ? helper.count(ql, searchable, searchCallback, limit)
+        : helper.count(ql, searchable, searchCallback);
+  }
+
+  /**
+   * 创建使用指定EntityManager的repositoryHelper.
+   * 
+   * @param entityManager
+   *            the entity manager
+   * @return the repository helper
+   */
+  private RepositoryHelper newRepositoryHelper(EntityManager entityManager) {
+    RepositoryHelper helper = new RepositoryHelper(entityClass);
+    helper.setEntityManager(entityManager);
+    helper.setQueryCoalescer(queryCoalescer);
+    helper.setCoalesceEntityReads(coalesceEntityReads);
+    helper.setEntityGraph(repositoryHelper.getEntityGraph());
+    return helper;
+  }
+
+  /**
+   * 在独立的EntityManager上提交count查询.
+   * 
+   * @param callback
+   *            the callback
+   * @return 并行count，读写事务中返回null(并行查询看不到事务中未提交的修改)
+   */
+  private ParallelCount submitCount(final CountCallback callback) {
+    if (isReadWriteTransaction()) {
+      return null;
+    }
+    return new ParallelCount(callback);
+  }
+
+  /**
+   * 不再需要总数时取消count查询.
+   * 
+   * @param parallel
+   *            the parallel count
+   */
+  private static void cancel(ParallelCount parallel) {
+    if (parallel != null) {
+      parallel.cancel();
+    }
+  }
+
+  /**
+   * Specification查询的形状，取其类名.
+   * 
+   * @param spec
+   *            the spec
+   * @return the string
+   */
+  private static String fingerprintOf(Specification<?> spec) {
+    return spec == null ? "" : spec.getClass().getName();
+  }
+
+  /**
+   * criteria查询生成的ql，用于慢查询日志，不是hibernate的查询返回null.
+   * 
+   * @param query
+   *            the query
+   * @return the string
+   */
+  private static String qlOf(Query query) {
+    try {
+      return query.unwrap(org.hibernate.Query.class).getQueryString();
+    } catch (PersistenceException exception) {
+      return null;
+    }
+  }
+
+  /**
+   * 不满一页时(非越界的空页)总数可以直接算出，不需要count查询.
+   * 
+   * @param content
+   *            the content
+   * @param pageable
+   *            the pageable
+   * @return true, if is total known
+   */
+  private static boolean isTotalKnown(List<?> content, Pageable pageable) {
+    return content.size() < pageable.getPageSize()
+        && (pageable.getOffset() == 0 || !content.isEmpty());
+  }
+
+  @Override
+  public <D> Page<D> findAllByJdbc(Searchable searchable, Class<D> dtoType) {
+    return getJdbcSearchQuery().findAll(searchable, dtoType);
+  }
+
+  @Override
+  public Page<Map<String, Object>> findAllByJdbc(Searchable searchable, String... properties) {
+    return getJdbcSearchQuery().findAll(searchable, properties);
+  }
+
+  /**
+   * Gets the jdbc search query.
+   *
+   * @return the jdbc search query
+   */
+  private JdbcSearchQuery<M> getJdbcSearchQuery() {
+    JdbcSearchQuery<M> query = jdbcSearchQuery;
+    if (query == null) {
+      query = new JdbcSearchQuery<M>(entityClass, em);
+      jdbcSearchQuery = query;
+    }
+    return query;
+  }
+
+  @Override
+  public KeysetSlice<M> findSlice(final Searchable searchable) {
+    Assert.isTrue(searchable.hasPageable(), "keyset searchable must have pageable");
+    Pageable page = searchable.getPage();
+    if (!customFindAllQl) {
+      assertPageableFetch(page);
+    }
+    String cursor = null;
+    if (page instanceof KeysetPageRequest) {
+      cursor = ((KeysetPageRequest) page).getCursor();
+    } else if (page.getPageNumber() > 0) {
+      // 键集分页不能跳页，静默返回第一页会让调用方误以为翻页成功
+      throw new SearchException("keyset slice can't skip to page " + page.getPageNumber()
+          + ", use KeysetPageRequest with the previous nextCursor");
+    }
+
+    List<Sort.Order> orders = getKeysetOrders(searchable.getSort());
+    EntityPropertyConverters converters = EntityPropertyConverters.forEntity(entityClass);
+    Class<?>[] types = new Class<?>[orders.size()];
+    for (int i = 0; i < types.length; i++) {
+      assertKeysetProperty(orders.get(i).getProperty());
+      types[i] = converters.getPropertyType(orders.get(i).getProperty()).getType();
+    }
+    Object[] cursorValues = cursor == null ? null : KeysetCursorUtils.decode(cursor, types);
+
+    int pageSize = page.getPageSize();
+    List<M> content = repositoryHelper.findAllByKeyset(findAllQl, searchable, searchCallback,
+        orders, cursorValues, pageSize + 1);
+
+    boolean hasNext = content.size() > pageSize;
+    String nextCursor = null;
+    if (hasNext) {
+      content = new ArrayList<M>(content.subList(0, pageSize));
+      BeanWrapperImpl lastWrapper = new BeanWrapperImpl(content.get(pageSize - 1));
+      List<Object> lastValues = new ArrayList<Object>(orders.size());
+      for (Sort.Order order : orders) {
+        lastValues.add(lastWrapper.getPropertyValue(order.getProperty()));
+      }
+      nextCursor = KeysetCursorUtils.encode(lastValues);
+    }
+    return new KeysetSlice<M>(content, page, hasNext, nextCursor);
+  }
+
+  /**
+   * 键集分页的排序字段必须是非空的单值属性.
+   * null与任何值比较都不成立，可空字段的seek条件会跳过排序值为null的记录.
+   * 
+   * @param property
+   *            排序字段，可以是嵌入对象的属性(a.b)
+   */
+  private void assertKeysetProperty(String property) {
+    ManagedType<?> type = em.getMetamodel().managedType(entityClass);
+    for (String name : StringUtils.delimitedListToStringArray(property, ".")) {
+      Attribute<?, ?> attribute = type == null ? null : type.getAttribute(name);
+      if (!(attribute instanceof SingularAttribute)) {
+        throw new SearchException("keyset sort property must be singular : " + property);
+      }
+      SingularAttribute<?, ?> singular = (SingularAttribute<?, ?>) attribute;
+      if (singular.isOptional() && !singular.getJavaType().isPrimitive()) {
+        throw new SearchException("keyset sort property must not be nullable : " + property
+            + ", declare it with @Column(nullable = false)");
+      }
+      type = singular.getType() instanceof ManagedType ? (ManagedType<?>) singular.getType()
+          : null;
+    }
+  }
+
+  /**
+   * 键集分页的排序字段，没有按主键排序时追加主键，保证顺序唯一.
+   * 
+   * @param sort
+   *            the sort
+   * @return the keyset orders
+   */
+  private List<Sort.Order> getKeysetOrders(Sort sort) {
+    List<Sort.Order> orders = new ArrayList<Sort.Order>();
+    Sort.Direction idDirection = Sort.Direction.ASC;
+    if (sort != null) {
+      for (Sort.Order order : sort) {
+        orders.add(order);
+        idDirection = order.getDirection();
+        if (idName.equals(order.getProperty())) {
+          return orders;
+        }
+      }
+    }
+    orders.add(new Sort.Order(idDirection, idName));
+    return orders;
+  }
+
+  @Override
+  public Stream<M> stream(final Searchable searchable) {
+    Assert.state(TransactionSynchronizationManager.isActualTransactionActive(),
+        "stream must be consumed in a transaction");
+    final ScrollableResultsIterator<M> iterator = scroll(searchable, DEFAULT_STREAM_BATCH_SIZE);
+    Spliterator<M> spliterator = Spliterators.spliteratorUnknownSize(iterator,
+        Spliterator.ORDERED | Spliterator.NONNULL);
+    return StreamSupport.stream(spliterator, false).onClose(new Runnable() {
+      @Override
+      public void run() {
+        iterator.close();
+      }
+    });
+  }
+
+  @Transactional(readOnly = true)
+  @Override
+  public long forEach(final Searchable searchable, final Consumer<? super M> consumer,
+      final int batchSize) {
+    ScrollableResultsIterator<M> iterator = scroll(searchable, batchSize);
+    try {
+      while (iterator.hasNext()) {
+        consumer.accept(iterator.next());
+      }
+      return iterator.getCount();
+    } finally {
+      iterator.close();
+    }
+  }
+
+  /**
+   * 打开只进游标，之前未提交的修改先flush到数据库.
+   * 
+   * @param searchable
+   *            the searchable
+   * @param batchSize
+   *            每批记录数
+   * @return the scrollable results iterator
+   */
+  private ScrollableResultsIterator<M> scroll(final Searchable searchable, final int batchSize) {
+    Assert.isTrue(batchSize > 0, "batchSize must be positive");
+    repositoryHelper.flush();
+    ScrollableResults results = repositoryHelper.scroll(findAllQl, searchable, searchCallback,
+        getStreamFetchSize());
+    return new ScrollableResultsIterator<M>(results, HibernateUtils.getSession(em), batchSize);
+  }
+
+  /**
+   * 流式查询的jdbc fetch size，未设置时按方言选择.
+   * 
+   * @return the stream fetch size
+   */
+  private int getStreamFetchSize() {
+    int fetchSize = streamFetchSize;
+    if (fetchSize == 0) {
+      Dialect dialect = ((SessionFactoryImplementor) HibernateUtils
+          .getSessionFactory(em.getEntityManagerFactory())).getDialect();
+      fetchSize = dialect instanceof MySQLDialect ? Integer.MIN_VALUE : DEFAULT_STREAM_BATCH_SIZE;
+      streamFetchSize = fetchSize;
+    }
+    return fetchSize;
   }
 
   @Override
   public long count(Specification<M> spec) {
 
-    return getCountQuery(spec).getSingleResult();
+    return executeCountQuery(getCountQuery(spec), spec);
   }
 
   @Override
@@ -315,7 +1559,56 @@ public class BaseRepository<M, I extends Serializable> extends SimpleJpaReposito
 
   @Override
   public long count(final Searchable searchable) {
-    return repositoryHelper.count(countAllQl, searchable, searchCallback);
+    return count(searchable, countMaxStaleness);
+  }
+
+  /**
+   * 根据条件统计记录数.
+   * 开启了count缓存时，不在读写事务中则优先使用缓存的结果，读写事务中可能读到本事务未提交的修改，不使用缓存.
+   * 
+   * @param searchable
+   *            the searchable
+   * @param maxStaleness
+   *            可以接受的过期时间(毫秒)
+   * @return the long
+   */
+  @Override
+  public long count(final Searchable searchable, final long maxStaleness) {
+    if (countCache == null || isReadWriteTransaction()) {
+      return repositoryHelper.count(countAllQl, searchable, searchCallback);
+    }
+    return cachedCount(repositoryHelper, countAllQl, 0, searchable, maxStaleness);
+  }
+
+  /**
+   * 优先使用count缓存的统计，缓存的键包括统计ql、统计上限及查询条件.
+   * 
+   * @param helper
+   *            执行统计的repositoryHelper
+   * @param ql
+   *            统计ql
+   * @param limit
+   *            统计上限，0表示精确统计
+   * @param searchable
+   *            the searchable
+   * @param maxStaleness
+   *            可以接受的过期时间(毫秒)
+   * @return the long
+   */
+  private long cachedCount(RepositoryHelper helper, String ql, long limit,
+      Searchable searchable, long maxStaleness) {
+    String key = ql + '|' + (limit > 0 ? limit + "|" : "") + searchCallback.getClass().getName()
+        + '|' + SearchableKeyUtils.countKeyOf(searchable);
+    Long cached = countCache.get(key, maxStaleness);
+    if (cached != null) {
+      return cached;
+    }
+    long version = countCache.version();
+    long loadedAt = System.currentTimeMillis();
+    long count = limit > 0 ? helper.count(ql, searchable, searchCallback, limit)
+        : helper.count(ql, searchable, searchCallback);
+    countCache.put(key, count, version, loadedAt);
+    return count;
   }
 
   /**
@@ -332,21 +1625,58 @@ public class BaseRepository<M, I extends Serializable> extends SimpleJpaReposito
    *         {@link org.springframework.data.jpa.domain.Specification}.
    */
   @Override
-  protected Page<M> readPage(TypedQuery<M> query, Pageable pageable, Specification<M> spec) {
+  protected Page<M> readPage(TypedQuery<M> query, Pageable pageable,
+      final Specification<M> spec) {
+
+    ParallelCount countFuture = null;
+    if (parallelCount) {
+      countFuture = submitCount(new CountCallback() {
+        @SuppressWarnings("synthetic-access")
+        @Override
+        public long count(EntityManager entityManager) {
+          return executeCountQuery(getCountQuery(spec, entityManager), spec);
+        }
+      });
+    }
 
     query.setFirstResult(pageable.getOffset());
     query.setMaxResults(pageable.getPageSize());
-    Long total = executeCountQuery(getCountQuery(spec));
-    List<M> content = total > pageable.getOffset() ? query.getResultList()
-        : Collections.<M>emptyList();
+    long start = System.nanoTime();
+    List<M> content = query.getResultList();
+    QueryMetrics.record(entityName, "findAll", fingerprintOf(spec), qlOf(query), content.size(),
+        start);
+    if (isTotalKnown(content, pageable)) {
+      cancel(countFuture);
+      return new PageImpl<M>(content, pageable, pageable.getOffset() + content.size());
+    }
+    if (countFuture != null) {
+      return new LazyCountPage<M>(content, pageable, countFuture, 0);
+    }
 
-    return new PageImpl<M>(content, pageable, total);
+    return new LazyCountPage<M>(content, pageable, new Supplier<Long>() {
+      @SuppressWarnings("synthetic-access")
+      @Override
+      public Long get() {
+        return executeCountQuery(getCountQuery(spec), spec);
+      }
+    }, 0);
   }
 
-  private static Long executeCountQuery(TypedQuery<Long> countQuery) {
+  /**
+   * 执行count查询.
+   * 
+   * @param countQuery
+   *            the count query
+   * @param spec
+   *            统计延迟用的查询条件
+   * @return the long
+   */
+  private Long executeCountQuery(TypedQuery<Long> countQuery, Specification<M> spec) {
     Assert.notNull(countQuery, "CountQuery must not null");
 
+    long start = System.nanoTime();
     List<Long> totals = countQuery.getResultList();
+    QueryMetrics.record(entityName, "count", fingerprintOf(spec), qlOf(countQuery), 1, start);
     Long total = 0L;
 
     if (totals != null) {
@@ -367,11 +1697,25 @@ public class BaseRepository<M, I extends Serializable> extends SimpleJpaReposito
    */
   @Override
   protected TypedQuery<Long> getCountQuery(Specification<M> spec) {
+    return getCountQuery(spec, em);
+  }
 
-    CriteriaBuilder builder = em.getCriteriaBuilder();
+  /**
+   * 在指定的EntityManager上创建count查询.
+   * 
+   * @param spec
+   *            can be {@literal null}.
+   * @param entityManager
+   *            the entity manager
+   * @return the count query
+   */
+  private TypedQuery<Long> getCountQuery(Specification<M> spec, EntityManager entityManager) {
+
+    CriteriaBuilder builder = entityManager.getCriteriaBuilder();
     CriteriaQuery<Long> query = builder.createQuery(Long.class);
 
     Root<M> root = applySpecificationToCriteria(spec, query);
+    applyJoins(root, query, false);
 
     if (query.isDistinct()) {
       query.select(builder.countDistinct(root));
@@ -379,7 +1723,7 @@ public class BaseRepository<M, I extends Serializable> extends SimpleJpaReposito
       query.select(builder.count(root));
     }
 
-    TypedQuery<Long> tq = em.createQuery(query);
+    TypedQuery<Long> tq = entityManager.createQuery(query);
     repositoryHelper.applyEnableQueryCache(tq);
     return tq;
   }
@@ -421,7 +1765,7 @@ public class BaseRepository<M, I extends Serializable> extends SimpleJpaReposito
     Root<M> root = applySpecificationToCriteria(spec, query);
     query.select(root);
 
-    applyJoins(root);
+    applyJoins(root, query, true);
 
     if (sort != null) {
       query.orderBy(QueryUtils.toOrders(sort, root, builder));
@@ -430,23 +1774,36 @@ public class BaseRepository<M, I extends Serializable> extends SimpleJpaReposito
     TypedQuery<M> tq = em.createQuery(query);
 
     repositoryHelper.applyEnableQueryCache(tq);
+    repositoryHelper.applyEntityGraph(tq, em);
 
     return applyLockMode(tq);
   }
 
   /**
    * Apply joins.
+   * 连接了集合属性时查询去重，count查询随之使用countDistinct.
    * 
    * @param root
    *            the root
+   * @param query
+   *            the query
+   * @param fetch
+   *            是否抓取标注了fetch的连接，count查询不能抓取
    */
-  private void applyJoins(Root<M> root) {
+  private void applyJoins(Root<M> root, CriteriaQuery<?> query, boolean fetch) {
     if (joins == null) {
       return;
     }
 
     for (QueryJoin join : joins) {
-      root.join(join.property(), join.joinType());
+      if (fetch && join.fetch()) {
+        root.fetch(join.property(), join.joinType());
+      } else {
+        root.join(join.property(), join.joinType());
+      }
+    }
+    if (collectionJoin) {
+      query.distinct(true);
     }
   }
 
@@ -494,7 +1851,8 @@ public class BaseRepository<M, I extends Serializable> extends SimpleJpaReposito
   }
 
   /**
-   * 重写默认的 这样可以走一级/二级缓存.
+   * 按主键判断是否存在，只查询select 1，不加载实体.
+   * 不在读写事务中时，主键布隆过滤器判断一定不存在的直接返回false，近端缓存中有的直接返回true.
    * 
    * @param id
    *            the id
@@ -502,7 +1860,26 @@ public class BaseRepository<M, I extends Serializable> extends SimpleJpaReposito
    */
   @Override
   public boolean exists(I id) {
-    return findOne(id) != null;
+    if (id == null) {
+      return false;
+    }
+    boolean readWrite = isReadWriteTransaction();
+    if (!readWrite) {
+      if (idBloomFilter != null && !idBloomFilter.mightContain(id)) {
+        return false;
+      }
+      if (nearCache != null && nearCache.contains(id)) {
+        return true;
+      }
+    }
+    long start = System.nanoTime();
+    boolean exists = !em.createQuery(existsQl).setParameter(1, id).setMaxResults(1)
+        .getResultList().isEmpty();
+    QueryMetrics.record(entityName, "exists", "", existsQl, exists ? 1 : 0, start);
+    if (!exists && !readWrite && idBloomFilter != null) {
+      idBloomFilter.recordMiss();
+    }
+    return exists;
   }
 
   @Override
@@ -510,4 +1887,98 @@ public class BaseRepository<M, I extends Serializable> extends SimpleJpaReposito
     return this.em;
   }
 
+  /**
+   * 与内容查询并行的count查询，在独立的EntityManager上执行，沿用调用线程的数据源路由.
+   * 线程池拒绝或取总数时还未开始执行的，在调用线程同步统计；已开始执行但超时的总数未知.
+   * 取消时不中断执行中的查询，避免中断jdbc连接.
+   */
+  private final class ParallelCount implements Supplier<Long> {
+
+    /** 执行count查询的callback. */
+    private final CountCallback callback;
+
+    /** 是否已被并行线程或调用线程认领执行. */
+    private final AtomicBoolean claimed = new AtomicBoolean();
+
+    /** 等待结果的截止时间，从提交开始计时. */
+    private final long deadline = System.currentTimeMillis() + countTimeout;
+
+    /** The future，线程池拒绝时为null. */
+    private final Future<Long> future;
+
+    /**
+     * 提交count查询.
+     * 
+     * @param callback
+     *            the callback
+     */
+    ParallelCount(final CountCallback callback) {
+      this.callback = callback;
+      final EntityManagerFactory entityManagerFactory = em.getEntityManagerFactory();
+      this.future = ParallelQueryExecutor.submit(new Callable<Long>() {
+        @SuppressWarnings("synthetic-access")
+        @Override
+        public Long call() throws Exception {
+          if (!claimed.compareAndSet(false, true)) {
+            return null;
+          }
+          EntityManager countEntityManager = entityManagerFactory.createEntityManager();
+          try {
+            return callback.count(countEntityManager);
+          } finally {
+            countEntityManager.close();
+          }
+        }
+      });
+    }
+
+    @SuppressWarnings("synthetic-access")
+    @Override
+    public Long get() {
+      if (future == null || (!future.isDone() && claimed.compareAndSet(false, true))) {
+        // 线程池拒绝或还在排队，在调用线程统计
+        cancel();
+        return callback.count(em);
+      }
+      try {
+        long timeout = Math.max(0, deadline - System.currentTimeMillis());
+        return future.get(timeout, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException exception) {
+        logger.warn("count query of {} timeout after {}ms", entityName, countTimeout);
+        cancel();
+        return null;
+      } catch (InterruptedException exception) {
+        Thread.currentThread().interrupt();
+        cancel();
+        return null;
+      } catch (ExecutionException exception) {
+        throw Throwables.propagate(exception.getCause());
+      }
+    }
+
+    /**
+     * 取消count查询，不中断执行中的查询.
+     */
+    void cancel() {
+      if (future != null) {
+        future.cancel(false);
+      }
+    }
+  }
+
+  /**
+   * 在指定EntityManager上执行的count查询.
+   */
+  private interface CountCallback {
+
+    /**
+     * Count.
+     * 
+     * @param entityManager
+     *            the entity manager
+     * @return the long
+     */
+    long count(EntityManager entityManager);
+  }
+
 }
@@ -1,15 +1,19 @@
 package org.transformer.support.dao.jpa.repository.support;
 
+import org.springframework.aop.framework.ProxyFactory;
 import org.springframework.beans.BeanUtils;
 import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.data.jpa.repository.support.JpaEntityInformation;
 import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
 import org.springframework.data.repository.core.RepositoryInformation;
 import org.springframework.data.repository.core.RepositoryMetadata;
+import org.springframework.data.repository.core.support.RepositoryProxyPostProcessor;
 import org.springframework.util.StringUtils;
+import org.transformer.support.dao.jpa.datasource.ReadOnlyRoutingInterceptor;
 import org.transformer.support.dao.jpa.repository.BaseDao;
 import org.transformer.support.dao.jpa.repository.callback.SearchCallback;
 import org.transformer.support.dao.jpa.repository.support.annotation.SearchableQuery;
+import org.transformer.support.dao.jpa.search.util.EntityPropertyConverters;
 
 import java.io.Serializable;
 
@@ -22,6 +26,16 @@ public class BaseRepositoryFactory<M, I extends Serializable> extends JpaReposit
   public BaseRepositoryFactory(EntityManager entityManager) {
     super(entityManager);
     this.entityManager = entityManager;
+    addRepositoryProxyPostProcessor(new RepositoryProxyPostProcessor() {
+      @Override
+      public void postProcess(ProxyFactory factory, RepositoryInformation repositoryInformation) {
+        Class<?> repositoryInterface = repositoryInformation.getRepositoryInterface();
+        if (ReadOnlyRoutingInterceptor.hasReadOnly(repositoryInterface)) {
+          //在事务拦截器之前标记只读
+          factory.addAdvice(0, new ReadOnlyRoutingInterceptor(repositoryInterface));
+        }
+      }
+    });
   }
 
   @SuppressWarnings("unchecked")
@@ -52,6 +66,24 @@ public class BaseRepositoryFactory<M, I extends Serializable> extends JpaReposit
         }
 
         repository.setJoins(searchableQuery.joins());
+        String entityGraph = searchableQuery.entityGraph();
+        if (!StringUtils.isEmpty(entityGraph)) {
+          repository.setEntityGraph(entityGraph);
+        }
+        repository.setCountLimit(searchableQuery.countLimit());
+        repository.setParallelCount(searchableQuery.parallelCount());
+        repository.setCountTimeout(searchableQuery.countTimeout());
+        repository.setStreamFetchSize(searchableQuery.streamFetchSize());
+        repository.setDeleteChunkSize(searchableQuery.deleteChunkSize());
+        repository.setSaveBatchSize(searchableQuery.saveBatchSize());
+        repository.setMultiGetChunkSize(searchableQuery.multiGetChunkSize());
+        repository.setUpsertBatchSize(searchableQuery.upsertBatchSize());
+        repository.setCoalesceReads(searchableQuery.coalesceReads());
+        repository.setCoalesceEntityReads(searchableQuery.coalesceEntityReads());
+        repository.setCountCache(searchableQuery.countCacheSize(),
+            searchableQuery.countMaxStaleness(), searchableQuery.countCacheExpireAfterWrite());
+        EntityPropertyConverters.register(information.getDomainType(),
+            searchableQuery.searchProperties());
 
       }
 
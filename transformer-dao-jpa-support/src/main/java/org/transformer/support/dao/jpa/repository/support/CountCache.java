@@ -0,0 +1,321 @@
+package org.transformer.support.dao.jpa.repository.support;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按查询条件缓存count结果.
+ * 每个表有一个写计数，save/delete/upsertAll及批处理语句提交后递增涉及的表的写计数；
+ * 缓存项记录加载前实体各表写计数之和，读取时不一致即为过期，过期项在读取时删除.
+ * 调用方可以接受一定时间内的过期结果(maxStaleness)，此时过期项在加载后的这段时间内仍然返回.
+ * 只跟踪实体自身的表，条件中关联的其他实体的表被修改不会使缓存过期；
+ * 其他进程或原生sql的写入也不会递增写计数，缓存项在写入expireAfterWrite秒后过期，限定这类不一致的时间.
+ *
+ */
+public final class CountCache {
+
+  /** 每个表的写计数. */
+  private static final ConcurrentMap<String, AtomicLong> TABLE_VERSIONS =
+      new ConcurrentHashMap<String, AtomicLong>();
+
+  /** 所有实体的count缓存. */
+  private static final ConcurrentMap<String, CountCache> CACHES =
+      new ConcurrentHashMap<String, CountCache>();
+
+  /** The entity name. */
+  private final String entityName;
+
+  /** 实体的表的写计数. */
+  private final AtomicLong[] tableVersions;
+
+  /** The cache. */
+  private final Cache<String, Entry> cache;
+
+  /** 命中未过期结果的次数. */
+  private final AtomicLong hits = new AtomicLong();
+
+  /** 命中过期但在允许时间内的结果的次数. */
+  private final AtomicLong staleHits = new AtomicLong();
+
+  /** 未命中(含过期删除)的次数. */
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * Instantiates a new count cache.
+   *
+   * @param entityName
+   *            the entity name
+   * @param tables
+   *            实体的表(hibernate query spaces)
+   * @param maximumSize
+   *            最大缓存条件数
+   * @param expireAfterWrite
+   *            写入后的过期时间(秒)
+   */
+  private CountCache(String entityName, Serializable[] tables, long maximumSize,
+      long expireAfterWrite) {
+    this.entityName = entityName;
+    this.tableVersions = new AtomicLong[tables.length];
+    for (int i = 0; i < tables.length; i++) {
+      tableVersions[i] = tableVersion(String.valueOf(tables[i]));
+    }
+    this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize)
+        .expireAfterWrite(expireAfterWrite, TimeUnit.SECONDS).build();
+  }
+
+  /**
+   * 获取实体的count缓存，同一实体的多个repository共用.
+   *
+   * @param entityName
+   *            the entity name
+   * @param tables
+   *            实体的表(hibernate query spaces)
+   * @param maximumSize
+   *            最大缓存条件数，只在第一次创建时使用
+   * @param expireAfterWrite
+   *            写入后的过期时间(秒)，只在第一次创建时使用
+   * @return the count cache
+   */
+  static CountCache forEntity(String entityName, Serializable[] tables, long maximumSize,
+      long expireAfterWrite) {
+    CountCache countCache = CACHES.get(entityName);
+    if (countCache == null) {
+      countCache = new CountCache(entityName, tables, maximumSize, expireAfterWrite);
+      CountCache existing = CACHES.putIfAbsent(entityName, countCache);
+      if (existing != null) {
+        countCache = existing;
+      }
+    }
+    return countCache;
+  }
+
+  /**
+   * 所有count缓存，key为实体名.
+   *
+   * @return the map
+   */
+  public static Map<String, CountCache> all() {
+    return Collections.unmodifiableMap(CACHES);
+  }
+
+  /**
+   * 获取表的写计数.
+   *
+   * @param table
+   *            the table
+   * @return the atomic long
+   */
+  private static AtomicLong tableVersion(String table) {
+    AtomicLong tableVersion = TABLE_VERSIONS.get(table);
+    if (tableVersion == null) {
+      tableVersion = new AtomicLong();
+      AtomicLong existing = TABLE_VERSIONS.putIfAbsent(table, tableVersion);
+      if (existing != null) {
+        tableVersion = existing;
+      }
+    }
+    return tableVersion;
+  }
+
+  /**
+   * 递增表的写计数.
+   *
+   * @param tables
+   *            the tables
+   */
+  public static void markWritten(Collection<? extends Serializable> tables) {
+    for (Serializable table : tables) {
+      tableVersion(String.valueOf(table)).incrementAndGet();
+    }
+  }
+
+  /**
+   * 事务提交后递增表的写计数，没有事务时立即递增. 回滚的修改不影响缓存.
+   * 同一事务内多次写入合并为一次提交后的递增.
+   *
+   * @param tables
+   *            the tables
+   */
+  public static void markWrittenAfterCommit(Collection<? extends Serializable> tables) {
+    if (tables == null || tables.isEmpty()) {
+      return;
+    }
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      markWritten(tables);
+      return;
+    }
+    for (TransactionSynchronization synchronization : TransactionSynchronizationManager
+        .getSynchronizations()) {
+      if (synchronization instanceof MarkWrittenSynchronization) {
+        ((MarkWrittenSynchronization) synchronization).tables.addAll(tables);
+        return;
+      }
+    }
+    MarkWrittenSynchronization synchronization = new MarkWrittenSynchronization();
+    synchronization.tables.addAll(tables);
+    TransactionSynchronizationManager.registerSynchronization(synchronization);
+  }
+
+  /**
+   * 当前版本(实体各表写计数之和)，在count前获取.
+   *
+   * @return the long
+   */
+  long version() {
+    long version = 0;
+    for (AtomicLong tableVersion : tableVersions) {
+      version += tableVersion.get();
+    }
+    return version;
+  }
+
+  /**
+   * 获取缓存的count.
+   *
+   * @param key
+   *            查询条件的键
+   * @param maxStaleness
+   *            可以接受的过期时间(毫秒)，0表示只接受未过期的结果
+   * @return the long，没有可用的结果返回null
+   */
+  Long get(String key, long maxStaleness) {
+    Entry entry = cache.getIfPresent(key);
+    if (entry == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    if (entry.version == version()) {
+      hits.incrementAndGet();
+      return entry.count;
+    }
+    if (maxStaleness > 0 && System.currentTimeMillis() - entry.loadedAt <= maxStaleness) {
+      staleHits.incrementAndGet();
+      return entry.count;
+    }
+    cache.asMap().remove(key, entry);
+    misses.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * 缓存count，加载期间有写入时按加载前的版本记录，下次读取即为过期.
+   *
+   * @param key
+   *            查询条件的键
+   * @param count
+   *            the count
+   * @param loadVersion
+   *            加载前的版本
+   * @param loadedAt
+   *            开始加载的时间
+   */
+  void put(String key, long count, long loadVersion, long loadedAt) {
+    cache.put(key, new Entry(count, loadVersion, loadedAt));
+  }
+
+  /**
+   * 实体名.
+   *
+   * @return the entity name
+   */
+  public String getEntityName() {
+    return entityName;
+  }
+
+  /**
+   * 命中未过期结果的次数.
+   *
+   * @return the long
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * 命中过期但在允许时间内的结果的次数.
+   *
+   * @return the long
+   */
+  public long getStaleHits() {
+    return staleHits.get();
+  }
+
+  /**
+   * 未命中的次数.
+   *
+   * @return the long
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * 缓存的条件数.
+   *
+   * @return the long
+   */
+  public long size() {
+    return cache.size();
+  }
+
+  /**
+   * 事务提交后递增事务中写入的表的写计数.
+   */
+  private static final class MarkWrittenSynchronization extends TransactionSynchronizationAdapter {
+
+    /** 事务中写入的表. */
+    private final Set<Serializable> tables = new HashSet<Serializable>();
+
+    @Override
+    public void afterCommit() {
+      markWritten(tables);
+    }
+  }
+
+  /**
+   * 缓存项.
+   */
+  private static final class Entry {
+
+    /** The count. */
+    private final long count;
+
+    /** 加载前的版本. */
+    private final long version;
+
+    /** 开始加载的时间. */
+    private final long loadedAt;
+
+    /**
+     * Instantiates a new entry.
+     *
+     * @param count
+     *            the count
+     * @param version
+     *            the version
+     * @param loadedAt
+     *            the loaded at
+     */
+    private Entry(long count, long version, long loadedAt) {
+      this.count = count;
+      this.version = version;
+      this.loadedAt = loadedAt;
+    }
+  }
+
+}
@@ -0,0 +1,306 @@
+package org.transformer.support.dao.jpa.repository.support;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.PrimitiveSink;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.StatelessSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.transformer.support.dao.jpa.repository.support.annotation.EnableIdBloomFilter;
+import org.transformer.support.util.HibernateUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * 实体主键的布隆过滤器，判断主键一定不存在时不需要查询数据库.
+ * 创建时在后台线程流式扫描全部主键(读主库)，扫描期间新增的主键同时加入，扫描完成后才开始使用.
+ * 新增的主键在保存时(提交前)加入，回滚的主键留在过滤器中，只增加误判.
+ * 有无法得知主键的插入(如upsertAll自动生成主键)时停用，之后都查询数据库.
+ *
+ */
+public final class IdBloomFilter {
+
+  /** 日志. */
+  private static Logger logger = LoggerFactory.getLogger(IdBloomFilter.class);
+
+  /** 扫描主键的ql. */
+  private static final String SCAN_QUERY_STRING = "select x.%s from %s x";
+
+  /** 所有实体的主键过滤器. */
+  private static final ConcurrentMap<String, IdBloomFilter> FILTERS =
+      new ConcurrentHashMap<String, IdBloomFilter>();
+
+  /** The entity name. */
+  private final String entityName;
+
+  /** The expected insertions. */
+  private final int expectedInsertions;
+
+  /** The fpp. */
+  private final double fpp;
+
+  /** 建立完成的过滤器，建立完成前为null. */
+  private volatile BloomFilter<Object> filter;
+
+  /** 正在建立的过滤器，由this保护. */
+  private BloomFilter<Object> building;
+
+  /** 加入次数，读取过滤器前先读取，使之前加入的主键可见. */
+  private volatile long insertions;
+
+  /** 是否已停用. */
+  private volatile boolean disabled;
+
+  /** 判断为不存在(未查询数据库)的次数. */
+  private final AtomicLong filtered = new AtomicLong();
+
+  /** 判断为可能存在但数据库中不存在的次数. */
+  private final AtomicLong falsePositives = new AtomicLong();
+
+  /**
+   * Instantiates a new id bloom filter.
+   *
+   * @param entityName
+   *            the entity name
+   * @param expectedInsertions
+   *            the expected insertions
+   * @param fpp
+   *            the fpp
+   */
+  private IdBloomFilter(String entityName, int expectedInsertions, double fpp) {
+    this.entityName = entityName;
+    this.expectedInsertions = expectedInsertions;
+    this.fpp = fpp;
+  }
+
+  /**
+   * 获取实体的主键过滤器，同一实体的多个repository共用，第一次获取时开始扫描.
+   *
+   * @param emf
+   *            the emf
+   * @param entityName
+   *            the entity name
+   * @param idName
+   *            主键属性名
+   * @param config
+   *            the config
+   * @return the id bloom filter
+   */
+  static IdBloomFilter forEntity(EntityManagerFactory emf, String entityName, String idName,
+      EnableIdBloomFilter config) {
+    IdBloomFilter idBloomFilter = FILTERS.get(entityName);
+    if (idBloomFilter == null) {
+      IdBloomFilter created = new IdBloomFilter(entityName, config.expectedInsertions(),
+          config.fpp());
+      idBloomFilter = FILTERS.putIfAbsent(entityName, created);
+      if (idBloomFilter == null) {
+        idBloomFilter = created;
+        idBloomFilter.start(emf, idName, config.fetchSize());
+      }
+    }
+    return idBloomFilter;
+  }
+
+  /**
+   * 所有主键过滤器，key为实体名.
+   *
+   * @return the map
+   */
+  public static Map<String, IdBloomFilter> all() {
+    return Collections.unmodifiableMap(FILTERS);
+  }
+
+  /**
+   * 在后台线程扫描主键.
+   *
+   * @param emf
+   *            the emf
+   * @param idName
+   *            the id name
+   * @param fetchSize
+   *            the fetch size
+   */
+  private void start(final EntityManagerFactory emf, final String idName, final int fetchSize) {
+    synchronized (this) {
+      building = BloomFilter.create(IdFunnel.INSTANCE, expectedInsertions, fpp);
+    }
+    Thread thread = new Thread(new Runnable() {
+      @SuppressWarnings("synthetic-access")
+      @Override
+      public void run() {
+        build(emf, idName, fetchSize);
+      }
+    }, "id-bloom-filter-" + entityName);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * 流式扫描全部主键建立过滤器.
+   *
+   * @param emf
+   *            the emf
+   * @param idName
+   *            the id name
+   * @param fetchSize
+   *            the fetch size
+   */
+  private void build(EntityManagerFactory emf, String idName, int fetchSize) {
+    long start = System.currentTimeMillis();
+    long scanned = 0;
+    StatelessSession session = null;
+    try {
+      session = HibernateUtils.getSessionFactory(emf).openStatelessSession();
+      ScrollableResults results = session
+          .createQuery(String.format(SCAN_QUERY_STRING, idName, entityName)).setReadOnly(true)
+          .setFetchSize(fetchSize).scroll(ScrollMode.FORWARD_ONLY);
+      try {
+        while (results.next()) {
+          put(results.get(0));
+          scanned++;
+        }
+      } finally {
+        results.close();
+      }
+      synchronized (this) {
+        filter = building;
+        building = null;
+      }
+      logger.info("id bloom filter of {} built, {} ids scanned in {}ms", entityName, scanned,
+          System.currentTimeMillis() - start);
+    } catch (RuntimeException exception) {
+      logger.error("build id bloom filter of " + entityName + " failed, filter disabled",
+          exception);
+      disable();
+    } finally {
+      if (session != null) {
+        session.close();
+      }
+    }
+  }
+
+  /**
+   * 加入主键.
+   *
+   * @param id
+   *            the id
+   */
+  synchronized void put(Object id) {
+    if (id == null || disabled) {
+      return;
+    }
+    if (building != null) {
+      building.put(id);
+    }
+    if (filter != null) {
+      filter.put(id);
+    }
+    insertions++;
+  }
+
+  /**
+   * 停用过滤器，之后都查询数据库.
+   */
+  synchronized void disable() {
+    if (!disabled) {
+      logger.warn("id bloom filter of {} disabled", entityName);
+    }
+    disabled = true;
+    filter = null;
+    building = null;
+  }
+
+  /**
+   * 主键是否可能存在，过滤器未建立完成或已停用时返回true.
+   *
+   * @param id
+   *            the id
+   * @return false表示一定不存在
+   */
+  boolean mightContain(Object id) {
+    // 先读取volatile的insertions(不会小于0)，使其他线程put写入的位可见
+    if (insertions < 0) {
+      return true;
+    }
+    BloomFilter<Object> current = filter;
+    if (current == null || current.mightContain(id)) {
+      return true;
+    }
+    filtered.incrementAndGet();
+    return false;
+  }
+
+  /**
+   * 记录一次判断为可能存在但数据库中不存在.
+   */
+  void recordMiss() {
+    if (filter != null) {
+      falsePositives.incrementAndGet();
+    }
+  }
+
+  /**
+   * 实体名.
+   *
+   * @return the entity name
+   */
+  public String getEntityName() {
+    return entityName;
+  }
+
+  /**
+   * 是否已建立完成并在使用.
+   *
+   * @return true, if is ready
+   */
+  public boolean isReady() {
+    return filter != null;
+  }
+
+  /**
+   * 判断为不存在(未查询数据库)的次数.
+   *
+   * @return the long
+   */
+  public long getFiltered() {
+    return filtered.get();
+  }
+
+  /**
+   * 判断为可能存在但数据库中不存在的次数.
+   *
+   * @return the long
+   */
+  public long getFalsePositives() {
+    return falsePositives.get();
+  }
+
+  /**
+   * 主键的Funnel，整数主键按long，其他按字符串.
+   */
+  private enum IdFunnel implements Funnel<Object> {
+
+    /** The instance. */
+    INSTANCE;
+
+    @Override
+    public void funnel(Object id, PrimitiveSink into) {
+      if (id instanceof Long || id instanceof Integer || id instanceof Short) {
+        into.putLong(((Number) id).longValue());
+      } else {
+        into.putBytes(String.valueOf(id).getBytes(StandardCharsets.UTF_8));
+      }
+    }
+  }
+
+}
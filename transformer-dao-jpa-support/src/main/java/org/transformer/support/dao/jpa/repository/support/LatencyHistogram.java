@@ -0,0 +1,130 @@
+package org.transformer.support.dao.jpa.repository.support;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 固定分桶的延迟直方图，无锁，按毫秒分桶.
+ *
+ */
+public final class LatencyHistogram {
+
+  /** 各桶的上界(毫秒)，最后一个桶为大于最大上界的. */
+  private static final long[] BUCKET_BOUNDS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000,
+      5000, 10000 };
+
+  /** 各桶的次数. */
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS.length + 1);
+
+  /** 总次数. */
+  private final AtomicLong count = new AtomicLong();
+
+  /** 总耗时(纳秒). */
+  private final AtomicLong totalNanos = new AtomicLong();
+
+  /** 最大耗时(纳秒). */
+  private final AtomicLong maxNanos = new AtomicLong();
+
+  /**
+   * 记录一次耗时.
+   *
+   * @param nanos
+   *            耗时(纳秒)
+   */
+  public void record(long nanos) {
+    long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+    int bucket = 0;
+    while (bucket < BUCKET_BOUNDS.length && millis > BUCKET_BOUNDS[bucket]) {
+      bucket++;
+    }
+    buckets.incrementAndGet(bucket);
+    count.incrementAndGet();
+    totalNanos.addAndGet(nanos);
+    long max = maxNanos.get();
+    while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+      max = maxNanos.get();
+    }
+  }
+
+  /**
+   * 总次数.
+   *
+   * @return the count
+   */
+  public long getCount() {
+    return count.get();
+  }
+
+  /**
+   * 平均耗时(毫秒).
+   *
+   * @return the mean millis
+   */
+  public double getMeanMillis() {
+    long n = count.get();
+    return n == 0 ? 0 : totalNanos.get() / 1e6 / n;
+  }
+
+  /**
+   * 最大耗时(毫秒).
+   *
+   * @return the max millis
+   */
+  public double getMaxMillis() {
+    return maxNanos.get() / 1e6;
+  }
+
+  /**
+   * 百分位耗时(毫秒)，取所在桶的上界，落在最后一个桶时取最大耗时.
+   *
+   * @param percentile
+   *            百分位，如0.99
+   * @return the percentile millis
+   */
+  public double getPercentileMillis(double percentile) {
+    long n = count.get();
+    if (n == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(percentile * n);
+    long seen = 0;
+    for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+      seen += buckets.get(i);
+      if (seen >= rank) {
+        return BUCKET_BOUNDS[i];
+      }
+    }
+    return getMaxMillis();
+  }
+
+  /**
+   * 各桶的上界(毫秒).
+   *
+   * @return the bucket bounds
+   */
+  public static long[] getBucketBounds() {
+    return BUCKET_BOUNDS.clone();
+  }
+
+  /**
+   * 各桶的次数，比上界多一个桶.
+   *
+   * @return the bucket counts
+   */
+  public long[] getBucketCounts() {
+    long[] counts = new long[buckets.length()];
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = buckets.get(i);
+    }
+    return counts;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("count=%d, mean=%.2fms, p50=%.0fms, p99=%.0fms, max=%.2fms",
+        getCount(), getMeanMillis(), getPercentileMillis(0.5), getPercentileMillis(0.99),
+        getMaxMillis());
+  }
+
+}
@@ -0,0 +1,85 @@
+package org.transformer.support.dao.jpa.repository.support;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+import javax.persistence.Basic;
+import javax.persistence.ElementCollection;
+import javax.persistence.FetchType;
+import javax.persistence.ManyToMany;
+import javax.persistence.ManyToOne;
+import javax.persistence.OneToMany;
+import javax.persistence.OneToOne;
+
+/**
+ * 判断实体是否有延迟加载的属性(关联、集合或lazy的基本属性).
+ * 这类实体序列化后得到的是未初始化的代理，反序列化出的游离态实体访问时会抛LazyInitializationException，
+ * 不能放入近端缓存或service的结果缓存.
+ *
+ */
+public final class LazyAssociationDetector {
+
+  /**
+   * Instantiates a new lazy association detector.
+   */
+  private LazyAssociationDetector() {
+  }
+
+  /**
+   * 实体是否有延迟加载的属性.
+   *
+   * @param entityClass
+   *            the entity class
+   * @return 第一个延迟加载的字段或getter，没有返回null
+   */
+  public static AccessibleObject findLazyMember(Class<?> entityClass) {
+    for (Class<?> clazz = entityClass; clazz != null && clazz != Object.class; clazz = clazz
+        .getSuperclass()) {
+      for (Field field : clazz.getDeclaredFields()) {
+        if (isLazy(field)) {
+          return field;
+        }
+      }
+      for (Method method : clazz.getDeclaredMethods()) {
+        if (isLazy(method)) {
+          return method;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * 属性是否延迟加载，集合默认延迟加载.
+   *
+   * @param member
+   *            字段或getter
+   * @return true, if is lazy
+   */
+  private static boolean isLazy(AccessibleObject member) {
+    OneToMany oneToMany = member.getAnnotation(OneToMany.class);
+    if (oneToMany != null) {
+      return oneToMany.fetch() == FetchType.LAZY;
+    }
+    ManyToMany manyToMany = member.getAnnotation(ManyToMany.class);
+    if (manyToMany != null) {
+      return manyToMany.fetch() == FetchType.LAZY;
+    }
+    ElementCollection elementCollection = member.getAnnotation(ElementCollection.class);
+    if (elementCollection != null) {
+      return elementCollection.fetch() == FetchType.LAZY;
+    }
+    ManyToOne manyToOne = member.getAnnotation(ManyToOne.class);
+    if (manyToOne != null) {
+      return manyToOne.fetch() == FetchType.LAZY;
+    }
+    OneToOne oneToOne = member.getAnnotation(OneToOne.class);
+    if (oneToOne != null) {
+      return oneToOne.fetch() == FetchType.LAZY;
+    }
+    Basic basic = member.getAnnotation(Basic.class);
+    return basic != null && basic.fetch() == FetchType.LAZY;
+  }
+
+}
@@ -0,0 +1,312 @@
+package org.transformer.support.dao.jpa.repository.support;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 实体的进程内近端缓存.
+ * 缓存的是实体序列化后的字节，每次读取反序列化出新的游离态实体，调用方之间互不影响，
+ * 也不会缓存到当前事务未提交的修改.
+ * 失效时递增版本号，加载前后版本号不一致的结果不保留，避免并发读把旧数据放回缓存.
+ * 只适用于没有延迟加载属性的实体：序列化的副本中延迟加载的关联是未初始化的代理，
+ * 游离态下访问会抛LazyInitializationException，BaseRepository创建时会检查.
+ * 批量语句(RepositoryHelper.batchUpdate)按语句涉及的表在事务提交后失效整个实体的缓存.
+ *
+ */
+public final class NearCache {
+
+  /** 所有实体的近端缓存. */
+  private static final ConcurrentMap<String, NearCache> CACHES =
+      new ConcurrentHashMap<String, NearCache>();
+
+  /** The entity name. */
+  private final String entityName;
+
+  /** 实体的表(hibernate query spaces). */
+  private final Set<Serializable> querySpaces;
+
+  /** The cache. */
+  private final Cache<Serializable, byte[]> cache;
+
+  /** 失效版本号. */
+  private final AtomicLong version = new AtomicLong();
+
+  /**
+   * Instantiates a new near cache.
+   *
+   * @param entityName
+   *            the entity name
+   * @param querySpaces
+   *            实体的表
+   * @param maximumSize
+   *            最大缓存实体数
+   * @param expireAfterWrite
+   *            写入后的过期时间(秒)
+   */
+  private NearCache(String entityName, Collection<? extends Serializable> querySpaces,
+      long maximumSize, long expireAfterWrite) {
+    this.entityName = entityName;
+    this.querySpaces = new HashSet<Serializable>(querySpaces);
+    this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize)
+        .expireAfterWrite(expireAfterWrite, TimeUnit.SECONDS).recordStats().build();
+  }
+
+  /**
+   * 获取实体的近端缓存，同一实体的多个repository共用，任一repository的写入都使其失效.
+   *
+   * @param entityName
+   *            the entity name
+   * @param querySpaces
+   *            实体的表
+   * @param maximumSize
+   *            最大缓存实体数，只在第一次创建时使用
+   * @param expireAfterWrite
+   *            写入后的过期时间(秒)，只在第一次创建时使用
+   * @return the near cache
+   */
+  static NearCache forEntity(String entityName, Collection<? extends Serializable> querySpaces,
+      long maximumSize, long expireAfterWrite) {
+    NearCache nearCache = CACHES.get(entityName);
+    if (nearCache == null) {
+      nearCache = new NearCache(entityName, querySpaces, maximumSize, expireAfterWrite);
+      NearCache existing = CACHES.putIfAbsent(entityName, nearCache);
+      if (existing != null) {
+        nearCache = existing;
+      }
+    }
+    return nearCache;
+  }
+
+  /**
+   * 获取缓存的实体.
+   *
+   * @param id
+   *            the id
+   * @return 游离态实体，未缓存返回null
+   */
+  Object get(Serializable id) {
+    byte[] bytes = cache.getIfPresent(id);
+    return bytes == null ? null : SerializationUtils.deserialize(bytes);
+  }
+
+  /**
+   * 是否缓存了主键对应的实体.
+   *
+   * @param id
+   *            the id
+   * @return true, if successful
+   */
+  boolean contains(Serializable id) {
+    return cache.getIfPresent(id) != null;
+  }
+
+  /**
+   * 当前失效版本号，在加载实体前获取.
+   *
+   * @return the long
+   */
+  long version() {
+    return version.get();
+  }
+
+  /**
+   * 缓存实体，加载期间有失效时不缓存.
+   *
+   * @param id
+   *            the id
+   * @param entity
+   *            the entity
+   * @param loadVersion
+   *            加载前的失效版本号
+   */
+  void put(Serializable id, Serializable entity, long loadVersion) {
+    if (version.get() != loadVersion) {
+      return;
+    }
+    cache.put(id, SerializationUtils.serialize(entity));
+    if (version.get() != loadVersion) {
+      cache.invalidate(id);
+    }
+  }
+
+  /**
+   * 失效指定主键.
+   *
+   * @param ids
+   *            the ids
+   */
+  void invalidate(Iterable<?> ids) {
+    version.incrementAndGet();
+    cache.invalidateAll(ids);
+  }
+
+  /**
+   * 失效全部.
+   */
+  void invalidateAll() {
+    version.incrementAndGet();
+    cache.invalidateAll();
+  }
+
+  /**
+   * 事务提交后失效写入了这些表的实体的全部缓存，没有事务时立即失效. 同一事务内多次写入只失效一次.
+   *
+   * @param tables
+   *            写入的表
+   */
+  public static void invalidateAllAfterCommit(Collection<? extends Serializable> tables) {
+    if (tables == null || tables.isEmpty()) {
+      return;
+    }
+    Set<NearCache> written = new HashSet<NearCache>();
+    for (NearCache nearCache : CACHES.values()) {
+      if (!Collections.disjoint(nearCache.querySpaces, tables)) {
+        written.add(nearCache);
+      }
+    }
+    if (written.isEmpty()) {
+      return;
+    }
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      for (NearCache nearCache : written) {
+        nearCache.invalidateAll();
+      }
+      return;
+    }
+    currentSynchronization().all.addAll(written);
+  }
+
+  /**
+   * 事务提交后失效指定主键，没有事务时立即失效.
+   * 同一事务内的多次写入合并到一个事务同步中，批量保存时不会每个实体注册一个.
+   *
+   * @param ids
+   *            主键，null表示全部
+   */
+  void invalidateAfterCommit(Collection<?> ids) {
+    if (ids != null && ids.isEmpty()) {
+      return;
+    }
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      if (ids == null) {
+        invalidateAll();
+      } else {
+        invalidate(ids);
+      }
+      return;
+    }
+    InvalidateSynchronization synchronization = currentSynchronization();
+    if (ids == null) {
+      synchronization.all.add(this);
+      return;
+    }
+    Set<Object> pending = synchronization.ids.get(this);
+    if (pending == null) {
+      pending = new HashSet<Object>();
+      synchronization.ids.put(this, pending);
+    }
+    pending.addAll(ids);
+  }
+
+  /**
+   * 当前事务的失效同步，不存在时注册.
+   *
+   * @return the invalidate synchronization
+   */
+  private static InvalidateSynchronization currentSynchronization() {
+    for (TransactionSynchronization synchronization : TransactionSynchronizationManager
+        .getSynchronizations()) {
+      if (synchronization instanceof InvalidateSynchronization) {
+        return (InvalidateSynchronization) synchronization;
+      }
+    }
+    InvalidateSynchronization synchronization = new InvalidateSynchronization();
+    TransactionSynchronizationManager.registerSynchronization(synchronization);
+    return synchronization;
+  }
+
+  /**
+   * 实体名.
+   *
+   * @return the entity name
+   */
+  public String getEntityName() {
+    return entityName;
+  }
+
+  /**
+   * 缓存统计，包括命中率(hitRate)和淘汰数(evictionCount).
+   *
+   * @return the cache stats
+   */
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  /**
+   * 缓存的实体数.
+   *
+   * @return the long
+   */
+  public long size() {
+    return cache.size();
+  }
+
+  /**
+   * 所有实体的近端缓存统计，按实体名排序.
+   *
+   * @return the map
+   */
+  public static Map<String, CacheStats> allStats() {
+    Map<String, CacheStats> stats = new TreeMap<String, CacheStats>();
+    for (NearCache nearCache : CACHES.values()) {
+      stats.put(nearCache.getEntityName(), nearCache.stats());
+    }
+    return Collections.unmodifiableMap(stats);
+  }
+
+  /**
+   * 事务提交后失效事务中写入的实体的缓存.
+   */
+  private static final class InvalidateSynchronization
+      extends TransactionSynchronizationAdapter {
+
+    /** 全部失效的缓存(批量语句写入或不知道主键). */
+    private final Set<NearCache> all = new HashSet<NearCache>();
+
+    /** 按主键失效的缓存. */
+    private final Map<NearCache, Set<Object>> ids = new HashMap<NearCache, Set<Object>>();
+
+    @Override
+    public void afterCommit() {
+      for (NearCache nearCache : all) {
+        nearCache.invalidateAll();
+      }
+      for (Map.Entry<NearCache, Set<Object>> entry : ids.entrySet()) {
+        if (!all.contains(entry.getKey())) {
+          entry.getKey().invalidate(entry.getValue());
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,97 @@
+package org.transformer.support.dao.jpa.repository.support;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.transformer.support.dao.jpa.datasource.DataSourceRoutingContext;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 与请求线程并行执行辅助查询(如分页count、分批加载)的线程池.
+ * 每个查询使用独立的EntityManager，线程池有界，队列满时提交失败，调用方退回到在当前线程执行.
+ * 查询在提交线程的数据源路由状态下执行；不在提交线程的事务中，读写事务中不要提交.
+ *
+ */
+public final class ParallelQueryExecutor {
+
+  /** 默认线程数. */
+  public static final int DEFAULT_POOL_SIZE = 8;
+
+  /** 默认队列大小. */
+  public static final int DEFAULT_QUEUE_SIZE = 64;
+
+  /** The executor. */
+  private static volatile ExecutorService executor = newExecutor(DEFAULT_POOL_SIZE,
+      DEFAULT_QUEUE_SIZE);
+
+  /**
+   * Instantiates a new parallel count executor.
+   */
+  private ParallelQueryExecutor() {
+  }
+
+  /**
+   * 替换执行并行查询的线程池，原线程池会被关闭.
+   * 线程数不要超过数据库连接池大小的一半，否则并行查询会和请求线程争抢连接.
+   *
+   * @param newExecutor
+   *            the new executor
+   */
+  public static void setExecutor(ExecutorService newExecutor) {
+    ExecutorService oldExecutor = executor;
+    executor = newExecutor;
+    oldExecutor.shutdown();
+  }
+
+  /**
+   * 创建有界线程池.
+   *
+   * @param poolSize
+   *            线程数
+   * @param queueSize
+   *            队列大小
+   * @return the executor service
+   */
+  public static ExecutorService newExecutor(int poolSize, int queueSize) {
+    ThreadPoolExecutor threadPool = new ThreadPoolExecutor(poolSize, poolSize, 60L,
+        TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueSize),
+        new ThreadFactoryBuilder().setNameFormat("parallel-query-%d").setDaemon(true).build());
+    threadPool.allowCoreThreadTimeOut(true);
+    return threadPool;
+  }
+
+  /**
+   * 提交查询，查询沿用提交线程的数据源路由状态.
+   *
+   * @param <T>
+   *            the generic type
+   * @param task
+   *            the task
+   * @return future，线程池已满返回null
+   */
+  public static <T> Future<T> submit(final Callable<T> task) {
+    final DataSourceRoutingContext.Snapshot routing = DataSourceRoutingContext.snapshot();
+    try {
+      return executor.submit(new Callable<T>() {
+        @Override
+        public T call() throws Exception {
+          routing.restore();
+          try {
+            return task.call();
+          } finally {
+            DataSourceRoutingContext.clear();
+          }
+        }
+      });
+    } catch (RejectedExecutionException exception) {
+      return null;
+    }
+  }
+
+}
@@ -0,0 +1,229 @@
+package org.transformer.support.dao.jpa.repository.support;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ReflectionUtils;
+import org.transformer.support.dao.jpa.repository.support.annotation.ProjectedProperty;
+
+import java.beans.ConstructorProperties;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 投影类型的元数据：需要查询的实体属性路径及由查询结果行创建投影对象的方式.
+ * 支持两种投影：
+ * 1、接口投影，getter对应实体属性(可用{@link ProjectedProperty}指定路径)，返回只读的代理对象
+ * 2、类投影，使用标注了{@link ConstructorProperties}的构造方法，参数名为实体属性路径
+ *
+ * @param <P>
+ *            the generic type
+ */
+final class ProjectionMetadata<P> {
+
+  /** The Constant CACHE. */
+  private static final ConcurrentMap<Class<?>, ProjectionMetadata<?>> CACHE =
+      new ConcurrentHashMap<Class<?>, ProjectionMetadata<?>>();
+
+  /** The projection type. */
+  private final Class<P> projectionType;
+
+  /** 实体属性路径. */
+  private final String[] paths;
+
+  /** 类投影的构造方法. */
+  private final Constructor<P> constructor;
+
+  /** 接口投影getter对应的列索引. */
+  private final Map<Method, Integer> getterIndexes;
+
+  /**
+   * Instantiates a new projection metadata.
+   *
+   * @param projectionType
+   *            the projection type
+   * @param paths
+   *            the paths
+   * @param constructor
+   *            the constructor
+   * @param getterIndexes
+   *            the getter indexes
+   */
+  private ProjectionMetadata(Class<P> projectionType, String[] paths, Constructor<P> constructor,
+      Map<Method, Integer> getterIndexes) {
+    this.projectionType = projectionType;
+    this.paths = paths;
+    this.constructor = constructor;
+    this.getterIndexes = getterIndexes;
+  }
+
+  /**
+   * 获取投影类型的元数据.
+   *
+   * @param <P>
+   *            the generic type
+   * @param projectionType
+   *            the projection type
+   * @return the projection metadata
+   */
+  @SuppressWarnings("unchecked")
+  static <P> ProjectionMetadata<P> forType(Class<P> projectionType) {
+    ProjectionMetadata<?> metadata = CACHE.get(projectionType);
+    if (metadata == null) {
+      metadata = projectionType.isInterface() ? forInterface(projectionType)
+          : forClass(projectionType);
+      ProjectionMetadata<?> existing = CACHE.putIfAbsent(projectionType, metadata);
+      if (existing != null) {
+        metadata = existing;
+      }
+    }
+    return (ProjectionMetadata<P>) metadata;
+  }
+
+  /**
+   * 接口投影.
+   *
+   * @param <P>
+   *            the generic type
+   * @param projectionType
+   *            the projection type
+   * @return the projection metadata
+   */
+  private static <P> ProjectionMetadata<P> forInterface(Class<P> projectionType) {
+    List<String> paths = new ArrayList<String>();
+    Map<Method, Integer> getterIndexes = new HashMap<Method, Integer>();
+    for (PropertyDescriptor descriptor : BeanUtils.getPropertyDescriptors(projectionType)) {
+      Method getter = descriptor.getReadMethod();
+      if (getter == null) {
+        continue;
+      }
+      ProjectedProperty projectedProperty = getter.getAnnotation(ProjectedProperty.class);
+      paths.add(projectedProperty != null ? projectedProperty.value() : descriptor.getName());
+      getterIndexes.put(getter, paths.size() - 1);
+    }
+    if (paths.isEmpty()) {
+      throw new IllegalArgumentException("projection " + projectionType + " has no getter");
+    }
+    return new ProjectionMetadata<P>(projectionType, paths.toArray(new String[paths.size()]),
+        null, Collections.unmodifiableMap(getterIndexes));
+  }
+
+  /**
+   * 类投影.
+   *
+   * @param <P>
+   *            the generic type
+   * @param projectionType
+   *            the projection type
+   * @return the projection metadata
+   */
+  @SuppressWarnings("unchecked")
+  private static <P> ProjectionMetadata<P> forClass(Class<P> projectionType) {
+    for (Constructor<?> constructor : projectionType.getDeclaredConstructors()) {
+      ConstructorProperties properties = constructor.getAnnotation(ConstructorProperties.class);
+      if (properties != null) {
+        ReflectionUtils.makeAccessible(constructor);
+        return new ProjectionMetadata<P>(projectionType, properties.value(),
+            (Constructor<P>) constructor, null);
+      }
+    }
+    throw new IllegalArgumentException("projection " + projectionType
+        + " must be an interface or have a constructor annotated with @ConstructorProperties");
+  }
+
+  /**
+   * 实体属性路径.
+   *
+   * @return the paths
+   */
+  String[] getPaths() {
+    return paths;
+  }
+
+  /**
+   * 把查询结果行转换为投影对象.
+   *
+   * @param rows
+   *            the rows
+   * @return the list
+   */
+  List<P> map(List<?> rows) {
+    List<P> result = new ArrayList<P>(rows.size());
+    for (Object row : rows) {
+      Object[] values = row instanceof Object[] ? (Object[]) row : new Object[] { row };
+      result.add(newInstance(values));
+    }
+    return result;
+  }
+
+  /**
+   * New instance.
+   *
+   * @param values
+   *            the values
+   * @return the p
+   */
+  private P newInstance(Object[] values) {
+    if (constructor != null) {
+      return BeanUtils.instantiateClass(constructor, values);
+    }
+    return projectionType.cast(Proxy.newProxyInstance(projectionType.getClassLoader(),
+        new Class<?>[] { projectionType }, new ProjectionInvocationHandler(values)));
+  }
+
+  /**
+   * 接口投影代理，只读.
+   */
+  private final class ProjectionInvocationHandler implements InvocationHandler {
+
+    /** The values. */
+    private final Object[] values;
+
+    /**
+     * Instantiates a new projection invocation handler.
+     *
+     * @param values
+     *            the values
+     */
+    ProjectionInvocationHandler(Object[] values) {
+      this.values = values;
+    }
+
+    @SuppressWarnings("synthetic-access")
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      Integer index = getterIndexes.get(method);
+      if (index != null) {
+        return values[index];
+      }
+      String name = method.getName();
+      if ("toString".equals(name) && method.getParameterTypes().length == 0) {
+        return projectionType.getSimpleName() + Arrays.toString(values);
+      }
+      if ("hashCode".equals(name) && method.getParameterTypes().length == 0) {
+        return Arrays.hashCode(values);
+      }
+      if ("equals".equals(name) && method.getParameterTypes().length == 1) {
+        Object other = args[0];
+        if (other == null || !Proxy.isProxyClass(other.getClass())) {
+          return false;
+        }
+        InvocationHandler handler = Proxy.getInvocationHandler(other);
+        return handler instanceof ProjectionInvocationHandler
+            && Arrays.equals(values, ((ProjectionInvocationHandler) handler).values);
+      }
+      throw new UnsupportedOperationException(
+          "projection " + projectionType.getName() + " is read-only : " + name);
+    }
+  }
+
+}
@@ -0,0 +1,97 @@
+package org.transformer.support.dao.jpa.repository.support;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按区域划分的查询结果缓存，每个区域有独立的过期时间和容量.
+ * 只缓存统计和投影等非实体结果. 通过BaseRepository的写操作及batchUpdate在事务提交后清空实体的区域，
+ * 读写事务中的查询不使用缓存；其他进程或原生sql的写入不会使其失效，数据最多过期ttl秒，
+ * 适合开销大、可以容忍短时间不一致的查询(如报表统计).
+ * 统计中 hitCount/missCount 为命中/未命中次数，loadSuccessCount 为写入次数.
+ *
+ */
+public final class QueryCacheRegions {
+
+  /** 日志. */
+  private static Logger logger = LoggerFactory.getLogger(QueryCacheRegions.class);
+
+  /** 默认区域最大结果数. */
+  public static final long DEFAULT_MAX_ENTRIES = 1000;
+
+  /** The Constant REGIONS. */
+  private static final ConcurrentMap<String, Cache<String, Object>> REGIONS =
+      new ConcurrentHashMap<String, Cache<String, Object>>();
+
+  /**
+   * Instantiates a new query cache regions.
+   */
+  private QueryCacheRegions() {
+  }
+
+  /**
+   * 获取区域，不存在时创建；同名区域以第一次创建时的配置为准.
+   *
+   * @param name
+   *            区域名
+   * @param ttl
+   *            过期时间(秒)
+   * @param maxEntries
+   *            最大结果数，小于等于0使用默认值
+   * @return the cache
+   */
+  public static Cache<String, Object> region(String name, long ttl, long maxEntries) {
+    Cache<String, Object> region = REGIONS.get(name);
+    if (region == null) {
+      region = CacheBuilder.newBuilder()
+          .maximumSize(maxEntries > 0 ? maxEntries : DEFAULT_MAX_ENTRIES)
+          .expireAfterWrite(ttl, TimeUnit.SECONDS).recordStats().build();
+      Cache<String, Object> existing = REGIONS.putIfAbsent(name, region);
+      if (existing != null) {
+        region = existing;
+      } else {
+        logger.info("query cache region {} created, ttl {}s, max entries {}", name, ttl,
+            maxEntries > 0 ? maxEntries : DEFAULT_MAX_ENTRIES);
+      }
+    }
+    return region;
+  }
+
+  /**
+   * 清空区域.
+   *
+   * @param name
+   *            区域名
+   */
+  public static void evict(String name) {
+    Cache<String, Object> region = REGIONS.get(name);
+    if (region != null) {
+      region.invalidateAll();
+    }
+  }
+
+  /**
+   * 各区域的统计，按区域名排序.
+   *
+   * @return the map
+   */
+  public static Map<String, CacheStats> allStats() {
+    Map<String, CacheStats> stats = new TreeMap<String, CacheStats>();
+    for (Map.Entry<String, Cache<String, Object>> entry : REGIONS.entrySet()) {
+      stats.put(entry.getKey(), entry.getValue().stats());
+    }
+    return Collections.unmodifiableMap(stats);
+  }
+
+}
@@ -0,0 +1,234 @@
+package org.transformer.support.dao.jpa.repository.support;
+
+import com.google.common.base.Throwables;
+
+import org.apache.commons.lang3.SerializationException;
+import org.apache.commons.lang3.SerializationUtils;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 合并相同的并发只读查询(single-flight)：同一个键同时只有一个调用者(leader)查询数据库，
+ * 其他调用者等待并得到leader结果的副本.
+ * leader得到原结果，其他调用者得到序列化复制的结果，实体为游离态；结果不能序列化或反序列化时其他调用者自己查询.
+ * 只合并同时进行的查询，不缓存结果.
+ *
+ */
+public final class QueryCoalescer {
+
+  /** The Constant INSTANCES. */
+  private static final ConcurrentMap<String, QueryCoalescer> INSTANCES =
+      new ConcurrentHashMap<String, QueryCoalescer>();
+
+  /** The name. */
+  private final String name;
+
+  /** 进行中的查询. */
+  private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<String, Flight>();
+
+  /** 查询数据库的次数. */
+  private final AtomicLong executed = new AtomicLong();
+
+  /** 被合并(未查询数据库)的次数. */
+  private final AtomicLong collapsed = new AtomicLong();
+
+  /**
+   * Instantiates a new query coalescer.
+   *
+   * @param name
+   *            the name
+   */
+  private QueryCoalescer(String name) {
+    this.name = name;
+  }
+
+  /**
+   * 获取名称对应的合并器(一般为实体名).
+   *
+   * @param name
+   *            the name
+   * @return the query coalescer
+   */
+  public static QueryCoalescer forName(String name) {
+    QueryCoalescer coalescer = INSTANCES.get(name);
+    if (coalescer == null) {
+      coalescer = new QueryCoalescer(name);
+      QueryCoalescer existing = INSTANCES.putIfAbsent(name, coalescer);
+      if (existing != null) {
+        coalescer = existing;
+      }
+    }
+    return coalescer;
+  }
+
+  /**
+   * 所有合并器，key为名称.
+   *
+   * @return the map
+   */
+  public static Map<String, QueryCoalescer> all() {
+    return Collections.unmodifiableMap(INSTANCES);
+  }
+
+  /**
+   * 执行查询，相同键的查询正在进行时等待其结果.
+   *
+   * @param <T>
+   *            the generic type
+   * @param key
+   *            查询的规范化键
+   * @param loader
+   *            查询数据库
+   * @return the t
+   * @throws Exception
+   *             查询异常，合并的调用者得到leader的异常
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T execute(String key, Callable<T> loader) throws Exception {
+    Flight flight = new Flight();
+    Flight existing = flights.putIfAbsent(key, flight);
+    if (existing != null && existing.join()) {
+      byte[] shared;
+      try {
+        shared = existing.result.get();
+      } catch (ExecutionException exception) {
+        collapsed.incrementAndGet();
+        Throwables.propagateIfPossible(exception.getCause(), Exception.class);
+        throw exception;
+      }
+      if (shared != null) {
+        try {
+          T copy = (T) SerializationUtils.deserialize(shared);
+          collapsed.incrementAndGet();
+          return copy;
+        } catch (SerializationException exception) {
+          // 副本不能还原(如类加载器不同)，自己查询
+        }
+      }
+      // 结果不能共享，自己查询
+      executed.incrementAndGet();
+      return loader.call();
+    }
+    if (existing != null) {
+      // leader已完成，不再等待
+      executed.incrementAndGet();
+      return loader.call();
+    }
+
+    executed.incrementAndGet();
+    T result;
+    try {
+      result = loader.call();
+    } catch (Exception exception) {
+      flights.remove(key, flight);
+      flight.close();
+      flight.result.completeExceptionally(exception);
+      throw exception;
+    } catch (Error error) {
+      flights.remove(key, flight);
+      flight.close();
+      flight.result.completeExceptionally(error);
+      throw error;
+    }
+    flights.remove(key, flight);
+    byte[] shared = null;
+    if (flight.close() > 0 && (result == null || result instanceof Serializable)) {
+      try {
+        shared = SerializationUtils.serialize((Serializable) result);
+      } catch (SerializationException exception) {
+        shared = null;
+      }
+    }
+    flight.result.complete(shared);
+    return result;
+  }
+
+  /**
+   * Gets the name.
+   *
+   * @return the name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * 查询数据库的次数.
+   *
+   * @return the executed count
+   */
+  public long getExecutedCount() {
+    return executed.get();
+  }
+
+  /**
+   * 被合并(直接得到其他调用者结果)的次数.
+   *
+   * @return the collapsed count
+   */
+  public long getCollapsedCount() {
+    return collapsed.get();
+  }
+
+  /**
+   * 正在进行的查询数.
+   *
+   * @return the in flight count
+   */
+  public int getInFlightCount() {
+    return flights.size();
+  }
+
+  @Override
+  public String toString() {
+    return "QueryCoalescer{" + "name=" + name + ", executed=" + executed + ", collapsed="
+        + collapsed + ", inFlight=" + flights.size() + '}';
+  }
+
+  /**
+   * 一次进行中的查询.
+   */
+  private static final class Flight {
+
+    /** 序列化的结果，不能共享时为null. */
+    private final CompletableFuture<byte[]> result = new CompletableFuture<byte[]>();
+
+    /** 等待的调用者数. */
+    private int followers;
+
+    /** 是否已不再接受等待者. */
+    private boolean closed;
+
+    /**
+     * 加入等待.
+     *
+     * @return false表示查询已结束
+     */
+    synchronized boolean join() {
+      if (closed) {
+        return false;
+      }
+      followers++;
+      return true;
+    }
+
+    /**
+     * 不再接受等待者.
+     *
+     * @return 等待的调用者数
+     */
+    synchronized int close() {
+      closed = true;
+      return followers;
+    }
+  }
+
+}
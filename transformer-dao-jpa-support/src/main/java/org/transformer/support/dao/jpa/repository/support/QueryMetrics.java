@@ -0,0 +1,183 @@
+package org.transformer.support.dao.jpa.repository.support;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.transformer.support.dao.jpa.search.Searchable;
+import org.transformer.support.dao.jpa.search.util.SearchableKeyUtils;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * dao层查询的延迟统计及慢查询日志.
+ * 按 实体名.方法名[查询条件形状] 分别记录延迟直方图，条件形状不含条件值；
+ * 超过慢查询阈值时以key=value格式记录到 {@value #SLOW_QUERY_LOGGER} 日志.
+ *
+ */
+public final class QueryMetrics {
+
+  /** 慢查询日志名. */
+  public static final String SLOW_QUERY_LOGGER = "org.transformer.support.dao.SlowQuery";
+
+  /** 默认慢查询阈值(毫秒). */
+  public static final long DEFAULT_SLOW_QUERY_THRESHOLD = 1000;
+
+  /** 默认最多记录的直方图数，超过后新的条件形状合并为*. */
+  public static final int DEFAULT_MAXIMUM_SERIES = 2000;
+
+  /** 慢查询日志. */
+  private static Logger slowQueryLogger = LoggerFactory.getLogger(SLOW_QUERY_LOGGER);
+
+  /** The Constant HISTOGRAMS. */
+  private static final ConcurrentMap<String, LatencyHistogram> HISTOGRAMS =
+      new ConcurrentHashMap<String, LatencyHistogram>();
+
+  /** 慢查询阈值(纳秒). */
+  private static volatile long slowQueryThresholdNanos = TimeUnit.MILLISECONDS
+      .toNanos(DEFAULT_SLOW_QUERY_THRESHOLD);
+
+  /** 最多记录的直方图数. */
+  private static volatile int maximumSeries = DEFAULT_MAXIMUM_SERIES;
+
+  /** 是否开启. */
+  private static volatile boolean enabled = true;
+
+  /**
+   * Instantiates a new query metrics.
+   */
+  private QueryMetrics() {
+  }
+
+  /**
+   * 设置慢查询阈值(毫秒).
+   *
+   * @param threshold
+   *            the new slow query threshold
+   */
+  public static void setSlowQueryThreshold(long threshold) {
+    slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(threshold);
+  }
+
+  /**
+   * 设置最多记录的直方图数.
+   *
+   * @param maximum
+   *            the new maximum series
+   */
+  public static void setMaximumSeries(int maximum) {
+    maximumSeries = maximum;
+  }
+
+  /**
+   * 设置是否开启统计.
+   *
+   * @param enable
+   *            the new enabled
+   */
+  public static void setEnabled(boolean enable) {
+    enabled = enable;
+  }
+
+  /**
+   * 记录Searchable查询.
+   *
+   * @param entityName
+   *            实体名
+   * @param method
+   *            方法名
+   * @param searchable
+   *            查询条件，可为null
+   * @param ql
+   *            执行的ql
+   * @param rows
+   *            返回(或影响)的记录数，未知为-1
+   * @param startNanos
+   *            开始时间(System.nanoTime)
+   */
+  public static void record(String entityName, String method, Searchable searchable, String ql,
+      long rows, long startNanos) {
+    if (!enabled) {
+      return;
+    }
+    record(entityName, method,
+        searchable == null ? "" : SearchableKeyUtils.shapeOf(searchable, true), ql, rows,
+        startNanos);
+  }
+
+  /**
+   * 记录查询.
+   *
+   * @param entityName
+   *            实体名
+   * @param method
+   *            方法名
+   * @param fingerprint
+   *            查询条件形状，可为空
+   * @param ql
+   *            执行的ql，可为null
+   * @param rows
+   *            返回(或影响)的记录数，未知为-1
+   * @param startNanos
+   *            开始时间(System.nanoTime)
+   */
+  public static void record(String entityName, String method, String fingerprint, String ql,
+      long rows, long startNanos) {
+    if (!enabled) {
+      return;
+    }
+    long elapsed = System.nanoTime() - startNanos;
+    histogram(entityName + "." + method, fingerprint).record(elapsed);
+    if (elapsed >= slowQueryThresholdNanos) {
+      slowQueryLogger.warn("slow query entity={} method={} fingerprint=\"{}\" elapsedMs={} "
+          + "rows={} ql=\"{}\"", entityName, method, fingerprint,
+          TimeUnit.NANOSECONDS.toMillis(elapsed), rows, ql);
+    }
+  }
+
+  /**
+   * 获取直方图.
+   *
+   * @param name
+   *            the name
+   * @param fingerprint
+   *            the fingerprint
+   * @return the latency histogram
+   */
+  private static LatencyHistogram histogram(String name, String fingerprint) {
+    String key = fingerprint == null || fingerprint.isEmpty() ? name
+        : name + "[" + fingerprint + "]";
+    LatencyHistogram histogram = HISTOGRAMS.get(key);
+    if (histogram == null) {
+      if (HISTOGRAMS.size() >= maximumSeries) {
+        key = name + "[*]";
+      }
+      histogram = new LatencyHistogram();
+      LatencyHistogram existing = HISTOGRAMS.putIfAbsent(key, histogram);
+      if (existing != null) {
+        histogram = existing;
+      }
+    }
+    return histogram;
+  }
+
+  /**
+   * 所有直方图，按名称排序.
+   *
+   * @return the map
+   */
+  public static Map<String, LatencyHistogram> histograms() {
+    return Collections.unmodifiableMap(new TreeMap<String, LatencyHistogram>(HISTOGRAMS));
+  }
+
+  /**
+   * 清空统计.
+   */
+  public static void reset() {
+    HISTOGRAMS.clear();
+  }
+
+}
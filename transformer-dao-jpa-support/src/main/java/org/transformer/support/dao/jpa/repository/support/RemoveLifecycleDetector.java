@@ -0,0 +1,120 @@
+package org.transformer.support.dao.jpa.repository.support;
+
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import javax.persistence.CascadeType;
+import javax.persistence.ElementCollection;
+import javax.persistence.EntityListeners;
+import javax.persistence.ManyToMany;
+import javax.persistence.OneToMany;
+import javax.persistence.OneToOne;
+import javax.persistence.PostRemove;
+import javax.persistence.PreRemove;
+
+/**
+ * 判断实体删除时是否需要走jpa生命周期(回调、级联、集合表)，
+ * 需要时不能使用批量delete语句，只能逐个em.remove.
+ *
+ */
+final class RemoveLifecycleDetector {
+
+  /**
+   * Instantiates a new remove lifecycle detector.
+   */
+  private RemoveLifecycleDetector() {
+  }
+
+  /**
+   * 实体删除时是否需要生命周期处理.
+   *
+   * @param entityClass
+   *            the entity class
+   * @return true, if successful
+   */
+  static boolean hasRemoveLifecycle(Class<?> entityClass) {
+    for (Class<?> clazz = entityClass; clazz != null && clazz != Object.class; clazz = clazz
+        .getSuperclass()) {
+      EntityListeners entityListeners = clazz.getAnnotation(EntityListeners.class);
+      if (entityListeners != null) {
+        for (Class<?> listenerClass : entityListeners.value()) {
+          if (hasRemoveCallback(listenerClass)) {
+            return true;
+          }
+        }
+      }
+      if (hasRemoveCallback(clazz)) {
+        return true;
+      }
+      for (Field field : clazz.getDeclaredFields()) {
+        if (cascadesRemove(field)) {
+          return true;
+        }
+      }
+      for (Method method : clazz.getDeclaredMethods()) {
+        if (cascadesRemove(method)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * 类中是否有删除回调方法.
+   *
+   * @param clazz
+   *            the clazz
+   * @return true, if successful
+   */
+  private static boolean hasRemoveCallback(Class<?> clazz) {
+    for (Method method : ReflectionUtils.getAllDeclaredMethods(clazz)) {
+      if (method.isAnnotationPresent(PreRemove.class)
+          || method.isAnnotationPresent(PostRemove.class)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * 属性删除时是否需要级联删除或清理集合表.
+   *
+   * @param member
+   *            字段或getter
+   * @return true, if successful
+   */
+  private static boolean cascadesRemove(AccessibleObject member) {
+    if (member.isAnnotationPresent(ElementCollection.class)) {
+      return true;
+    }
+    ManyToMany manyToMany = member.getAnnotation(ManyToMany.class);
+    if (manyToMany != null) {
+      return true;
+    }
+    OneToMany oneToMany = member.getAnnotation(OneToMany.class);
+    if (oneToMany != null
+        && (oneToMany.orphanRemoval() || cascadesRemove(oneToMany.cascade()))) {
+      return true;
+    }
+    OneToOne oneToOne = member.getAnnotation(OneToOne.class);
+    return oneToOne != null && (oneToOne.orphanRemoval() || cascadesRemove(oneToOne.cascade()));
+  }
+
+  /**
+   * Cascades remove.
+   *
+   * @param cascadeTypes
+   *            the cascade types
+   * @return true, if successful
+   */
+  private static boolean cascadesRemove(CascadeType[] cascadeTypes) {
+    return Arrays.asList(cascadeTypes).contains(CascadeType.REMOVE)
+        || Arrays.asList(cascadeTypes).contains(CascadeType.ALL);
+  }
+
+}
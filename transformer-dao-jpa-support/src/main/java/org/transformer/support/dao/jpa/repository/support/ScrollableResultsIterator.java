@@ -0,0 +1,125 @@
+package org.transformer.support.dao.jpa.repository.support;
+
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 基于hibernate ScrollableResults的只进迭代器.
+ * 每迭代batchSize条记录从session中移除这一批迭代出的实体，保证堆内存不随记录数增长，
+ * 因此迭代出的实体在下一批开始后即变为游离态；session中调用方的其他实体不受影响.
+ * 随实体一起加载的关联实体按级联设置(CascadeType.DETACH)移除.
+ *
+ * @param <M>
+ *            the generic type
+ */
+class ScrollableResultsIterator<M> implements Iterator<M>, Closeable {
+
+  /** The results. */
+  private final ScrollableResults results;
+
+  /** The session. */
+  private final Session session;
+
+  /** 每批记录数. */
+  private final int batchSize;
+
+  /** 本批迭代出的实体. */
+  private final List<Object> batch;
+
+  /** 已迭代的记录数. */
+  private long count;
+
+  /** 是否已取出下一条. */
+  private Boolean hasNext;
+
+  /** The closed. */
+  private boolean closed;
+
+  /**
+   * Instantiates a new scrollable results iterator.
+   *
+   * @param results
+   *            the results
+   * @param session
+   *            the session
+   * @param batchSize
+   *            每批记录数
+   */
+  ScrollableResultsIterator(ScrollableResults results, Session session, int batchSize) {
+    this.results = results;
+    this.session = session;
+    this.batchSize = batchSize;
+    this.batch = new ArrayList<Object>(batchSize);
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (closed) {
+      return false;
+    }
+    if (hasNext == null) {
+      if (count > 0 && count % batchSize == 0) {
+        evictBatch();
+      }
+      hasNext = results.next();
+      if (!hasNext) {
+        close();
+      }
+    }
+    return hasNext;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public M next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    hasNext = null;
+    count++;
+    Object entity = results.get(0);
+    batch.add(entity);
+    return (M) entity;
+  }
+
+  /**
+   * 从session中移除本批迭代出的实体.
+   */
+  private void evictBatch() {
+    for (Object entity : batch) {
+      if (entity != null && session.contains(entity)) {
+        session.evict(entity);
+      }
+    }
+    batch.clear();
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException("remove");
+  }
+
+  /**
+   * 已迭代的记录数.
+   *
+   * @return the long
+   */
+  long getCount() {
+    return count;
+  }
+
+  @Override
+  public void close() {
+    if (!closed) {
+      closed = true;
+      results.close();
+    }
+  }
+
+}
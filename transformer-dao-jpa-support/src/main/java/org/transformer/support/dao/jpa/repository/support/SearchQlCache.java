@@ -0,0 +1,134 @@
+package org.transformer.support.dao.jpa.repository.support;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import org.transformer.support.dao.jpa.repository.callback.DefaultSearchCallback;
+import org.transformer.support.dao.jpa.repository.callback.SearchCallback;
+import org.transformer.support.dao.jpa.search.Searchable;
+import org.transformer.support.dao.jpa.search.util.SearchableKeyUtils;
+
+/**
+ * 按查询条件形状缓存拼好的ql.
+ * 同一形状的Searchable只在第一次拼ql，之后直接复用ql字符串，
+ * hibernate的QueryPlanCache也是以ql字符串为键，因此同时命中hibernate的查询计划缓存.
+ * 只有{@link DefaultSearchCallback}拼出的ql与查询值无关，其他回调不缓存.
+ *
+ */
+public final class SearchQlCache {
+
+  /** 默认最多缓存的ql数. */
+  public static final long DEFAULT_MAXIMUM_SIZE = 2048;
+
+  /** The cache. */
+  private static volatile Cache<String, String> cache = newCache(DEFAULT_MAXIMUM_SIZE);
+
+  /**
+   * Instantiates a new search ql cache.
+   */
+  private SearchQlCache() {
+  }
+
+  /**
+   * 设置最多缓存的ql数，会清空已缓存的ql及统计.
+   *
+   * @param maximumSize
+   *            the maximum size
+   */
+  public static void setMaximumSize(long maximumSize) {
+    cache = newCache(maximumSize);
+  }
+
+  /**
+   * New cache.
+   *
+   * @param maximumSize
+   *            the maximum size
+   * @return the cache
+   */
+  private static Cache<String, String> newCache(long maximumSize) {
+    return CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build();
+  }
+
+  /**
+   * 回调拼出的ql是否只与查询条件形状相关.
+   *
+   * @param searchCallback
+   *            the search callback
+   * @return true, if is cacheable
+   */
+  public static boolean isCacheable(SearchCallback searchCallback) {
+    return searchCallback != null && searchCallback.getClass() == DefaultSearchCallback.class;
+  }
+
+  /**
+   * 生成缓存键.
+   *
+   * @param ql
+   *            查询前缀ql
+   * @param searchable
+   *            the searchable
+   * @param searchCallback
+   *            the search callback
+   * @param withOrder
+   *            是否拼排序
+   * @return the string
+   */
+  public static String keyOf(String ql, Searchable searchable, SearchCallback searchCallback,
+      boolean withOrder) {
+    StringBuilder key = new StringBuilder(ql);
+    key.append('|').append(((DefaultSearchCallback) searchCallback).getAlias());
+    key.append('|').append(SearchableKeyUtils.shapeOf(searchable, withOrder));
+    return key.toString();
+  }
+
+  /**
+   * 获取已缓存的ql.
+   *
+   * @param key
+   *            the key
+   * @return ql，没有返回null
+   */
+  public static String get(String key) {
+    return cache.getIfPresent(key);
+  }
+
+  /**
+   * 缓存ql.
+   *
+   * @param key
+   *            the key
+   * @param ql
+   *            the ql
+   */
+  public static void put(String key, String ql) {
+    cache.put(key, ql);
+  }
+
+  /**
+   * 命中/未命中等统计信息.
+   *
+   * @return the cache stats
+   */
+  public static CacheStats stats() {
+    return cache.stats();
+  }
+
+  /**
+   * 已缓存的ql数.
+   *
+   * @return the long
+   */
+  public static long size() {
+    return cache.size();
+  }
+
+  /**
+   * 清空缓存.
+   */
+  public static void clear() {
+    cache.invalidateAll();
+  }
+
+}
@@ -0,0 +1,43 @@
+package org.transformer.support.dao.jpa.repository.support.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 开启实体主键的布隆过滤器，findOne/exists对一定不存在的主键直接返回，不查询数据库.
+ * 启动时在后台线程流式扫描全部主键建立过滤器，建立完成前都查询数据库；
+ * 之后通过BaseRepository的save/upsertAll新增的主键加入过滤器，删除的主键不移除(只增加误判).
+ * 绕过BaseRepository插入的记录(如insert语句、其他进程)不会加入过滤器，这类实体不要开启.
+ * 
+ */
+@Target({ ElementType.TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface EnableIdBloomFilter {
+
+  /**
+   * 预计的主键数，超过后误判率上升.
+   * 
+   * @return the int
+   */
+  int expectedInsertions() default 1000000;
+
+  /**
+   * 误判率(不存在的主键被判断为可能存在的概率).
+   * 
+   * @return the double
+   */
+  double fpp() default 0.01;
+
+  /**
+   * 扫描主键的jdbc fetch size，默认Integer.MIN_VALUE为mysql流式结果集，
+   * 其他数据库需要设置为正数.
+   * 
+   * @return the int
+   */
+  int fetchSize() default Integer.MIN_VALUE;
+
+}
@@ -0,0 +1,36 @@
+package org.transformer.support.dao.jpa.repository.support.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 开启实体的进程内近端缓存，不在读写事务中时findOne/exists按主键优先从缓存读取，
+ * 返回的是游离态的副本.
+ * 通过BaseRepository保存、删除实体后，在事务提交后失效对应的缓存；
+ * RepositoryHelper.batchUpdate写入实体的表后失效实体的全部缓存.
+ * 缓存的是序列化的副本，实体不能有延迟加载的关联或属性，否则创建Repository时报错.
+ * 
+ */
+@Target({ ElementType.TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface EnableNearCache {
+
+  /**
+   * 最大缓存实体数，超过后按最近最少使用淘汰.
+   * 
+   * @return the long
+   */
+  long maximumSize() default 10000;
+
+  /**
+   * 写入后的过期时间(秒).
+   * 
+   * @return the long
+   */
+  long expireAfterWrite() default 300;
+
+}
@@ -8,6 +8,11 @@ import java.lang.annotation.Target;
 
 /**
  * 开启查询缓存.
+ * 实体查询使用hibernate查询缓存，指定region时放入该区域(区域的过期策略在缓存提供者中配置).
+ * ttl大于0时统计、投影查询的结果放入同名的{@link
+ * org.transformer.support.dao.jpa.repository.support.QueryCacheRegions}区域，
+ * 写操作不会使其失效，最多过期ttl秒.
+ * 单次查询可以通过Searchable.setQueryCache覆盖.
  * 
  */
 @Target({ ElementType.TYPE })
@@ -22,4 +27,25 @@ public @interface EnableQueryCache {
    */
   boolean value() default true;
 
+  /**
+   * 缓存区域名，默认为hibernate默认查询缓存区域；ttl大于0时默认为实体类名.
+   * 
+   * @return the string
+   */
+  String region() default "";
+
+  /**
+   * 统计、投影查询结果的过期时间(秒)，0表示不缓存这类结果到区域中.
+   * 
+   * @return the long
+   */
+  long ttl() default 0;
+
+  /**
+   * 区域最大结果数，0使用默认值.
+   * 
+   * @return the long
+   */
+  long maxEntries() default 0;
+
 }
@@ -0,0 +1,26 @@
+package org.transformer.support.dao.jpa.repository.support.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 接口投影的getter对应的实体属性路径，不标注时按getter名对应实体属性.
+ * 如 @ProjectedProperty("customer.name") String getCustomerName();
+ *
+ */
+@Target({ ElementType.METHOD })
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ProjectedProperty {
+
+  /**
+   * 实体属性路径.
+   *
+   * @return the string
+   */
+  String value();
+
+}
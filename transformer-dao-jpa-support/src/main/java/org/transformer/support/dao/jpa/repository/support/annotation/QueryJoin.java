@@ -10,6 +10,9 @@ import javax.persistence.criteria.JoinType;
 
 /**
  * The Interface QueryJoin.
+ * 作用于Specification查询，标注了fetch的连接同时作用于Searchable查询
+ * (未自定义findAllQuery、countAllQuery时)，
+ * count查询只连接不抓取，连接集合属性时按countDistinct统计.
  * 
  */
 @Target({ ElementType.METHOD })
@@ -31,4 +34,13 @@ public @interface QueryJoin {
    */
   JoinType joinType();
 
+  /**
+   * 是否抓取(join fetch)关联，避免逐条加载关联的N+1查询.
+   * 抓取集合属性时查询会去重，且不能分页(分页查询抛出IllegalStateException)，
+   * 需要分页的集合属性请使用批量抓取(@BatchSize)或实体图.
+   * 
+   * @return true, if successful
+   */
+  boolean fetch() default false;
+
 }
@@ -44,4 +44,121 @@ public @interface SearchableQuery {
    */
   QueryJoin[] joins() default {};
 
+  /**
+   * 实体查询使用的命名实体图(@NamedEntityGraph)，作为javax.persistence.loadgraph，
+   * 图中的属性随实体一起加载.
+   * 
+   * @return the string
+   */
+  String entityGraph() default "";
+
+  /**
+   * 统计上限，超过上限的总数按上限返回并标记为估计值(如"10000+")，0表示精确统计.
+   * 自定义了findAllQuery或countAllQuery时只能精确统计.
+   * 
+   * @return the long
+   */
+  long countLimit() default 0;
+
+  /**
+   * 是否在独立的EntityManager上与内容查询并行执行count查询.
+   * 读写事务中(需要看到未提交的修改)仍在当前事务中统计；线程池已满时在调用线程统计.
+   * 
+   * @return true, if successful
+   */
+  boolean parallelCount() default false;
+
+  /**
+   * 并行count查询的超时时间(毫秒)，超时后分页总数未知.
+   * 
+   * @return the long
+   */
+  long countTimeout() default 3000;
+
+  /**
+   * 流式查询(stream/forEach)的jdbc fetch size，0表示按方言选择：
+   * MySQL为Integer.MIN_VALUE(流式结果集)，其他数据库为1000.
+   * 
+   * @return the int
+   */
+  int streamFetchSize() default 0;
+
+  /**
+   * 根据主键批量删除时每批的主键数.
+   * 
+   * @return the int
+   */
+  int deleteChunkSize() default 1000;
+
+  /**
+   * save(Iterable)每批flush并clear的实体数，0表示不分批.
+   * 应与hibernate.jdbc.batch_size一致，并开启hibernate.order_inserts、hibernate.order_updates.
+   * 
+   * @return the int
+   */
+  int saveBatchSize() default 0;
+
+  /**
+   * 根据主键批量查询(findAll(Iterable))时每批in查询的主键数.
+   * 
+   * @return the int
+   */
+  int multiGetChunkSize() default 512;
+
+  /**
+   * upsertAll每条多行语句的行数.
+   * 
+   * @return the int
+   */
+  int upsertBatchSize() default 500;
+
+  /**
+   * 是否合并相同的并发统计及投影查询(实体、查询条件、查询值及分页都相同)，
+   * 同一时刻只有一个调用者查询数据库，其他调用者得到结果的副本. 读写事务中的查询不合并.
+   * 
+   * @return true, if successful
+   */
+  boolean coalesceReads() default false;
+
+  /**
+   * 开启coalesceReads时是否也合并实体查询(findAll(Searchable)).
+   * 其他调用者得到的是游离态副本而不是自己EntityManager中的实体：修改不会被dirty checking保存，
+   * 延迟加载的关联会失败，且只在并发合并时才出现；只在调用方只读使用结果时开启，实体需要实现Serializable.
+   * 
+   * @return true, if successful
+   */
+  boolean coalesceEntityReads() default false;
+
+  /**
+   * count(Searchable)缓存的最大条件数，0表示不缓存.
+   * 实体的表被写入(save/delete/upsertAll/batchUpdate)并提交后缓存的结果过期.
+   * findAll(Searchable)分页的总数也使用这个缓存(有countLimit时按上限统计的结果单独缓存).
+   * 
+   * @return the long
+   */
+  long countCacheSize() default 0;
+
+  /**
+   * count(Searchable)缓存的结果写入后的过期时间(秒).
+   * 其他进程或原生sql的写入不会使缓存过期，最多在这段时间内返回旧的结果.
+   * 
+   * @return the long
+   */
+  long countCacheExpireAfterWrite() default 300;
+
+  /**
+   * count(Searchable)默认可以接受的过期时间(毫秒)，0表示只返回未过期的结果.
+   * 
+   * @return the long
+   */
+  long countMaxStaleness() default 0;
+
+  /**
+   * 查询条件会用到的嵌套实体属性路径(如"customer.name")，创建repository时预先解析，
+   * 路径无效时启动失败，而不是在第一次查询时才报错. 实体的直接属性总是预先解析.
+   * 
+   * @return the string[]
+   */
+  String[] searchProperties() default {};
+
 }
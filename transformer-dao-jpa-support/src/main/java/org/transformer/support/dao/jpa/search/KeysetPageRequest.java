@@ -0,0 +1,65 @@
+package org.transformer.support.dao.jpa.search;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+/**
+ * 键集(seek)分页请求，用上一页最后一条记录的排序值定位下一页，不使用offset.
+ * cursor为null表示第一页.
+ *
+ */
+public class KeysetPageRequest extends PageRequest {
+
+  /** The Constant serialVersionUID. */
+  private static final long serialVersionUID = -3284640919406513782L;
+
+  /** 上一页返回的游标. */
+  private final String cursor;
+
+  /**
+   * Instantiates a new keyset page request.
+   *
+   * @param size
+   *            每页大小
+   * @param sort
+   *            排序
+   * @param cursor
+   *            上一页返回的游标，第一页为null
+   */
+  public KeysetPageRequest(int size, Sort sort, String cursor) {
+    super(0, size, sort);
+    this.cursor = cursor;
+  }
+
+  /**
+   * Gets the cursor.
+   *
+   * @return the cursor
+   */
+  public String getCursor() {
+    return cursor;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof KeysetPageRequest) || !super.equals(obj)) {
+      return false;
+    }
+    KeysetPageRequest that = (KeysetPageRequest) obj;
+    return cursor == null ? that.cursor == null : cursor.equals(that.cursor);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * super.hashCode() + (cursor == null ? 0 : cursor.hashCode());
+  }
+
+  @Override
+  public String toString() {
+    return "KeysetPageRequest{" + "size=" + getPageSize() + ", sort=" + getSort() + ", cursor="
+        + cursor + '}';
+  }
+}
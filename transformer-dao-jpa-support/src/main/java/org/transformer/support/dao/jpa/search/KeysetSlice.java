@@ -0,0 +1,48 @@
+package org.transformer.support.dao.jpa.search;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+
+import java.util.List;
+
+/**
+ * 键集分页结果，不统计总数，通过nextCursor获取下一页.
+ *
+ * @param <T>
+ *            the generic type
+ */
+public class KeysetSlice<T> extends SliceImpl<T> {
+
+  /** The Constant serialVersionUID. */
+  private static final long serialVersionUID = 5385734587430928183L;
+
+  /** 下一页游标，没有下一页为null. */
+  private final String nextCursor;
+
+  /**
+   * Instantiates a new keyset slice.
+   *
+   * @param content
+   *            the content
+   * @param pageable
+   *            the pageable
+   * @param hasNext
+   *            the has next
+   * @param nextCursor
+   *            the next cursor
+   */
+  public KeysetSlice(List<T> content, Pageable pageable, boolean hasNext, String nextCursor) {
+    super(content, pageable, hasNext);
+    this.nextCursor = nextCursor;
+  }
+
+  /**
+   * Gets the next cursor.
+   *
+   * @return the next cursor
+   */
+  public String getNextCursor() {
+    return nextCursor;
+  }
+
+}
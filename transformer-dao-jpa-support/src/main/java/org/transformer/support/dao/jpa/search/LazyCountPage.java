@@ -0,0 +1,176 @@
+package org.transformer.support.dao.jpa.search;
+
+import com.google.common.base.Supplier;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.List;
+
+/**
+ * 延迟统计总数的分页结果，只有调用getTotalElements等需要总数的方法时才执行count查询.
+ * 设置了统计上限时，超过上限的总数按上限返回，isTotalEstimated()为true，页面可显示为"10000+".
+ * count查询返回null(如并行统计超时)时总数未知，isTotalUnknown()为true，
+ * 总数按已查到的记录数返回，是否有下一页按本页是否取满判断.
+ * 注意：延迟的count在第一次需要总数时执行，此时可能已在service事务之外(使用共享的EntityManager，
+ * 不在原事务的快照中)，并且使用的是调用方传入的Searchable，调用方在此之前修改了它会统计到修改后的条件；
+ * 需要与内容一致的总数时在事务内调用getTotalElements().
+ * 序列化前会先执行count，反序列化后总数已确定.
+ *
+ * @param <T>
+ *            the generic type
+ */
+public class LazyCountPage<T> extends PageImpl<T> {
+
+  /** The Constant serialVersionUID. */
+  private static final long serialVersionUID = -7407733106934113958L;
+
+  /** count查询. */
+  private transient Supplier<Long> countSupplier;
+
+  /** 统计上限，0表示精确统计. */
+  private final long countLimit;
+
+  /** 总数，未统计为null. */
+  private volatile Long total;
+
+  /** 总数是否为估计值. */
+  private volatile boolean totalEstimated;
+
+  /** 总数是否未知. */
+  private volatile boolean totalUnknown;
+
+  /**
+   * Instantiates a new lazy count page.
+   *
+   * @param content
+   *            the content
+   * @param pageable
+   *            the pageable
+   * @param countSupplier
+   *            count查询，设置了统计上限时最多返回countLimit + 1，返回null表示总数未知
+   * @param countLimit
+   *            统计上限，0表示精确统计
+   */
+  public LazyCountPage(List<T> content, Pageable pageable, Supplier<Long> countSupplier,
+      long countLimit) {
+    super(content, pageable, 0);
+    this.countSupplier = countSupplier;
+    this.countLimit = countLimit;
+  }
+
+  /**
+   * 执行count查询.
+   *
+   * @return the long
+   */
+  private long resolveTotal() {
+    Long resolved = total;
+    if (resolved == null) {
+      synchronized (this) {
+        resolved = total;
+        if (resolved == null) {
+          // 没有count查询(如反序列化得到的未统计的分页)时总数未知
+          Long counted = countSupplier == null ? null : countSupplier.get();
+          long count;
+          if (counted == null) {
+            count = (long) getNumber() * getSize() + getNumberOfElements();
+            totalUnknown = true;
+          } else {
+            count = counted;
+          }
+          if (countLimit > 0 && count > countLimit) {
+            count = countLimit;
+            totalEstimated = true;
+          }
+          resolved = count;
+          total = resolved;
+          countSupplier = null;
+        }
+      }
+    }
+    return resolved;
+  }
+
+  /**
+   * 序列化前执行count，countSupplier不序列化.
+   *
+   * @param out
+   *            the out
+   * @throws IOException
+   *             Signals that an I/O exception has occurred.
+   */
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    resolveTotal();
+    out.defaultWriteObject();
+  }
+
+  /**
+   * 统计上限，0表示精确统计.
+   *
+   * @return the count limit
+   */
+  public long getCountLimit() {
+    return countLimit;
+  }
+
+  /**
+   * 是否已经执行过count查询.
+   *
+   * @return true, if is total resolved
+   */
+  public boolean isTotalResolved() {
+    return total != null;
+  }
+
+  /**
+   * 总数是否为估计值(达到统计上限).
+   *
+   * @return true, if is total estimated
+   */
+  public boolean isTotalEstimated() {
+    resolveTotal();
+    return totalEstimated;
+  }
+
+  /**
+   * 总数是否未知(count查询未完成).
+   *
+   * @return true, if is total unknown
+   */
+  public boolean isTotalUnknown() {
+    resolveTotal();
+    return totalUnknown;
+  }
+
+  @Override
+  public long getTotalElements() {
+    return resolveTotal();
+  }
+
+  @Override
+  public int getTotalPages() {
+    return getSize() == 0 ? 1 : (int) Math.ceil((double) getTotalElements() / (double) getSize());
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (isTotalUnknown()) {
+      return getNumberOfElements() == getSize();
+    }
+    return getNumber() + 1 < getTotalPages();
+  }
+
+  @Override
+  public boolean isLast() {
+    return !hasNext();
+  }
+
+  @Override
+  public String toString() {
+    return "LazyCountPage{" + "number=" + getNumber() + ", size=" + getSize() + ", total="
+        + (total == null ? "unresolved" : total) + '}';
+  }
+}
@@ -304,7 +304,7 @@ public final class SearchRequest extends Searchable {
   public void removeSort() {
     this.sort = null;
     if (this.page != null) {
-      this.page = new PageRequest(page.getPageNumber(), page.getPageSize(), null);
+      this.page = newPage(page, null);
     }
   }
 
@@ -413,12 +413,29 @@ public final class SearchRequest extends Searchable {
     }
     // 把排序合并到page中
     if (page != null) {
-      this.page = new PageRequest(page.getPageNumber(), page.getPageSize(), this.sort);
+      this.page = newPage(page, this.sort);
     } else {
       this.page = null;
     }
   }
 
+  /**
+   * 用新的排序生成分页，保留键集分页的游标.
+   * 
+   * @param page
+   *            the page
+   * @param sort
+   *            the sort
+   * @return the pageable
+   */
+  private static Pageable newPage(Pageable page, Sort sort) {
+    if (page instanceof KeysetPageRequest) {
+      return new KeysetPageRequest(page.getPageSize(), sort,
+          ((KeysetPageRequest) page).getCursor());
+    }
+    return new PageRequest(page.getPageNumber(), page.getPageSize(), sort);
+  }
+
   @Override
   public String toString() {
     return "SearchRequest{" + "searchFilterMap=" + searchFilterMap + ", page=" + page + ", sort="
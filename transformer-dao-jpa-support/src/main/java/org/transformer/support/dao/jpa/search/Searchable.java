@@ -19,6 +19,9 @@ import java.util.Map;
  */
 public abstract class Searchable {
 
+  /** 是否使用查询缓存，null按实体配置. */
+  private Boolean queryCache;
+
   /**
    * 创建一个新的查询.
    * 
@@ -336,4 +339,25 @@ public abstract class Searchable {
    */
   public abstract <T> T getValue(final String key);
 
+  /**
+   * 设置本次查询是否使用查询缓存，覆盖实体上@EnableQueryCache的配置.
+   * 
+   * @param queryCache
+   *            true使用、false不使用、null按实体配置
+   * @return the searchable
+   */
+  public Searchable setQueryCache(final Boolean queryCache) {
+    this.queryCache = queryCache;
+    return this;
+  }
+
+  /**
+   * 本次查询是否使用查询缓存.
+   * 
+   * @return true使用、false不使用、null按实体配置
+   */
+  public Boolean getQueryCache() {
+    return queryCache;
+  }
+
 }
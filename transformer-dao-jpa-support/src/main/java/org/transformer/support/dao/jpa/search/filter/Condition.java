@@ -1,27 +1,18 @@
 package org.transformer.support.dao.jpa.search.filter;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.time.DateUtils;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.util.Assert;
 import org.transformer.support.dao.jpa.search.SearchOperator;
 import org.transformer.support.dao.jpa.search.exception.InvlidSearchOperatorException;
 import org.transformer.support.dao.jpa.search.exception.SearchException;
 
-import java.text.ParseException;
-import java.util.Date;
 import java.util.List;
-import java.util.regex.Pattern;
 
 /**
  * 查询过滤条件.
  */
 public final class Condition implements SearchFilter {
 
-  /** 日志. */
-  private static Logger logger = LoggerFactory.getLogger(Condition.class);
-
   // 查询参数分隔符
   /** The Constant separator. */
   public static final String separator = "_";
@@ -39,7 +30,7 @@ public final class Condition implements SearchFilter {
   private Object value;
 
   /**
-   * 根据查询key和值生成Condition.
+   * 根据查询key和值生成Condition，key的解析结果是缓存的，见{@link SearchKeyParser}.
    * 
    * @param key
    *            如 name_like
@@ -54,25 +45,8 @@ public final class Condition implements SearchFilter {
 
     Assert.notNull(key, "Condition key must not null");
 
-    String[] searchs = StringUtils.split(key, separator);
-
-    if (searchs.length == 0) {
-      throw new SearchException("Condition key format must be : property or property_op");
-    }
-
-    String searchProperty = searchs[0];
-
-    SearchOperator operator = null;
-    if (searchs.length == 1) {
-      operator = SearchOperator.custom;
-    } else {
-      try {
-        operator = SearchOperator.valueOf(searchs[1]);
-      } catch (IllegalArgumentException exception) {
-        logger.error("invlid search operator ", exception);
-        throw new InvlidSearchOperatorException(searchProperty, searchs[1]);
-      }
-    }
+    SearchKeyParser.SearchKey searchKey = SearchKeyParser.parse(key);
+    SearchOperator operator = searchKey.getOperator();
 
     boolean allowBlankValue = SearchOperator.isAllowBlankValue(operator);
     boolean isValueBlank = (value == null);
@@ -82,48 +56,8 @@ public final class Condition implements SearchFilter {
     if (!allowBlankValue && isValueBlank) {
       return null;
     }
-    if (searchs.length == 3) {
-      if ("date".equalsIgnoreCase(searchs[2])) {
-        try {
-          Date dateSearch = null;
-          Pattern pattern1 = Pattern.compile(
-              "^(?:(?!0000)[0-9]{4}([-/.]?)(?:(?:0?[1-9]|1[0-2])([-/.]?)(?:0?[1-9]|1[0-9]|2[0-8])"
-                  + "|(?:0?[13-9]|1[0-2])([-/.]?)(?:29|30)|(?:0?[13578]|1[02])([-/.]?)31)"
-                  + "|(?:[0-9]{2}(?:0[48]|[2468][048]|[13579][26])|(?:0[48]"
-                  + "|[2468][048]|[13579][26])00)([-/.]?)0?2([-/.]?)29)$");
-          Pattern pattern2 = Pattern.compile(
-              "^(?:(?!0000)[0-9]{4}-(?:(?:0[1-9]|1[0-2])-(?:0[1-9]|1[0-9]|2[0-8])|(?:0[13-9]"
-                  + "|1[0-2])-(?:29|30)|(?:0[13578]|1[02])-31)|(?:[0-9]{2}(?:0[48]"
-                  + "|[2468][048]|[13579][26])|(?:0[48]|[2468][048]"
-                  + "|[13579][26])00)-02-29)\\s+([01][0-9]|2[0-3]):[0-5][0-9]:[0-5][0-9]$");
-          if (pattern1.matcher(value.toString()).matches()) {
-            if (operator != null
-                && (operator == SearchOperator.gte || operator == SearchOperator.gt)) {
-              dateSearch = DateUtils.parseDate(value.toString() + " 00:00:00",
-                  "yyyy-MM-dd HH:mm:ss");
-            } else if (operator != null
-                && (operator == SearchOperator.lte || operator == SearchOperator.lt)) {
-              dateSearch = DateUtils.parseDate(value.toString() + " 23:59:59",
-                  "yyyy-MM-dd HH:mm:ss");
-            } else {
-              dateSearch = DateUtils.parseDate(value.toString(), "yyyy-MM-dd");
-            }
-          } else if (pattern2.matcher(value.toString()).matches()) {
-            dateSearch = DateUtils.parseDate(value.toString(), "yyyy-MM-dd HH:mm:ss");
-          } else {
-            throw new SearchException(
-                "date search type must be search.xx_op_date:'yyyy-MM-dd HH:mm:ss' or 'yyyy-MM-dd'");
-          }
-          Condition searchFilter = newCondition(searchProperty, operator, dateSearch);
-          return searchFilter;
-        } catch (ParseException exception) {
-          logger.error("date parse exception", exception);
-          throw new SearchException(
-              "date search type must be search.xxxx_op_date:'yyyy-MM-dd HH:mm:ss'");
-        }
-      }
-    }
-    Condition searchFilter = newCondition(searchProperty, operator, value);
+    Object searchValue = isValueBlank ? value : searchKey.applyModifiers(value);
+    Condition searchFilter = newCondition(searchKey.getSearchProperty(), operator, searchValue);
 
     return searchFilter;
   }
@@ -0,0 +1,150 @@
+package org.transformer.support.dao.jpa.search.filter;
+
+import org.transformer.support.dao.jpa.search.SearchOperator;
+import org.transformer.support.dao.jpa.search.exception.SearchException;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 内置的日期修饰符，正则预先编译，日期使用java.time解析，线程安全.
+ *
+ */
+final class DateValueModifiers {
+
+  /** 日期，分隔符可以是-、/、.或没有，如 2015-01-31、2015/1/31、20150131. */
+  private static final Pattern DATE = Pattern
+      .compile("^(\\d{4})[-/.]?(\\d{1,2})[-/.]?(\\d{1,2})$");
+
+  /** 日期时间，如 2015-01-31 08:00:00、2015-01-31T08:00:00. */
+  private static final Pattern DATE_TIME = Pattern
+      .compile("^(\\d{4})-(\\d{2})-(\\d{2})(?:\\s+|T)(\\d{2}):(\\d{2}):(\\d{2})$");
+
+  /** The Constant END_OF_DAY. */
+  private static final LocalTime END_OF_DAY = LocalTime.of(23, 59, 59);
+
+  /**
+   * _date：'yyyy-MM-dd'或'yyyy-MM-dd HH:mm:ss'，只有日期时gt/gte取当天开始，lt/lte取当天结束.
+   */
+  static final SearchValueModifier DATE_MODIFIER = new SearchValueModifier() {
+
+    @Override
+    public Object apply(String searchProperty, SearchOperator operator, Object value) {
+      String text = value.toString().trim();
+      LocalDateTime dateTime = parseDateTime(text);
+      if (dateTime == null) {
+        LocalDate date = parseDate(text);
+        if (date == null) {
+          throw new SearchException("date search type must be search." + searchProperty
+              + "_op_date:'yyyy-MM-dd HH:mm:ss' or 'yyyy-MM-dd'");
+        }
+        dateTime = operator == SearchOperator.lte || operator == SearchOperator.lt
+            ? date.atTime(END_OF_DAY) : date.atStartOfDay();
+      }
+      return toDate(dateTime);
+    }
+  };
+
+  /**
+   * _datetime：只接受'yyyy-MM-dd HH:mm:ss'或'yyyy-MM-ddTHH:mm:ss'.
+   */
+  static final SearchValueModifier DATETIME_MODIFIER = new SearchValueModifier() {
+
+    @Override
+    public Object apply(String searchProperty, SearchOperator operator, Object value) {
+      LocalDateTime dateTime = parseDateTime(value.toString().trim());
+      if (dateTime == null) {
+        throw new SearchException("datetime search type must be search." + searchProperty
+            + "_op_datetime:'yyyy-MM-dd HH:mm:ss'");
+      }
+      return toDate(dateTime);
+    }
+  };
+
+  /**
+   * _epoch：毫秒时间戳.
+   */
+  static final SearchValueModifier EPOCH_MODIFIER = new SearchValueModifier() {
+
+    @Override
+    public Object apply(String searchProperty, SearchOperator operator, Object value) {
+      if (value instanceof Number) {
+        return new Date(((Number) value).longValue());
+      }
+      try {
+        return new Date(Long.parseLong(value.toString().trim()));
+      } catch (NumberFormatException exception) {
+        throw new SearchException(
+            "epoch search type must be search." + searchProperty + "_op_epoch:milliseconds");
+      }
+    }
+  };
+
+  /**
+   * Instantiates a new date value modifiers.
+   */
+  private DateValueModifiers() {
+  }
+
+  /**
+   * 解析日期，格式或日期不正确时返回null.
+   *
+   * @param text
+   *            the text
+   * @return the local date
+   */
+  private static LocalDate parseDate(String text) {
+    Matcher matcher = DATE.matcher(text);
+    if (!matcher.matches()) {
+      return null;
+    }
+    try {
+      return LocalDate.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)),
+          Integer.parseInt(matcher.group(3)));
+    } catch (DateTimeException exception) {
+      return null;
+    }
+  }
+
+  /**
+   * 解析日期时间，格式或日期不正确时返回null.
+   *
+   * @param text
+   *            the text
+   * @return the local date time
+   */
+  private static LocalDateTime parseDateTime(String text) {
+    Matcher matcher = DATE_TIME.matcher(text);
+    if (!matcher.matches()) {
+      return null;
+    }
+    try {
+      return LocalDateTime.of(Integer.parseInt(matcher.group(1)),
+          Integer.parseInt(matcher.group(2)), Integer.parseInt(matcher.group(3)),
+          Integer.parseInt(matcher.group(4)), Integer.parseInt(matcher.group(5)),
+          Integer.parseInt(matcher.group(6)));
+    } catch (DateTimeException exception) {
+      return null;
+    }
+  }
+
+  /**
+   * 按系统默认时区转换为Date.
+   *
+   * @param dateTime
+   *            the date time
+   * @return the date
+   */
+  private static Date toDate(LocalDateTime dateTime) {
+    Instant instant = dateTime.atZone(ZoneId.systemDefault()).toInstant();
+    return Date.from(instant);
+  }
+
+}
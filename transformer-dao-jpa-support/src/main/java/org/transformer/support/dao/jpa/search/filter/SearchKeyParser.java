@@ -0,0 +1,183 @@
+package org.transformer.support.dao.jpa.search.filter;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.util.Assert;
+import org.transformer.support.dao.jpa.search.SearchOperator;
+import org.transformer.support.dao.jpa.search.exception.InvlidSearchOperatorException;
+import org.transformer.support.dao.jpa.search.exception.SearchException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 查询参数key解析器，key格式为 property、property_op 或 property_op_modifier[_modifier...].
+ * 解析结果按key缓存，修饰符按名称在生成Condition时查找，可以随时注册新的修饰符.
+ * 内置修饰符：date、datetime、epoch.
+ *
+ */
+public final class SearchKeyParser {
+
+  /** 缓存的key数上限，key来自请求参数，需要限制. */
+  private static final int MAXIMUM_KEYS = 10000;
+
+  /** The Constant KEYS. */
+  private static final Cache<String, SearchKey> KEYS = CacheBuilder.newBuilder()
+      .maximumSize(MAXIMUM_KEYS).build();
+
+  /** 修饰符，名称小写. */
+  private static final ConcurrentMap<String, SearchValueModifier> MODIFIERS =
+      new ConcurrentHashMap<String, SearchValueModifier>();
+
+  static {
+    registerModifier("date", DateValueModifiers.DATE_MODIFIER);
+    registerModifier("datetime", DateValueModifiers.DATETIME_MODIFIER);
+    registerModifier("epoch", DateValueModifiers.EPOCH_MODIFIER);
+  }
+
+  /**
+   * Instantiates a new search key parser.
+   */
+  private SearchKeyParser() {
+  }
+
+  /**
+   * 注册修饰符，名称不区分大小写，同名的覆盖.
+   *
+   * @param name
+   *            修饰符名称，如 datetime
+   * @param modifier
+   *            the modifier
+   */
+  public static void registerModifier(String name, SearchValueModifier modifier) {
+    Assert.hasText(name, "modifier name must not be empty");
+    Assert.notNull(modifier, "modifier must not be null");
+    MODIFIERS.put(name.toLowerCase(Locale.ENGLISH), modifier);
+  }
+
+  /**
+   * 解析查询参数key.
+   *
+   * @param key
+   *            如 name_like
+   * @return the search key
+   * @throws SearchException
+   *             key格式或操作符不正确
+   */
+  static SearchKey parse(String key) throws SearchException {
+    SearchKey searchKey = KEYS.getIfPresent(key);
+    if (searchKey == null) {
+      searchKey = doParse(key);
+      KEYS.put(key, searchKey);
+    }
+    return searchKey;
+  }
+
+  /**
+   * Do parse.
+   *
+   * @param key
+   *            the key
+   * @return the search key
+   */
+  private static SearchKey doParse(String key) {
+    String[] searchs = StringUtils.split(key, Condition.separator);
+
+    if (searchs.length == 0) {
+      throw new SearchException("Condition key format must be : property or property_op");
+    }
+
+    String searchProperty = searchs[0];
+
+    SearchOperator operator = null;
+    if (searchs.length == 1) {
+      operator = SearchOperator.custom;
+    } else {
+      try {
+        operator = SearchOperator.valueOf(searchs[1]);
+      } catch (IllegalArgumentException exception) {
+        throw new InvlidSearchOperatorException(searchProperty, searchs[1]);
+      }
+    }
+
+    String[] modifiers = searchs.length > 2 ? Arrays.copyOfRange(searchs, 2, searchs.length)
+        : new String[0];
+    for (int i = 0; i < modifiers.length; i++) {
+      modifiers[i] = modifiers[i].toLowerCase(Locale.ENGLISH);
+    }
+    return new SearchKey(searchProperty, operator, Arrays.asList(modifiers));
+  }
+
+  /**
+   * 解析后的查询参数key.
+   */
+  static final class SearchKey {
+
+    /** The search property. */
+    private final String searchProperty;
+
+    /** The operator. */
+    private final SearchOperator operator;
+
+    /** 修饰符名称，小写. */
+    private final List<String> modifiers;
+
+    /**
+     * Instantiates a new search key.
+     *
+     * @param searchProperty
+     *            the search property
+     * @param operator
+     *            the operator
+     * @param modifiers
+     *            the modifiers
+     */
+    SearchKey(String searchProperty, SearchOperator operator, List<String> modifiers) {
+      this.searchProperty = searchProperty;
+      this.operator = operator;
+      this.modifiers = modifiers;
+    }
+
+    /**
+     * Gets the search property.
+     *
+     * @return the search property
+     */
+    String getSearchProperty() {
+      return searchProperty;
+    }
+
+    /**
+     * Gets the operator.
+     *
+     * @return the operator
+     */
+    SearchOperator getOperator() {
+      return operator;
+    }
+
+    /**
+     * 依次应用修饰符，未注册的修饰符忽略.
+     *
+     * @param value
+     *            非空的查询值
+     * @return the object
+     */
+    Object applyModifiers(Object value) {
+      Object result = value;
+      for (String name : modifiers) {
+        SearchValueModifier modifier = MODIFIERS.get(name);
+        if (modifier != null) {
+          result = modifier.apply(searchProperty, operator, result);
+        }
+      }
+      return result;
+    }
+  }
+
+}
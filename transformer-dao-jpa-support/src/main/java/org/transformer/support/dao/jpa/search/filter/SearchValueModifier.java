@@ -0,0 +1,29 @@
+package org.transformer.support.dao.jpa.search.filter;
+
+import org.transformer.support.dao.jpa.search.SearchOperator;
+import org.transformer.support.dao.jpa.search.exception.SearchException;
+
+/**
+ * 查询参数key的修饰符，如 createDate_gte_date 中的date，在生成Condition前转换查询值.
+ * 通过{@link SearchKeyParser#registerModifier(String, SearchValueModifier)}注册，实现必须是线程安全的.
+ *
+ */
+public interface SearchValueModifier {
+
+  /**
+   * 转换查询值，值不为空.
+   *
+   * @param searchProperty
+   *            查询属性
+   * @param operator
+   *            操作符
+   * @param value
+   *            查询值
+   * @return 转换后的值
+   * @throws SearchException
+   *             值的格式不正确
+   */
+  Object apply(String searchProperty, SearchOperator operator, Object value)
+      throws SearchException;
+
+}
@@ -0,0 +1,204 @@
+package org.transformer.support.dao.jpa.search.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.core.convert.ConversionException;
+import org.springframework.core.convert.Property;
+import org.springframework.core.convert.TypeDescriptor;
+import org.springframework.util.StringUtils;
+import org.transformer.support.dao.jpa.search.exception.InvalidSearchPropertyException;
+import org.transformer.support.dao.jpa.search.exception.InvalidSearchValueException;
+
+import java.beans.PropertyDescriptor;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 实体属性路径到目标类型的转换器，每个实体类一个，解析过的有效属性路径缓存在有上限的缓存中，
+ * 无效路径不缓存(路径来自请求参数，缓存无效路径会使内存随请求增长).
+ * 转换时直接使用conversionService，不创建BeanWrapper；集合值整体转换.
+ * 实体的直接属性在创建时解析，嵌套属性路径第一次使用时解析，
+ * 也可以通过{@link #register(Class, String...)}在启动时解析以尽早发现无效路径.
+ *
+ */
+public final class EntityPropertyConverters {
+
+  /** The Constant REGISTRY. */
+  private static final ConcurrentMap<Class<?>, EntityPropertyConverters> REGISTRY =
+      new ConcurrentHashMap<Class<?>, EntityPropertyConverters>();
+
+  /** The entity class. */
+  private final Class<?> entityClass;
+
+  /** 每个实体最多缓存的属性路径数. */
+  private static final long MAXIMUM_PATHS = 1000;
+
+  /** 有效属性路径对应的目标类型. */
+  private final Cache<String, TypeDescriptor> targetTypes = CacheBuilder.newBuilder()
+      .maximumSize(MAXIMUM_PATHS).build();
+
+  /**
+   * Instantiates a new entity property converters.
+   *
+   * @param entityClass
+   *            the entity class
+   */
+  private EntityPropertyConverters(Class<?> entityClass) {
+    this.entityClass = entityClass;
+    for (PropertyDescriptor descriptor : BeanUtils.getPropertyDescriptors(entityClass)) {
+      if (!"class".equals(descriptor.getName())) {
+        Object targetType = resolve(descriptor.getName());
+        if (targetType instanceof TypeDescriptor) {
+          targetTypes.put(descriptor.getName(), (TypeDescriptor) targetType);
+        }
+      }
+    }
+  }
+
+  /**
+   * 获取实体类的转换器.
+   *
+   * @param entityClass
+   *            the entity class
+   * @return the entity property converters
+   */
+  public static EntityPropertyConverters forEntity(Class<?> entityClass) {
+    EntityPropertyConverters converters = REGISTRY.get(entityClass);
+    if (converters == null) {
+      converters = new EntityPropertyConverters(entityClass);
+      EntityPropertyConverters existing = REGISTRY.putIfAbsent(entityClass, converters);
+      if (existing != null) {
+        converters = existing;
+      }
+    }
+    return converters;
+  }
+
+  /**
+   * 预先解析属性路径，路径无效时抛出异常.
+   *
+   * @param entityClass
+   *            the entity class
+   * @param paths
+   *            属性路径
+   * @return the entity property converters
+   * @throws InvalidSearchPropertyException
+   *             路径无效
+   */
+  public static EntityPropertyConverters register(Class<?> entityClass, String... paths) {
+    EntityPropertyConverters converters = forEntity(entityClass);
+    for (String path : paths) {
+      converters.getPropertyType(path, path);
+    }
+    return converters;
+  }
+
+  /**
+   * 属性路径的类型，集合属性为元素类型.
+   *
+   * @param path
+   *            属性路径
+   * @return the property type
+   * @throws InvalidSearchPropertyException
+   *             路径无效
+   */
+  public TypeDescriptor getPropertyType(String path) {
+    return getPropertyType(path, path);
+  }
+
+  /**
+   * 把查询值转换为实体属性的类型，集合和数组转换为元素类型的List.
+   *
+   * @param searchProperty
+   *            查询属性，用于异常信息
+   * @param path
+   *            实体属性路径
+   * @param value
+   *            the value
+   * @return the object
+   * @throws InvalidSearchPropertyException
+   *             路径无效
+   * @throws InvalidSearchValueException
+   *             值无法转换
+   */
+  public Object convert(String searchProperty, String path, Object value) {
+    TypeDescriptor targetType = getPropertyType(searchProperty, path);
+    if (value == null) {
+      return null;
+    }
+    try {
+      if (value instanceof Collection || value.getClass().isArray()) {
+        return SearchableConvertUtils.getConversionService().convert(value,
+            TypeDescriptor.forObject(value), TypeDescriptor.collection(List.class, targetType));
+      }
+      return SearchableConvertUtils.getConversionService().convert(value,
+          TypeDescriptor.forObject(value), targetType);
+    } catch (ConversionException exception) {
+      throw new InvalidSearchValueException(searchProperty, path, value, exception);
+    }
+  }
+
+  /**
+   * Gets the property type.
+   *
+   * @param searchProperty
+   *            the search property
+   * @param path
+   *            the path
+   * @return the property type
+   */
+  private TypeDescriptor getPropertyType(String searchProperty, String path) {
+    TypeDescriptor cached = targetTypes.getIfPresent(path);
+    if (cached != null) {
+      return cached;
+    }
+    Object targetType = resolve(path);
+    if (targetType instanceof RuntimeException) {
+      throw new InvalidSearchPropertyException(searchProperty, path,
+          (RuntimeException) targetType);
+    }
+    targetTypes.put(path, (TypeDescriptor) targetType);
+    return (TypeDescriptor) targetType;
+  }
+
+  /**
+   * 解析属性路径的类型，路径经过的集合属性按元素类型继续解析.
+   *
+   * @param path
+   *            the path
+   * @return 类型，无效时为异常
+   */
+  private Object resolve(String path) {
+    try {
+      Class<?> current = entityClass;
+      TypeDescriptor type = null;
+      for (String name : StringUtils.delimitedListToStringArray(path, ".")) {
+        PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(current, name);
+        if (descriptor == null) {
+          return new IllegalArgumentException(
+              "no property [" + name + "] in " + current.getName());
+        }
+        type = new TypeDescriptor(new Property(current, descriptor.getReadMethod(),
+            descriptor.getWriteMethod(), descriptor.getName()));
+        if (type.isCollection() || type.isArray()) {
+          type = type.getElementTypeDescriptor();
+          if (type == null) {
+            type = TypeDescriptor.valueOf(Object.class);
+          }
+        }
+        current = type.getType();
+      }
+      if (type == null) {
+        return new IllegalArgumentException("empty property path");
+      }
+      return type;
+    } catch (RuntimeException exception) {
+      return exception;
+    }
+  }
+
+}
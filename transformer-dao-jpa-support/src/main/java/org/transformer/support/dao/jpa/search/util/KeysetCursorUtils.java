@@ -0,0 +1,120 @@
+package org.transformer.support.dao.jpa.search.util;
+
+import org.apache.commons.codec.binary.Base64;
+import org.transformer.support.dao.jpa.search.exception.SearchException;
+import org.transformer.util.JsonMapper;
+
+import java.nio.charset.Charset;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 键集分页游标的编码和解码.
+ * 游标为排序值数组的json再做url安全的base64，对调用方不透明.
+ * 日期编码为毫秒数，Timestamp编码为"毫秒数.纳秒"，保留毫秒以下的精度，
+ * 否则同一毫秒内不同纳秒的记录在翻页时会被跳过或重复.
+ *
+ */
+public final class KeysetCursorUtils {
+
+  /** The Constant UTF8. */
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  /** The json mapper. */
+  private static JsonMapper jsonMapper = new JsonMapper();
+
+  /**
+   * Instantiates a new keyset cursor utils.
+   */
+  private KeysetCursorUtils() {
+  }
+
+  /**
+   * 编码排序值.
+   *
+   * @param values
+   *            排序值，与排序字段一一对应
+   * @return the string
+   */
+  public static String encode(List<Object> values) {
+    String[] texts = new String[values.size()];
+    for (int i = 0; i < texts.length; i++) {
+      Object value = values.get(i);
+      if (value == null) {
+        throw new SearchException("keyset sort value must not null, index : " + i);
+      }
+      if (value instanceof Timestamp) {
+        texts[i] = ((Timestamp) value).getTime() + "." + ((Timestamp) value).getNanos();
+      } else if (value instanceof Date) {
+        texts[i] = String.valueOf(((Date) value).getTime());
+      } else if (value instanceof Enum) {
+        texts[i] = ((Enum<?>) value).name();
+      } else {
+        texts[i] = value.toString();
+      }
+    }
+    return Base64.encodeBase64URLSafeString(jsonMapper.toJson(texts).getBytes(UTF8));
+  }
+
+  /**
+   * 解码游标并把值转换为排序字段的类型.
+   *
+   * @param cursor
+   *            the cursor
+   * @param types
+   *            排序字段类型
+   * @return the object[]
+   */
+  public static Object[] decode(String cursor, Class<?>[] types) {
+    String[] texts = null;
+    try {
+      texts = jsonMapper.fromJson(new String(Base64.decodeBase64(cursor), UTF8), String[].class);
+    } catch (RuntimeException exception) {
+      throw new SearchException("invalid keyset cursor : " + cursor, exception);
+    }
+    if (texts == null || texts.length != types.length) {
+      throw new SearchException("invalid keyset cursor : " + cursor);
+    }
+
+    Object[] values = new Object[texts.length];
+    for (int i = 0; i < texts.length; i++) {
+      values[i] = convert(texts[i], types[i]);
+    }
+    return values;
+  }
+
+  /**
+   * Convert.
+   *
+   * @param text
+   *            the text
+   * @param type
+   *            the type
+   * @return the object
+   */
+  private static Object convert(String text, Class<?> type) {
+    try {
+      if (Date.class.isAssignableFrom(type)) {
+        int dot = text.indexOf('.');
+        long time = Long.parseLong(dot < 0 ? text : text.substring(0, dot));
+        if (dot >= 0 && type.isAssignableFrom(Timestamp.class)) {
+          // hibernate加载的Date属性值为Timestamp，按Timestamp还原纳秒
+          Timestamp timestamp = new Timestamp(time);
+          timestamp.setNanos(Integer.parseInt(text.substring(dot + 1)));
+          return timestamp;
+        }
+        if (type == Date.class) {
+          return new Date(time);
+        }
+        return type.getConstructor(long.class).newInstance(time);
+      }
+      return SearchableConvertUtils.getConversionService().convert(text, type);
+    } catch (SearchException exception) {
+      throw exception;
+    } catch (Exception exception) {
+      throw new SearchException("invalid keyset cursor value : " + text, exception);
+    }
+  }
+
+}
@@ -1,17 +1,10 @@
 package org.transformer.support.dao.jpa.search.util;
 
-import com.google.common.collect.Lists;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.BeanWrapperImpl;
-import org.springframework.beans.InvalidPropertyException;
 import org.springframework.core.convert.ConversionService;
-import org.springframework.util.CollectionUtils;
 import org.transformer.support.dao.jpa.search.SearchOperator;
 import org.transformer.support.dao.jpa.search.Searchable;
-import org.transformer.support.dao.jpa.search.exception.InvalidSearchPropertyException;
-import org.transformer.support.dao.jpa.search.exception.InvalidSearchValueException;
 import org.transformer.support.dao.jpa.search.exception.SearchException;
 import org.transformer.support.dao.jpa.search.filter.AndCondition;
 import org.transformer.support.dao.jpa.search.filter.Condition;
@@ -20,7 +13,6 @@ import org.transformer.support.dao.jpa.search.filter.SearchFilter;
 import org.transformer.util.SpringUtils;
 
 import java.util.Collection;
-import java.util.List;
 
 /**
  * The Class SearchableConvertUtils.
@@ -90,12 +82,10 @@ public final class SearchableConvertUtils {
     }
 
     Collection<SearchFilter> searchFilters = search.getSearchFilters();
-    BeanWrapperImpl beanWrapper = new BeanWrapperImpl(entityClass);
-    beanWrapper.setAutoGrowNestedPaths(true);
-    beanWrapper.setConversionService(getConversionService());
+    EntityPropertyConverters converters = EntityPropertyConverters.forEntity(entityClass);
 
     for (SearchFilter searchFilter : searchFilters) {
-      convertSearchValueToEntityValue(beanWrapper, searchFilter);
+      convertSearchValueToEntityValue(converters, searchFilter);
 
     }
   }
@@ -103,29 +93,29 @@ public final class SearchableConvertUtils {
   /**
    * Convert search value to entity value.
    * 
-   * @param beanWrapper
-   *            the bean wrapper
+   * @param converters
+   *            实体属性转换器
    * @param searchFilter
    *            the search filter
    */
-  private static void convertSearchValueToEntityValue(BeanWrapperImpl beanWrapper,
+  private static void convertSearchValueToEntityValue(EntityPropertyConverters converters,
       SearchFilter searchFilter) {
     if (searchFilter instanceof Condition) {
       Condition condition = (Condition) searchFilter;
-      convert(beanWrapper, condition);
+      convert(converters, condition);
       return;
     }
 
     if (searchFilter instanceof OrCondition) {
       for (SearchFilter orFilter : ((OrCondition) searchFilter).getOrFilters()) {
-        convertSearchValueToEntityValue(beanWrapper, orFilter);
+        convertSearchValueToEntityValue(converters, orFilter);
       }
       return;
     }
 
     if (searchFilter instanceof AndCondition) {
       for (SearchFilter andFilter : ((AndCondition) searchFilter).getAndFilters()) {
-        convertSearchValueToEntityValue(beanWrapper, andFilter);
+        convertSearchValueToEntityValue(converters, andFilter);
       }
       return;
     }
@@ -135,15 +125,12 @@ public final class SearchableConvertUtils {
   /**
    * Convert.
    * 
-   * @param beanWrapper
-   *            the bean wrapper
+   * @param converters
+   *            实体属性转换器
    * @param condition
    *            the condition
    */
-  @SuppressWarnings({ "rawtypes", "unchecked" })
-  private static void convert(BeanWrapperImpl beanWrapper, Condition condition) {
-    String searchProperty = condition.getSearchProperty();
-
+  private static void convert(EntityPropertyConverters converters, Condition condition) {
     // 自定义的也不转换
     if (condition.getOperator() == SearchOperator.custom) {
       return;
@@ -159,59 +146,8 @@ public final class SearchableConvertUtils {
       return;
     }
 
-    String entityProperty = condition.getEntityProperty();
-
-    Object value = condition.getValue();
-
-    Object newValue = null;
-    boolean isCollection = value instanceof Collection;
-    boolean isArray = value != null && value.getClass().isArray();
-    if (isCollection || isArray) {
-      List<Object> list = Lists.newArrayList();
-      if (isCollection) {
-        list.addAll((Collection) value);
-      } else {
-        list = Lists.newArrayList(CollectionUtils.arrayToList(value));
-      }
-      int length = list.size();
-      for (int i = 0; i < length; i++) {
-        list.set(i, getConvertedValue(beanWrapper, searchProperty, entityProperty, list.get(i)));
-      }
-      newValue = list;
-    } else {
-      newValue = getConvertedValue(beanWrapper, searchProperty, entityProperty, value);
-    }
-    condition.setValue(newValue);
-  }
-
-  /**
-   * Gets the converted value.
-   * 
-   * @param beanWrapper
-   *            the bean wrapper
-   * @param searchProperty
-   *            the search property
-   * @param entityProperty
-   *            the entity property
-   * @param value
-   *            the value
-   * @return the converted value
-   */
-  private static Object getConvertedValue(final BeanWrapperImpl beanWrapper,
-      final String searchProperty, final String entityProperty, final Object value) {
-
-    Object newValue;
-    try {
-
-      beanWrapper.setPropertyValue(entityProperty, value);
-      newValue = beanWrapper.getPropertyValue(entityProperty);
-    } catch (InvalidPropertyException e) {
-      throw new InvalidSearchPropertyException(searchProperty, entityProperty, e);
-    } catch (Exception e) {
-      throw new InvalidSearchValueException(searchProperty, entityProperty, value, e);
-    }
-
-    return newValue;
+    condition.setValue(converters.convert(condition.getSearchProperty(),
+        condition.getEntityProperty(), condition.getValue()));
   }
 
 }
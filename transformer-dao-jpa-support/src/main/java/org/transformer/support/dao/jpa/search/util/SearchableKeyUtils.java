@@ -0,0 +1,214 @@
+package org.transformer.support.dao.jpa.search.util;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.transformer.support.dao.jpa.search.KeysetPageRequest;
+import org.transformer.support.dao.jpa.search.SearchOperator;
+import org.transformer.support.dao.jpa.search.Searchable;
+import org.transformer.support.dao.jpa.search.filter.AndCondition;
+import org.transformer.support.dao.jpa.search.filter.Condition;
+import org.transformer.support.dao.jpa.search.filter.OrCondition;
+import org.transformer.support.dao.jpa.search.filter.SearchFilter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 生成Searchable的规范化键.
+ * 形状(shape)只包含属性、操作符、and/or嵌套结构及排序，不包含查询值，
+ * 相同形状的查询拼出的ql完全相同.
+ * 键(key)还包含查询值和分页，且与条件的添加顺序无关，可以作为查询结果的缓存键.
+ *
+ */
+public final class SearchableKeyUtils {
+
+  /**
+   * Instantiates a new searchable key utils.
+   */
+  private SearchableKeyUtils() {
+  }
+
+  /**
+   * 获取查询条件的形状，不包含查询值.
+   *
+   * @param searchable
+   *            the searchable
+   * @param withSort
+   *            是否包含排序
+   * @return the string
+   */
+  public static String shapeOf(final Searchable searchable, final boolean withSort) {
+    StringBuilder shape = new StringBuilder();
+    if (searchable.hasSearchFilter()) {
+      for (SearchFilter searchFilter : searchable.getSearchFilters()) {
+        appendShape(shape, searchFilter);
+        shape.append(';');
+      }
+    }
+    if (withSort && searchable.hashSort()) {
+      shape.append("#order:");
+      for (Sort.Order order : searchable.getSort()) {
+        shape.append(order.getProperty()).append(' ').append(order.getDirection()).append(',');
+      }
+    }
+    return shape.toString();
+  }
+
+  /**
+   * Append shape.
+   *
+   * @param shape
+   *            the shape
+   * @param searchFilter
+   *            the search filter
+   */
+  private static void appendShape(StringBuilder shape, SearchFilter searchFilter) {
+    if (searchFilter instanceof Condition) {
+      Condition condition = (Condition) searchFilter;
+      shape.append(condition.getEntityProperty()).append(Condition.separator)
+          .append(condition.getOperator());
+      // 自定义ql的值是否为空会影响拼出的ql
+      if (condition.getOperator() == SearchOperator.customQl) {
+        shape.append(condition.getValue() == null ? "!" : "?");
+      }
+      return;
+    }
+
+    if (searchFilter instanceof OrCondition) {
+      shape.append("or(");
+      for (SearchFilter orFilter : ((OrCondition) searchFilter).getOrFilters()) {
+        appendShape(shape, orFilter);
+        shape.append(',');
+      }
+      shape.append(')');
+      return;
+    }
+
+    if (searchFilter instanceof AndCondition) {
+      shape.append("and(");
+      for (SearchFilter andFilter : ((AndCondition) searchFilter).getAndFilters()) {
+        appendShape(shape, andFilter);
+        shape.append(',');
+      }
+      shape.append(')');
+    }
+  }
+
+  /**
+   * 获取查询条件的规范化键：条件(含查询值)、排序及分页.
+   * 同一层的and/or条件按规范化后的文本排序，与添加顺序无关；排序字段的顺序保留.
+   *
+   * @param searchable
+   *            the searchable
+   * @return the string
+   */
+  public static String keyOf(final Searchable searchable) {
+    StringBuilder key = new StringBuilder(countKeyOf(searchable));
+    if (searchable.hashSort()) {
+      key.append("#order:");
+      for (Sort.Order order : searchable.getSort()) {
+        key.append(order.getProperty()).append(' ').append(order.getDirection()).append(',');
+      }
+    }
+    if (searchable.hasPageable()) {
+      Pageable page = searchable.getPage();
+      key.append("#page:").append(page.getOffset()).append(',').append(page.getPageSize());
+      if (page instanceof KeysetPageRequest) {
+        key.append(",cursor:").append(((KeysetPageRequest) page).getCursor());
+      }
+    }
+    return key.toString();
+  }
+
+  /**
+   * 获取count的规范化键，只包括条件(含查询值)，与排序及分页无关.
+   *
+   * @param searchable
+   *            the searchable
+   * @return the string
+   */
+  public static String countKeyOf(final Searchable searchable) {
+    if (!searchable.hasSearchFilter()) {
+      return "";
+    }
+    return joinSorted(searchable.getSearchFilters(), ";");
+  }
+
+  /**
+   * 参数值的键，日期精确到毫秒，数组与List相同.
+   * 其他值按"长度:文本"编码，值中的分隔符不会使不同的值(如["a,b"]与["a","b"])得到相同的键.
+   *
+   * @param value
+   *            the value
+   * @return the string
+   */
+  public static String valueKeyOf(Object value) {
+    if (value == null) {
+      return "null";
+    }
+    if (value instanceof Date) {
+      return "date:" + ((Date) value).getTime();
+    }
+    if (value instanceof Object[]) {
+      return valueKeyOf(Arrays.asList((Object[]) value));
+    }
+    if (value instanceof Collection) {
+      StringBuilder key = new StringBuilder("[");
+      for (Object element : (Collection<?>) value) {
+        key.append(valueKeyOf(element)).append(',');
+      }
+      return key.append(']').toString();
+    }
+    String text = String.valueOf(value);
+    return text.length() + ":" + text;
+  }
+
+  /**
+   * 条件的键按文本排序后连接.
+   *
+   * @param searchFilters
+   *            the search filters
+   * @param separator
+   *            the separator
+   * @return the string
+   */
+  private static String joinSorted(Collection<SearchFilter> searchFilters, String separator) {
+    List<String> keys = new ArrayList<String>(searchFilters.size());
+    for (SearchFilter searchFilter : searchFilters) {
+      keys.add(filterKeyOf(searchFilter));
+    }
+    Collections.sort(keys);
+    StringBuilder key = new StringBuilder();
+    for (String filterKey : keys) {
+      key.append(filterKey).append(separator);
+    }
+    return key.toString();
+  }
+
+  /**
+   * 单个条件的键.
+   *
+   * @param searchFilter
+   *            the search filter
+   * @return the string
+   */
+  private static String filterKeyOf(SearchFilter searchFilter) {
+    if (searchFilter instanceof Condition) {
+      Condition condition = (Condition) searchFilter;
+      return condition.getEntityProperty() + Condition.separator + condition.getOperator() + '='
+          + valueKeyOf(condition.getValue());
+    }
+    if (searchFilter instanceof OrCondition) {
+      return "or(" + joinSorted(((OrCondition) searchFilter).getOrFilters(), ",") + ')';
+    }
+    if (searchFilter instanceof AndCondition) {
+      return "and(" + joinSorted(((AndCondition) searchFilter).getAndFilters(), ",") + ')';
+    }
+    return String.valueOf(searchFilter);
+  }
+
+}
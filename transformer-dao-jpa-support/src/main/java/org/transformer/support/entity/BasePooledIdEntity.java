@@ -0,0 +1,46 @@
+package org.transformer.support.entity;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+import javax.persistence.Column;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.MappedSuperclass;
+
+/**
+ * 使用{@link PooledIdGenerator}生成主键的实体基类，persist时即分配主键，可以jdbc批量插入.
+ * 每个实体按表名在序列表id_sequence中有一个序列，每次领取100个主键；
+ * 需要其他参数时不继承本类，在实体的主键上自己声明@GenericGenerator.
+ *
+ */
+@MappedSuperclass
+public abstract class BasePooledIdEntity extends BaseEntity {
+
+  /**
+   * 序列号.
+   */
+  private static final long serialVersionUID = -3916024585738318246L;
+
+  /** 生成器名. */
+  public static final String GENERATOR = "pooledId";
+
+  /** The id. */
+  @Id
+  @GeneratedValue(generator = GENERATOR)
+  @GenericGenerator(name = GENERATOR, strategy = "org.transformer.support.entity.PooledIdGenerator",
+      parameters = { @Parameter(name = PooledIdGenerator.INCREMENT_PARAM, value = "100") })
+  @Column(name = "id")
+  private Long id;
+
+  @Override
+  public Long getId() {
+    return id;
+  }
+
+  @Override
+  public void setId(Long id) {
+    this.id = id;
+  }
+
+}
@@ -0,0 +1,288 @@
+package org.transformer.support.entity;
+
+import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.Configurable;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.PersistentIdentifierGenerator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.jdbc.AbstractReturningWork;
+import org.hibernate.type.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按块分配的Long主键生成器(pooled-lo)，用于替代IDENTITY.
+ * IDENTITY主键要在insert后才能得到，hibernate不能对这类实体使用jdbc批量插入，每条insert一次往返；
+ * 使用本生成器时persist即分配主键，配合hibernate.jdbc.batch_size、hibernate.order_inserts批量插入.
+ * 主键块从序列表(id_sequence)分配，每个实体(segment)一行，在独立的事务中select ... for update
+ * 锁住该行后更新领取(加锁读读到的是最新提交的值，不受REPEATABLE READ快照影响)，
+ * 支持mysql及h2，多个进程可以共用；块内用AtomicLong分配，不加锁，块用完时才同步领取下一块.
+ * 进程重启时未用完的块被丢弃，主键不连续.
+ * 使用方式见{@link BasePooledIdEntity}，参数：
+ * <ul>
+ * <li>table_name：序列表名，默认id_sequence</li>
+ * <li>segment_value：序列名，默认实体的表名</li>
+ * <li>increment_size：每块的主键数，默认100</li>
+ * <li>initial_value：第一个主键，默认1</li>
+ * </ul>
+ *
+ */
+public class PooledIdGenerator implements PersistentIdentifierGenerator, Configurable {
+
+  /** 日志. */
+  private static Logger logger = LoggerFactory.getLogger(PooledIdGenerator.class);
+
+  /** 序列表名参数. */
+  public static final String TABLE_PARAM = "table_name";
+
+  /** 序列名参数. */
+  public static final String SEGMENT_VALUE_PARAM = "segment_value";
+
+  /** 每块主键数参数. */
+  public static final String INCREMENT_PARAM = "increment_size";
+
+  /** 第一个主键参数. */
+  public static final String INITIAL_PARAM = "initial_value";
+
+  /** 默认序列表名. */
+  public static final String DEFAULT_TABLE = "id_sequence";
+
+  /** 默认每块主键数. */
+  public static final int DEFAULT_INCREMENT_SIZE = 100;
+
+  /** 领取块时的最大尝试次数，只有第一次插入序列记录冲突时才重试. */
+  private static final int MAX_ATTEMPTS = 3;
+
+  /** The table name. */
+  private String tableName;
+
+  /** The segment value. */
+  private String segmentValue;
+
+  /** The increment size. */
+  private int incrementSize;
+
+  /** The initial value. */
+  private long initialValue;
+
+  /** The select sql. */
+  private String selectSql;
+
+  /** The insert sql. */
+  private String insertSql;
+
+  /** The update sql. */
+  private String updateSql;
+
+  /** 当前的块. */
+  private volatile Block block = new Block(0, 0);
+
+  @Override
+  public void configure(Type type, Properties params, Dialect dialect) throws MappingException {
+    Class<?> returnedClass = type.getReturnedClass();
+    if (returnedClass != Long.class && returnedClass != long.class) {
+      throw new MappingException("PooledIdGenerator only supports Long id, but got " + type);
+    }
+    tableName = ConfigurationHelper.getString(TABLE_PARAM, params, DEFAULT_TABLE);
+    segmentValue = ConfigurationHelper.getString(SEGMENT_VALUE_PARAM, params,
+        params.getProperty(PersistentIdentifierGenerator.TABLE));
+    if (segmentValue == null) {
+      segmentValue = params.getProperty(IdentifierGenerator.ENTITY_NAME);
+    }
+    incrementSize = ConfigurationHelper.getInt(INCREMENT_PARAM, params, DEFAULT_INCREMENT_SIZE);
+    initialValue = ConfigurationHelper.getInt(INITIAL_PARAM, params, 1);
+    if (incrementSize <= 0) {
+      throw new MappingException("increment_size must be positive : " + incrementSize);
+    }
+
+    selectSql = "select next_val from " + tableName + " where segment_name = ?"
+        + dialect.getForUpdateString();
+    insertSql = "insert into " + tableName + " (segment_name, next_val) values (?, ?)";
+    updateSql = "update " + tableName + " set next_val = ? where segment_name = ?";
+  }
+
+  @Override
+  public Serializable generate(SessionImplementor session, Object object)
+      throws HibernateException {
+    while (true) {
+      Block current = block;
+      long value = current.next.getAndIncrement();
+      if (value < current.limit) {
+        return value;
+      }
+      synchronized (this) {
+        // 其他线程已经领取了新块时直接重试
+        if (block == current) {
+          block = allocate(session);
+        }
+      }
+    }
+  }
+
+  /**
+   * 在独立的事务中领取一块主键.
+   *
+   * @param session
+   *            the session
+   * @return the block
+   */
+  private Block allocate(SessionImplementor session) {
+    long start = session.getTransactionCoordinator().getTransaction().createIsolationDelegate()
+        .delegateWork(new AbstractReturningWork<Long>() {
+          @SuppressWarnings("synthetic-access")
+          @Override
+          public Long execute(Connection connection) throws SQLException {
+            return nextBlockStart(connection);
+          }
+        }, true);
+    logger.debug("allocated ids [{}, {}) of {}", start, start + incrementSize, segmentValue);
+    return new Block(start, start + incrementSize);
+  }
+
+  /**
+   * 加锁读取序列表当前值并更新为下一块的起始值，没有记录时插入.
+   * 并发插入冲突时，冲突的插入会等待对方提交，之后的加锁读能读到对方插入的记录.
+   *
+   * @param connection
+   *            the connection
+   * @return 领取的块的起始值
+   * @throws SQLException
+   *             the SQL exception
+   */
+  private long nextBlockStart(Connection connection) throws SQLException {
+    for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+      Long current = selectNextValue(connection);
+      if (current == null) {
+        if (insertNextValue(connection)) {
+          return initialValue;
+        }
+        // 其他进程同时插入了记录，重新读取
+        continue;
+      }
+      PreparedStatement update = connection.prepareStatement(updateSql);
+      try {
+        update.setLong(1, current + incrementSize);
+        update.setString(2, segmentValue);
+        update.executeUpdate();
+        return current;
+      } finally {
+        update.close();
+      }
+    }
+    throw new HibernateException("could not allocate ids of " + segmentValue + " after "
+        + MAX_ATTEMPTS + " attempts");
+  }
+
+  /**
+   * 加锁读取序列的下一块起始值，锁到领取的事务结束.
+   *
+   * @param connection
+   *            the connection
+   * @return 没有记录返回null
+   * @throws SQLException
+   *             the SQL exception
+   */
+  private Long selectNextValue(Connection connection) throws SQLException {
+    PreparedStatement select = connection.prepareStatement(selectSql);
+    try {
+      select.setString(1, segmentValue);
+      ResultSet resultSet = select.executeQuery();
+      try {
+        return resultSet.next() ? resultSet.getLong(1) : null;
+      } finally {
+        resultSet.close();
+      }
+    } finally {
+      select.close();
+    }
+  }
+
+  /**
+   * 插入序列记录，领取第一块.
+   *
+   * @param connection
+   *            the connection
+   * @return 主键冲突(其他进程已插入)返回false
+   * @throws SQLException
+   *             the SQL exception
+   */
+  private boolean insertNextValue(Connection connection) throws SQLException {
+    PreparedStatement insert = connection.prepareStatement(insertSql);
+    try {
+      insert.setString(1, segmentValue);
+      insert.setLong(2, initialValue + incrementSize);
+      insert.executeUpdate();
+      return true;
+    } catch (SQLException exception) {
+      if (selectNextValue(connection) == null) {
+        throw exception;
+      }
+      return false;
+    } finally {
+      insert.close();
+    }
+  }
+
+  @Override
+  public String[] sqlCreateStrings(Dialect dialect) throws HibernateException {
+    return new String[] {dialect.getCreateTableString() + ' ' + tableName + " (segment_name "
+        + dialect.getTypeName(Types.VARCHAR, 255, 0, 0) + " not null, next_val "
+        + dialect.getTypeName(Types.BIGINT) + " not null, primary key (segment_name))"};
+  }
+
+  @Override
+  public String[] sqlDropStrings(Dialect dialect) throws HibernateException {
+    StringBuilder dropString = new StringBuilder("drop table ");
+    if (dialect.supportsIfExistsBeforeTableName()) {
+      dropString.append("if exists ");
+    }
+    dropString.append(tableName).append(dialect.getCascadeConstraintsString());
+    if (dialect.supportsIfExistsAfterTableName()) {
+      dropString.append(" if exists");
+    }
+    return new String[] {dropString.toString()};
+  }
+
+  @Override
+  public Object generatorKey() {
+    return tableName;
+  }
+
+  /**
+   * 一块主键[next, limit).
+   */
+  private static final class Block {
+
+    /** 下一个主键. */
+    private final AtomicLong next;
+
+    /** 块的上界(不包含). */
+    private final long limit;
+
+    /**
+     * Instantiates a new block.
+     *
+     * @param start
+     *            the start
+     * @param limit
+     *            the limit
+     */
+    private Block(long start, long limit) {
+      this.next = new AtomicLong(start);
+      this.limit = limit;
+    }
+  }
+
+}
@@ -0,0 +1,166 @@
+package org.transformer.support.dao.jpa.datasource;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.transformer.support.dao.jpa.datasource.annotation.ReadOnly;
+
+import java.util.Collections;
+
+import javax.sql.DataSource;
+
+/**
+ * ReadWriteRoutingDataSource及ReadOnlyRoutingAdvisor的路由(两个h2内存库分别作为主库和从库).
+ * 每个库的db_name表中记录了库名，查询结果即为实际使用的库.
+ *
+ */
+public class ReadWriteRoutingDataSourceTest {
+
+  private ReadWriteRoutingDataSource routingDataSource;
+
+  private DataSourceTransactionManager transactionManager;
+
+  private NameService nameService;
+
+  @Before
+  public void setUp() {
+    routingDataSource = new ReadWriteRoutingDataSource();
+    routingDataSource.setPrimary(createDataSource("primary"));
+    routingDataSource.setReplicas(Collections.singletonList(createDataSource("replica")));
+    routingDataSource.setStickyWindow(0);
+    routingDataSource.afterPropertiesSet();
+
+    // 事务开始时还未设置只读标记，需要延迟获取连接
+    DataSource dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+    transactionManager = new DataSourceTransactionManager(dataSource);
+
+    ProxyFactory proxyFactory = new ProxyFactory(
+        new DefaultNameService(new JdbcTemplate(dataSource), transactionManager));
+    proxyFactory.addAdvisor(new ReadOnlyRoutingAdvisor());
+    nameService = (NameService) proxyFactory.getProxy();
+  }
+
+  @After
+  public void tearDown() {
+    DataSourceRoutingContext.clear();
+  }
+
+  @Test
+  public void readOnlyCallUsesReplica() {
+    assertEquals("replica", nameService.readOnlyName());
+  }
+
+  @Test
+  public void readWriteTransactionUsesPrimary() {
+    assertEquals("primary", nameService.readWriteName());
+  }
+
+  @Test
+  public void readWriteTransactionInsideReadOnlyCallUsesPrimary() {
+    assertEquals("primary", nameService.readOnlyThenReadWriteName());
+  }
+
+  @Test
+  public void readOnlyCallAfterWriteSticksToPrimary() {
+    routingDataSource.setStickyWindow(-1);
+    assertEquals("primary", nameService.readWriteName());
+    assertEquals("primary", nameService.readOnlyName());
+
+    DataSourceRoutingContext.clear();
+    assertEquals("replica", nameService.readOnlyName());
+  }
+
+  @Test
+  public void readOnlyTransactionUsesReplicaWhenEnabled() {
+    assertEquals("primary", nameService.readOnlyTransactionName());
+
+    routingDataSource.setRouteReadOnlyTransactions(true);
+    assertEquals("replica", nameService.readOnlyTransactionName());
+  }
+
+  /**
+   * 创建h2内存库，db_name表中记录库名.
+   */
+  private static DataSource createDataSource(String name) {
+    DriverManagerDataSource dataSource = new DriverManagerDataSource(
+        "jdbc:h2:mem:routing_" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+    dataSource.setDriverClassName("org.h2.Driver");
+    JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+    jdbcTemplate.execute("drop table if exists db_name");
+    jdbcTemplate.execute("create table db_name (name varchar(32))");
+    jdbcTemplate.update("insert into db_name (name) values (?)", name);
+    return dataSource;
+  }
+
+  public interface NameService {
+
+    String readOnlyName();
+
+    String readWriteName();
+
+    String readOnlyThenReadWriteName();
+
+    String readOnlyTransactionName();
+  }
+
+  public static class DefaultNameService implements NameService {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final DataSourceTransactionManager transactionManager;
+
+    public DefaultNameService(JdbcTemplate jdbcTemplate,
+        DataSourceTransactionManager transactionManager) {
+      this.jdbcTemplate = jdbcTemplate;
+      this.transactionManager = transactionManager;
+    }
+
+    @ReadOnly
+    @Override
+    public String readOnlyName() {
+      return currentName();
+    }
+
+    @Override
+    public String readWriteName() {
+      return inTransaction(false);
+    }
+
+    @ReadOnly
+    @Override
+    public String readOnlyThenReadWriteName() {
+      return inTransaction(false);
+    }
+
+    @Override
+    public String readOnlyTransactionName() {
+      return inTransaction(true);
+    }
+
+    private String inTransaction(boolean readOnly) {
+      TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+      transactionTemplate.setReadOnly(readOnly);
+      return transactionTemplate.execute(new TransactionCallback<String>() {
+        @Override
+        public String doInTransaction(TransactionStatus status) {
+          return currentName();
+        }
+      });
+    }
+
+    private String currentName() {
+      return jdbcTemplate.queryForObject("select name from db_name", String.class);
+    }
+  }
+
+}
@@ -0,0 +1,116 @@
+package org.transformer.support.dao.jpa.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.transformer.support.dao.jpa.repository.support.RepositoryTestConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * RepositoryHelper.batchUpdate按批jdbc批处理执行，返回每批及总的影响记录数.
+ *
+ */
+public class BatchUpdateTest {
+
+  private static final String UPDATE_QL = "update BatchItem x set x.name = ?1 where x.id = ?2";
+
+  private BatchItemDao dao;
+
+  private RepositoryHelper repositoryHelper;
+
+  @Before
+  public void setUp() {
+    dao = RepositoryTestConfig.context().getBean(BatchItemDao.class);
+    repositoryHelper = new RepositoryHelper(BatchItem.class);
+    repositoryHelper.setEntityManager(dao.getEntityManager());
+  }
+
+  @Test
+  public void chunkedBatchUpdateReportsAffectedRows() {
+    final List<Object[]> paramSets = paramSets("updated");
+
+    BatchUpdateResult result = RepositoryTestConfig.transactionTemplate().execute(
+        new TransactionCallback<BatchUpdateResult>() {
+          @Override
+          public BatchUpdateResult doInTransaction(TransactionStatus status) {
+            return repositoryHelper.batchUpdate(UPDATE_QL, paramSets, 4, false);
+          }
+        });
+
+    assertAffected(result);
+    assertEquals("updated", dao.findOne((Long) paramSets.get(0)[1]).getName());
+  }
+
+  @Test
+  public void commitPerChunkReportsAffectedRows() {
+    List<Object[]> paramSets = paramSets("committed");
+
+    BatchUpdateResult result = repositoryHelper.batchUpdate(UPDATE_QL, paramSets, 4, true);
+
+    assertAffected(result);
+    assertEquals("committed", dao.findOne((Long) paramSets.get(4)[1]).getName());
+  }
+
+  /**
+   * 5个存在的主键加1个不存在的主键，每批4组时为4 + 1条.
+   */
+  private List<Object[]> paramSets(String name) {
+    List<Object[]> paramSets = new ArrayList<Object[]>();
+    for (int i = 0; i < 5; i++) {
+      paramSets.add(new Object[] { name, dao.save(new BatchItem()).getId() });
+    }
+    paramSets.add(new Object[] { name, Long.MAX_VALUE });
+    return paramSets;
+  }
+
+  private static void assertAffected(BatchUpdateResult result) {
+    assertFalse(result.isAffectedUnknown());
+    assertEquals(2, result.getChunkCount());
+    assertEquals(4, result.getChunkAffected(0));
+    assertEquals(1, result.getChunkAffected(1));
+    assertEquals(5, result.getTotalAffected());
+  }
+
+  public interface BatchItemDao extends BaseDao<BatchItem, Long> {
+  }
+
+  @Entity(name = "BatchItem")
+  @Table(name = "batch_item")
+  public static class BatchItem {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String name;
+
+    public Long getId() {
+      return id;
+    }
+
+    public void setId(Long id) {
+      this.id = id;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+  }
+
+}
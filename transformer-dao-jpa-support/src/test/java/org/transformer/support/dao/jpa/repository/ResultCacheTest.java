@@ -0,0 +1,86 @@
+package org.transformer.support.dao.jpa.repository;
+
+import static org.junit.Assert.assertEquals;
+
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.transformer.support.dao.jpa.repository.support.RepositoryTestConfig;
+import org.transformer.support.dao.jpa.repository.support.annotation.EnableQueryCache;
+import org.transformer.support.dao.jpa.search.Searchable;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * 统计结果缓存区域：不在读写事务中时命中缓存，读写事务中绕过缓存以看到未提交的修改.
+ *
+ */
+public class ResultCacheTest {
+
+  private ResultCachedItemDao dao;
+
+  private Statistics statistics;
+
+  @Before
+  public void setUp() {
+    dao = RepositoryTestConfig.context().getBean(ResultCachedItemDao.class);
+    statistics = RepositoryTestConfig.statistics();
+  }
+
+  @Test
+  public void countIsCachedOutsideReadWriteTransaction() {
+    dao.save(new ResultCachedItem());
+    long count = dao.count(Searchable.newSearchable());
+
+    statistics.clear();
+    assertEquals(count, dao.count(Searchable.newSearchable()));
+    assertEquals(0, statistics.getPrepareStatementCount());
+  }
+
+  @Test
+  public void readWriteTransactionBypassesResultCache() {
+    dao.save(new ResultCachedItem());
+    final long count = dao.count(Searchable.newSearchable());
+
+    long countInTransaction = RepositoryTestConfig.transactionTemplate().execute(
+        new TransactionCallback<Long>() {
+          @Override
+          public Long doInTransaction(TransactionStatus status) {
+            dao.save(new ResultCachedItem());
+            return dao.count(Searchable.newSearchable());
+          }
+        });
+
+    assertEquals(count + 1, countInTransaction);
+    // 提交后失效
+    assertEquals(count + 1, dao.count(Searchable.newSearchable()));
+  }
+
+  public interface ResultCachedItemDao extends BaseDao<ResultCachedItem, Long> {
+  }
+
+  @Entity(name = "ResultCachedItem")
+  @Table(name = "result_cached_item")
+  @EnableQueryCache(ttl = 60)
+  public static class ResultCachedItem {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    public Long getId() {
+      return id;
+    }
+
+    public void setId(Long id) {
+      this.id = id;
+    }
+  }
+
+}
@@ -0,0 +1,72 @@
+package org.transformer.support.dao.jpa.repository.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.transformer.support.dao.jpa.repository.BaseDao;
+import org.transformer.support.dao.jpa.repository.support.annotation.SearchableQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * delete(ID[])按deleteChunkSize分批执行delete语句，返回实际删除的记录数.
+ *
+ */
+public class DeleteByIdsTest {
+
+  private DeletableItemDao dao;
+
+  @Before
+  public void setUp() {
+    dao = RepositoryTestConfig.context().getBean(DeletableItemDao.class);
+  }
+
+  @Test
+  public void deleteReturnsAffectedRows() {
+    List<Long> ids = new ArrayList<Long>();
+    for (int i = 0; i < 5; i++) {
+      ids.add(dao.save(new DeletableItem()).getId());
+    }
+
+    // 每批2个主键，共3批，最后一批的主键不存在
+    int affected = dao.delete(new Long[] { ids.get(0), ids.get(1), ids.get(2), ids.get(3),
+        Long.MAX_VALUE });
+
+    assertEquals(4, affected);
+    assertFalse(dao.exists(ids.get(0)));
+    assertFalse(dao.exists(ids.get(3)));
+    assertTrue(dao.exists(ids.get(4)));
+  }
+
+  @SearchableQuery(deleteChunkSize = 2)
+  public interface DeletableItemDao extends BaseDao<DeletableItem, Long> {
+  }
+
+  @Entity(name = "DeletableItem")
+  @Table(name = "deletable_item")
+  public static class DeletableItem {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    public Long getId() {
+      return id;
+    }
+
+    public void setId(Long id) {
+      this.id = id;
+    }
+  }
+
+}
@@ -0,0 +1,82 @@
+package org.transformer.support.dao.jpa.repository.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.transformer.support.dao.jpa.repository.BaseDao;
+import org.transformer.support.dao.jpa.repository.support.annotation.EnableIdBloomFilter;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * 主键布隆过滤器：一定不存在的主键由findOne/exists直接返回，不查询数据库.
+ *
+ */
+public class IdBloomFilterTest {
+
+  private BloomItemDao dao;
+
+  private Statistics statistics;
+
+  private IdBloomFilter idBloomFilter;
+
+  @Before
+  public void setUp() throws InterruptedException {
+    dao = RepositoryTestConfig.context().getBean(BloomItemDao.class);
+    statistics = RepositoryTestConfig.statistics();
+    idBloomFilter = IdBloomFilter.all().get("BloomItem");
+    // 过滤器在后台线程扫描主键建立
+    for (int i = 0; i < 100 && !idBloomFilter.isReady(); i++) {
+      Thread.sleep(50);
+    }
+    assertTrue(idBloomFilter.isReady());
+  }
+
+  @Test
+  public void missIsAnsweredWithoutQuery() {
+    Long id = dao.save(new BloomItem()).getId();
+    long filtered = idBloomFilter.getFiltered();
+
+    statistics.clear();
+    assertNull(dao.findOne(Long.MAX_VALUE));
+    assertFalse(dao.exists(Long.MAX_VALUE));
+    assertEquals(0, statistics.getPrepareStatementCount());
+    assertEquals(filtered + 2, idBloomFilter.getFiltered());
+
+    // 保存时加入过滤器的主键仍然查询数据库
+    assertNotNull(dao.findOne(id));
+    assertEquals(1, statistics.getPrepareStatementCount());
+  }
+
+  public interface BloomItemDao extends BaseDao<BloomItem, Long> {
+  }
+
+  @Entity(name = "BloomItem")
+  @Table(name = "bloom_item")
+  @EnableIdBloomFilter(expectedInsertions = 1000, fpp = 0.0001, fetchSize = 100)
+  public static class BloomItem {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    public Long getId() {
+      return id;
+    }
+
+    public void setId(Long id) {
+      this.id = id;
+    }
+  }
+
+}
@@ -0,0 +1,107 @@
+package org.transformer.support.dao.jpa.repository.support;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.domain.Sort;
+import org.transformer.support.dao.jpa.repository.BaseDao;
+import org.transformer.support.dao.jpa.search.KeysetPageRequest;
+import org.transformer.support.dao.jpa.search.KeysetSlice;
+import org.transformer.support.dao.jpa.search.Searchable;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+/**
+ * 键集分页按游标逐页读取，同一毫秒内的记录按游标中的纳秒翻页，不跳过不重复.
+ *
+ */
+public class KeysetSliceTest {
+
+  private KeysetEventDao dao;
+
+  @Before
+  public void setUp() {
+    dao = RepositoryTestConfig.context().getBean(KeysetEventDao.class);
+  }
+
+  @Test
+  public void roundTripKeepsTimestampNanos() {
+    // 同一毫秒内，时间与主键顺序相反，游标丢失毫秒以下的精度时会重复读取
+    List<Long> expected = new ArrayList<Long>();
+    for (int i = 0; i < 5; i++) {
+      Timestamp occurredAt = Timestamp.valueOf("2026-01-01 00:00:00.123");
+      occurredAt.setNanos(123000000 + (5 - i) * 1000);
+      expected.add(dao.save(new KeysetEvent(occurredAt)).getId());
+    }
+    Collections.reverse(expected);
+
+    Sort sort = new Sort(Sort.Direction.ASC, "occurredAt");
+    List<Long> ids = new ArrayList<Long>();
+    String cursor = null;
+    KeysetSlice<KeysetEvent> slice;
+    do {
+      slice = dao.findSlice(Searchable.newSearchable()
+          .setPage(new KeysetPageRequest(2, sort, cursor)));
+      for (KeysetEvent event : slice.getContent()) {
+        ids.add(event.getId());
+      }
+      cursor = slice.getNextCursor();
+    } while (slice.hasNext());
+
+    assertEquals(expected, ids);
+  }
+
+  public interface KeysetEventDao extends BaseDao<KeysetEvent, Long> {
+  }
+
+  @Entity(name = "KeysetEvent")
+  @Table(name = "keyset_event")
+  public static class KeysetEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(nullable = false)
+    private Date occurredAt;
+
+    public KeysetEvent() {
+    }
+
+    public KeysetEvent(Date occurredAt) {
+      this.occurredAt = occurredAt;
+    }
+
+    public Long getId() {
+      return id;
+    }
+
+    public void setId(Long id) {
+      this.id = id;
+    }
+
+    public Date getOccurredAt() {
+      return occurredAt;
+    }
+
+    public void setOccurredAt(Date occurredAt) {
+      this.occurredAt = occurredAt;
+    }
+  }
+
+}
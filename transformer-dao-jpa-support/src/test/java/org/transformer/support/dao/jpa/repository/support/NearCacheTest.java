@@ -0,0 +1,114 @@
+package org.transformer.support.dao.jpa.repository.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.transformer.support.dao.jpa.repository.BaseDao;
+import org.transformer.support.dao.jpa.repository.support.annotation.EnableNearCache;
+
+import java.io.Serializable;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * 近端缓存：通过repository代理(默认的只读事务)的findOne命中缓存，保存后在事务提交后失效.
+ *
+ */
+public class NearCacheTest {
+
+  private NearCachedItemDao dao;
+
+  private Statistics statistics;
+
+  @Before
+  public void setUp() {
+    dao = RepositoryTestConfig.context().getBean(NearCachedItemDao.class);
+    statistics = RepositoryTestConfig.statistics();
+  }
+
+  @Test
+  public void secondFindOneIsCacheHit() {
+    Long id = dao.save(new NearCachedItem("first")).getId();
+    long hits = NearCache.allStats().get("NearCachedItem").hitCount();
+
+    statistics.clear();
+    NearCachedItem loaded = dao.findOne(id);
+    NearCachedItem cached = dao.findOne(id);
+
+    assertEquals(1, statistics.getPrepareStatementCount());
+    assertEquals(hits + 1, NearCache.allStats().get("NearCachedItem").hitCount());
+    assertEquals("first", cached.getName());
+    // 返回的是游离态的副本
+    assertNotSame(loaded, cached);
+  }
+
+  @Test
+  public void saveEvictsAfterCommit() {
+    final Long id = dao.save(new NearCachedItem("before")).getId();
+    assertEquals("before", dao.findOne(id).getName());
+
+    RepositoryTestConfig.transactionTemplate().execute(new TransactionCallback<Object>() {
+      @Override
+      public Object doInTransaction(TransactionStatus status) {
+        NearCachedItem item = dao.findOne(id);
+        item.setName("after");
+        dao.save(item);
+        return null;
+      }
+    });
+
+    statistics.clear();
+    assertEquals("after", dao.findOne(id).getName());
+    assertEquals(1, statistics.getPrepareStatementCount());
+  }
+
+  public interface NearCachedItemDao extends BaseDao<NearCachedItem, Long> {
+  }
+
+  @Entity(name = "NearCachedItem")
+  @Table(name = "near_cached_item")
+  @EnableNearCache
+  public static class NearCachedItem implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String name;
+
+    public NearCachedItem() {
+    }
+
+    public NearCachedItem(String name) {
+      this.name = name;
+    }
+
+    public Long getId() {
+      return id;
+    }
+
+    public void setId(Long id) {
+      this.id = id;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+  }
+
+}
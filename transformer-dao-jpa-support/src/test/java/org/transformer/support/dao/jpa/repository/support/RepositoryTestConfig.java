@@ -0,0 +1,104 @@
+package org.transformer.support.dao.jpa.repository.support;
+
+import org.hibernate.stat.Statistics;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.transformer.support.util.HibernateUtils;
+import org.transformer.util.SpringUtils;
+
+import java.util.Properties;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+/**
+ * repository测试的容器配置(h2内存库)，实体及dao为各测试类的嵌套类.
+ * 近端缓存、布隆过滤器等按实体名注册在静态变量中，不能随容器重建，所有测试共用一个容器.
+ *
+ */
+@Configuration
+@EnableTransactionManagement
+@EnableJpaRepositories(basePackages = "org.transformer.support.dao.jpa.repository",
+    repositoryFactoryBeanClass = BaseRepositoryFactoryBean.class,
+    considerNestedRepositories = true)
+public class RepositoryTestConfig {
+
+  private static ApplicationContext context;
+
+  /**
+   * 共用的容器，第一次调用时创建.
+   */
+  public static synchronized ApplicationContext context() {
+    if (context == null) {
+      context = new AnnotationConfigApplicationContext(RepositoryTestConfig.class);
+    }
+    return context;
+  }
+
+  /**
+   * hibernate统计，getPrepareStatementCount为执行的sql语句数.
+   */
+  public static Statistics statistics() {
+    return HibernateUtils.getSessionFactory(context().getBean(EntityManagerFactory.class))
+        .getStatistics();
+  }
+
+  /**
+   * 读写事务模板.
+   */
+  public static TransactionTemplate transactionTemplate() {
+    return new TransactionTemplate(context().getBean(PlatformTransactionManager.class));
+  }
+
+  @Bean
+  public static SpringUtils springUtils() {
+    return new SpringUtils();
+  }
+
+  @Bean
+  public ConversionService conversionService() {
+    return new DefaultConversionService();
+  }
+
+  @Bean
+  public DataSource dataSource() {
+    DriverManagerDataSource dataSource = new DriverManagerDataSource(
+        "jdbc:h2:mem:repository;DB_CLOSE_DELAY=-1", "sa", "");
+    dataSource.setDriverClassName("org.h2.Driver");
+    return dataSource;
+  }
+
+  @Bean
+  public LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource) {
+    LocalContainerEntityManagerFactoryBean factoryBean =
+        new LocalContainerEntityManagerFactoryBean();
+    factoryBean.setDataSource(dataSource);
+    factoryBean.setPackagesToScan("org.transformer.support.dao.jpa.repository");
+    factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+    Properties properties = new Properties();
+    properties.setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+    properties.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+    properties.setProperty("hibernate.generate_statistics", "true");
+    factoryBean.setJpaProperties(properties);
+    return factoryBean;
+  }
+
+  @Bean
+  public PlatformTransactionManager transactionManager(
+      EntityManagerFactory entityManagerFactory) {
+    return new JpaTransactionManager(entityManagerFactory);
+  }
+
+}
@@ -0,0 +1,57 @@
+package org.transformer.support.entity;
+
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.transformer.support.entity.PooledIdGeneratorTest.IdentityRow;
+import org.transformer.support.entity.PooledIdGeneratorTest.PooledRow;
+
+/**
+ * PooledIdGenerator与IDENTITY的插入吞吐量对比(h2内存库)，只输出结果不做断言.
+ * 不在默认的测试中运行(surefire排除*Benchmark)，
+ * 使用mvn test -Dtest=PooledIdGeneratorBenchmark单独运行.
+ *
+ */
+public class PooledIdGeneratorBenchmark {
+
+  private static final Logger logger = LoggerFactory.getLogger(PooledIdGeneratorBenchmark.class);
+
+  /** 每轮插入的行数. */
+  private static final int ROWS = 20000;
+
+  private SessionFactory sessionFactory;
+
+  @Before
+  public void setUp() {
+    sessionFactory = PooledIdGeneratorTest.buildSessionFactory("pooled_id_benchmark");
+  }
+
+  @After
+  public void tearDown() {
+    sessionFactory.close();
+  }
+
+  @Test
+  public void identityVersusPooled() {
+    // 预热
+    PooledIdGeneratorTest.insert(sessionFactory, IdentityRow.class, ROWS / 10);
+    PooledIdGeneratorTest.insert(sessionFactory, PooledRow.class, ROWS / 10);
+
+    sessionFactory.getStatistics().clear();
+    long identityNanos = PooledIdGeneratorTest.insert(sessionFactory, IdentityRow.class, ROWS);
+    long identityStatements = sessionFactory.getStatistics().getPrepareStatementCount();
+
+    sessionFactory.getStatistics().clear();
+    long pooledNanos = PooledIdGeneratorTest.insert(sessionFactory, PooledRow.class, ROWS);
+    long pooledStatements = sessionFactory.getStatistics().getPrepareStatementCount();
+
+    logger.info("IDENTITY: {} rows in {}ms, {} rows/s, {} statements", ROWS,
+        identityNanos / 1000000, ROWS * 1000000000L / identityNanos, identityStatements);
+    logger.info("pooled  : {} rows in {}ms, {} rows/s, {} statements", ROWS,
+        pooledNanos / 1000000, ROWS * 1000000000L / pooledNanos, pooledStatements);
+  }
+
+}
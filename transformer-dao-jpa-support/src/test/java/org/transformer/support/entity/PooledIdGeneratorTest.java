@@ -0,0 +1,203 @@
+package org.transformer.support.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * PooledIdGenerator的插入批处理及并发唯一性(h2内存库).
+ * IDENTITY每条insert一次往返，pooled按hibernate.jdbc.batch_size批量插入.
+ * 吞吐量对比见{@link PooledIdGeneratorBenchmark}.
+ *
+ */
+public class PooledIdGeneratorTest {
+
+  /** 插入的行数. */
+  private static final int ROWS = 1000;
+
+  /** jdbc批量大小. */
+  private static final int BATCH_SIZE = 50;
+
+  private SessionFactory sessionFactory;
+
+  @Before
+  public void setUp() {
+    sessionFactory = buildSessionFactory("pooled_id");
+  }
+
+  @After
+  public void tearDown() {
+    sessionFactory.close();
+  }
+
+  @Test
+  public void pooledInsertsAreBatchedUnlikeIdentity() {
+    sessionFactory.getStatistics().clear();
+    insert(sessionFactory, IdentityRow.class, ROWS);
+    long identityStatements = sessionFactory.getStatistics().getPrepareStatementCount();
+
+    sessionFactory.getStatistics().clear();
+    insert(sessionFactory, PooledRow.class, ROWS);
+    long pooledStatements = sessionFactory.getStatistics().getPrepareStatementCount();
+
+    assertEquals(ROWS, countRows(PooledRow.class));
+    // IDENTITY每行一条语句，pooled每批一条语句加上领取主键块的语句
+    assertTrue("identity inserts should not be batched", identityStatements >= ROWS);
+    assertTrue("pooled inserts should be batched : " + pooledStatements,
+        pooledStatements < ROWS / 10);
+  }
+
+  @Test
+  public void concurrentGenerationYieldsUniqueIds() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<List<Long>>> futures = new ArrayList<Future<List<Long>>>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(executor.submit(new Callable<List<Long>>() {
+          @Override
+          public List<Long> call() throws Exception {
+            return insertAndGetIds(1000);
+          }
+        }));
+      }
+      Set<Long> ids = new HashSet<Long>();
+      for (Future<List<Long>> future : futures) {
+        ids.addAll(future.get());
+      }
+      assertEquals(8000, ids.size());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * 创建h2内存库上的SessionFactory，开启jdbc批处理和统计.
+   */
+  static SessionFactory buildSessionFactory(String dbName) {
+    Configuration configuration = new Configuration()
+        .addAnnotatedClass(IdentityRow.class)
+        .addAnnotatedClass(PooledRow.class)
+        .setProperty("hibernate.connection.driver_class", "org.h2.Driver")
+        .setProperty("hibernate.connection.url", "jdbc:h2:mem:" + dbName + ";DB_CLOSE_DELAY=-1")
+        .setProperty("hibernate.connection.username", "sa")
+        .setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+        .setProperty("hibernate.hbm2ddl.auto", "create-drop")
+        .setProperty("hibernate.jdbc.batch_size", String.valueOf(BATCH_SIZE))
+        .setProperty("hibernate.order_inserts", "true")
+        .setProperty("hibernate.generate_statistics", "true");
+    return configuration.buildSessionFactory(new StandardServiceRegistryBuilder()
+        .applySettings(configuration.getProperties()).build());
+  }
+
+  /**
+   * 插入rows行，每BATCH_SIZE行flush并clear.
+   *
+   * @return 耗时(纳秒)
+   */
+  static long insert(SessionFactory sessionFactory, Class<? extends BaseEntity> type,
+      int rows) {
+    long start = System.nanoTime();
+    Session session = sessionFactory.openSession();
+    Transaction transaction = session.beginTransaction();
+    try {
+      for (int i = 0; i < rows; i++) {
+        BaseEntity entity = type == IdentityRow.class ? new IdentityRow() : new PooledRow();
+        entity.setCreateBy("row-" + i);
+        session.save(entity);
+        if ((i + 1) % BATCH_SIZE == 0) {
+          session.flush();
+          session.clear();
+        }
+      }
+      transaction.commit();
+    } finally {
+      session.close();
+    }
+    return Math.max(1, System.nanoTime() - start);
+  }
+
+  private List<Long> insertAndGetIds(int rows) {
+    List<Long> ids = new ArrayList<Long>(rows);
+    Session session = sessionFactory.openSession();
+    Transaction transaction = session.beginTransaction();
+    try {
+      for (int i = 0; i < rows; i++) {
+        PooledRow row = new PooledRow();
+        session.save(row);
+        ids.add(row.getId());
+        if ((i + 1) % BATCH_SIZE == 0) {
+          session.flush();
+          session.clear();
+        }
+      }
+      transaction.commit();
+    } finally {
+      session.close();
+    }
+    return ids;
+  }
+
+  private long countRows(Class<?> type) {
+    Session session = sessionFactory.openSession();
+    try {
+      return (Long) session.createQuery("select count(x) from " + type.getSimpleName() + " x")
+          .uniqueResult();
+    } finally {
+      session.close();
+    }
+  }
+
+  @Entity(name = "IdentityRow")
+  @Table(name = "identity_row")
+  public static class IdentityRow extends BaseEntity {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Override
+    public Long getId() {
+      return id;
+    }
+
+    @Override
+    public void setId(Long id) {
+      this.id = id;
+    }
+  }
+
+  @Entity(name = "PooledRow")
+  @Table(name = "pooled_row")
+  public static class PooledRow extends BasePooledIdEntity {
+
+    private static final long serialVersionUID = 1L;
+  }
+
+}
@@ -3,14 +3,18 @@ package org.transformer.support.service;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.transformer.support.dao.jpa.datasource.annotation.ReadOnly;
+import org.transformer.support.dao.jpa.search.KeysetSlice;
 import org.transformer.support.dao.jpa.search.Searchable;
 import org.transformer.support.entity.AbstractEntity;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 抽象Service层基类 提供一些简便方法.
  * 泛型 ： M 表示实体类型；
+ * 查询方法标注了{@link ReadOnly}，配置读写分离数据源后路由到从库.
  * 
  * @param <M> 实体类型            
  */
@@ -21,6 +25,7 @@ public interface BaseService<M extends AbstractEntity<Long>> {
    * @param id 主键
    * @return 实体对象
    */
+  @ReadOnly
   public M findOne(Long id);
 
   /**
@@ -28,6 +33,7 @@ public interface BaseService<M extends AbstractEntity<Long>> {
    * @param id 主键
    * @return 实体对象
    */
+  @ReadOnly
   public M findOneAndEvict(Long id);
 
   /**
@@ -44,6 +50,15 @@ public interface BaseService<M extends AbstractEntity<Long>> {
    */
   public List<M> save(Iterable<M> ms);
 
+  /**
+   * 批量保存实体，每batchSize个实体flush并clear一次，用于大批量导入.
+   * 不收集保存后的实体，ms可以是流式读取的Iterable.
+   * @param ms 实体列表
+   * @param batchSize 每批实体数
+   * @return 保存的实体数
+   */
+  public long save(Iterable<M> ms, int batchSize);
+
   /**
    * 根据主键删除.
    * 
@@ -63,16 +78,19 @@ public interface BaseService<M extends AbstractEntity<Long>> {
   /**
    * 查询所有.
    */
+  @ReadOnly
   public List<M> findAll();
 
   /**
    * 查询所有，排序.
    */
+  @ReadOnly
   public List<M> findAll(Sort sort);
 
   /**
    * 根据条件查询所有，分页.
    */
+  @ReadOnly
   public Page<M> findAll(Pageable pageable);
 
   /**
@@ -82,8 +100,33 @@ public interface BaseService<M extends AbstractEntity<Long>> {
    *            the searchable
    * @return the page
    */
+  @ReadOnly
   public Page<M> findAll(Searchable searchable);
 
+  /**
+   * 根据条件查询投影 条件 + 分页 + 排序，只查询投影需要的属性，结果为只读的.
+   * 
+   * @param <P>
+   *            the generic type
+   * @param searchable
+   *            the searchable
+   * @param projection
+   *            投影类型
+   * @return the page
+   */
+  @ReadOnly
+  public <P> Page<P> findAll(Searchable searchable, Class<P> projection);
+
+  /**
+   * 根据条件键集(seek)分页查询，不统计总数.
+   * 
+   * @param searchable
+   *            the searchable
+   * @return the keyset slice
+   */
+  @ReadOnly
+  public KeysetSlice<M> findSlice(Searchable searchable);
+
   /**
    * 根据条件统计所有记录数.
    * 
@@ -91,6 +134,35 @@ public interface BaseService<M extends AbstractEntity<Long>> {
    *            the searchable
    * @return the long 记录数
    */
+  @ReadOnly
   public long count(Searchable searchable);
 
+  /**
+   * 异步通过ID查找实体，在独立的只读事务中执行，返回的实体为游离态.
+   * 
+   * @param id
+   *            主键
+   * @return 实体对象
+   */
+  public CompletableFuture<M> findOneAsync(Long id);
+
+  /**
+   * 异步根据条件查询，在独立的只读事务中执行，返回的实体为游离态(延迟加载的关联不可用).
+   * 多个异步查询可以并行执行，完成前不要修改searchable.
+   * 
+   * @param searchable
+   *            the searchable
+   * @return the page
+   */
+  public CompletableFuture<Page<M>> findAllAsync(Searchable searchable);
+
+  /**
+   * 异步根据条件统计记录数，在独立的只读事务中执行.
+   * 
+   * @param searchable
+   *            the searchable
+   * @return 记录数
+   */
+  public CompletableFuture<Long> countAsync(Searchable searchable);
+
 }
@@ -0,0 +1,36 @@
+package org.transformer.support.service.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 缓存service的findAll(Searchable)、count(Searchable)结果，键为查询条件的规范化键.
+ * 同一实体的save、delete提交后缓存失效；读写事务中的查询不使用缓存.
+ * 实体需要实现Serializable且没有延迟加载的关联，缓存的是结果的序列化副本，
+ * 命中和未命中时findAll(Searchable)返回的都是游离态的副本.
+ * 分页总数未统计时不为缓存执行count，调用方需要总数时统计并放入缓存.
+ *
+ */
+@Target({ ElementType.TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface EnableResultCache {
+
+  /**
+   * 过期时间(秒).
+   *
+   * @return the long
+   */
+  long ttl() default 60;
+
+  /**
+   * 最大结果数.
+   *
+   * @return the long
+   */
+  long maxEntries() default 1000;
+
+}
@@ -0,0 +1,44 @@
+package org.transformer.support.service.cache;
+
+/**
+ * BaseServiceImpl查询结果(findAll(Searchable)、count(Searchable))的缓存，可替换为其他实现(如分布式缓存).
+ * 键为{@link org.transformer.support.dao.jpa.search.util.SearchableKeyUtils#keyOf}生成的规范化键.
+ * 为避免失效前开始的查询在失效后写入旧结果，写入时需要带上读取前的版本，版本变化后的写入被忽略.
+ *
+ */
+public interface SearchResultCache {
+
+  /**
+   * 获取缓存的结果.
+   *
+   * @param key
+   *            the key
+   * @return 结果，不存在为null
+   */
+  Object get(String key);
+
+  /**
+   * 当前版本，每次失效后递增.
+   *
+   * @return the long
+   */
+  long version();
+
+  /**
+   * 写入结果，版本已变化时忽略.
+   *
+   * @param key
+   *            the key
+   * @param value
+   *            the value
+   * @param loadVersion
+   *            读取数据库前的版本
+   */
+  void put(String key, Object value, long loadVersion);
+
+  /**
+   * 使所有结果失效.
+   */
+  void invalidateAll();
+
+}
@@ -0,0 +1,119 @@
+package org.transformer.support.service.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 默认的查询结果缓存，基于guava Cache，有容量上限和过期时间.
+ * 每个实体一个缓存，同一实体的多个service共享，任一service的写操作提交后都会使其失效.
+ *
+ */
+public final class SearchResultCaches {
+
+  /** The Constant CACHES. */
+  private static final ConcurrentMap<String, GuavaSearchResultCache> CACHES =
+      new ConcurrentHashMap<String, GuavaSearchResultCache>();
+
+  /**
+   * Instantiates a new search result caches.
+   */
+  private SearchResultCaches() {
+  }
+
+  /**
+   * 获取实体的缓存，已存在时忽略ttl和maxEntries.
+   *
+   * @param entityName
+   *            实体名
+   * @param ttl
+   *            过期时间(秒)
+   * @param maxEntries
+   *            最大结果数
+   * @return the search result cache
+   */
+  public static SearchResultCache forEntity(String entityName, long ttl, long maxEntries) {
+    GuavaSearchResultCache cache = CACHES.get(entityName);
+    if (cache == null) {
+      cache = new GuavaSearchResultCache(ttl, maxEntries);
+      GuavaSearchResultCache existing = CACHES.putIfAbsent(entityName, cache);
+      if (existing != null) {
+        cache = existing;
+      }
+    }
+    return cache;
+  }
+
+  /**
+   * 所有实体缓存的统计，key为实体名.
+   *
+   * @return the map
+   */
+  public static Map<String, CacheStats> allStats() {
+    Map<String, CacheStats> stats = new TreeMap<String, CacheStats>();
+    for (Map.Entry<String, GuavaSearchResultCache> entry : CACHES.entrySet()) {
+      stats.put(entry.getKey(), entry.getValue().cache.stats());
+    }
+    return stats;
+  }
+
+  /**
+   * guava实现.
+   */
+  private static final class GuavaSearchResultCache implements SearchResultCache {
+
+    /** The cache. */
+    private final Cache<String, Object> cache;
+
+    /** The version. */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Instantiates a new guava search result cache.
+     *
+     * @param ttl
+     *            the ttl
+     * @param maxEntries
+     *            the max entries
+     */
+    GuavaSearchResultCache(long ttl, long maxEntries) {
+      this.cache = CacheBuilder.newBuilder().maximumSize(maxEntries)
+          .expireAfterWrite(ttl, TimeUnit.SECONDS).recordStats().build();
+    }
+
+    @Override
+    public Object get(String key) {
+      return cache.getIfPresent(key);
+    }
+
+    @Override
+    public long version() {
+      return version.get();
+    }
+
+    @Override
+    public void put(String key, Object value, long loadVersion) {
+      if (version.get() == loadVersion) {
+        cache.put(key, value);
+        // 写入期间失效的，丢弃写入的结果
+        if (version.get() != loadVersion) {
+          cache.invalidate(key);
+        }
+      }
+    }
+
+    @Override
+    public void invalidateAll() {
+      version.incrementAndGet();
+      cache.invalidateAll();
+    }
+  }
+
+}
@@ -1,19 +1,47 @@
 package org.transformer.support.service.impl;
 
+import com.google.common.base.Supplier;
+
+import org.apache.commons.lang3.SerializationException;
+import org.apache.commons.lang3.SerializationUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+import org.transformer.support.dao.jpa.datasource.DataSourceRoutingContext;
 import org.transformer.support.dao.jpa.repository.BaseDao;
+import org.transformer.support.dao.jpa.repository.support.AsyncQueryExecutor;
+import org.transformer.support.dao.jpa.repository.support.LazyAssociationDetector;
+import org.transformer.support.dao.jpa.search.KeysetSlice;
+import org.transformer.support.dao.jpa.search.LazyCountPage;
 import org.transformer.support.dao.jpa.search.Searchable;
+import org.transformer.support.dao.jpa.search.util.SearchableKeyUtils;
 import org.transformer.support.entity.AbstractEntity;
 import org.transformer.support.service.BaseService;
 import org.transformer.support.service.annotation.DaoToService;
+import org.transformer.support.service.annotation.EnableResultCache;
+import org.transformer.support.service.cache.SearchResultCache;
+import org.transformer.support.service.cache.SearchResultCaches;
 import org.transformer.util.Reflections;
 import org.transformer.util.SpringUtils;
 
+import java.io.Serializable;
+import java.lang.reflect.AccessibleObject;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 
 import javax.persistence.EntityManager;
 
@@ -33,6 +61,12 @@ public class BaseServiceImpl<M extends AbstractEntity<Long>, D extends BaseDao<M
 
   protected EntityManager em;
 
+  /** 异步查询使用的只读事务模板，第一次使用时创建. */
+  private volatile TransactionTemplate asyncTransactionTemplate;
+
+  /** findAll(Searchable)、count(Searchable)的结果缓存，未开启为null. */
+  private SearchResultCache resultCache;
+
   protected BaseServiceImpl() {
     if (this.getClass().isAnnotationPresent(DaoToService.class)) {
       DaoToService daoToService = this.getClass().getAnnotation(DaoToService.class);
@@ -42,17 +76,33 @@ public class BaseServiceImpl<M extends AbstractEntity<Long>, D extends BaseDao<M
       this.dao = SpringUtils.getBean(daoClass);
     }
     em = this.dao.getEntityManager();
+
+    EnableResultCache enableResultCache = AnnotationUtils.findAnnotation(getClass(),
+        EnableResultCache.class);
+    if (enableResultCache != null) {
+      Class<M> entityClass = Reflections.findParameterizedType(getClass(), 0);
+      if (entityClass != null) {
+        // 缓存的是序列化副本，延迟加载的关联在副本中是未初始化的代理
+        AccessibleObject lazyMember = LazyAssociationDetector.findLazyMember(entityClass);
+        Assert.isNull(lazyMember, "result cached entity must not have lazy associations : "
+            + lazyMember);
+      }
+      resultCache = SearchResultCaches.forEntity(
+          entityClass != null ? entityClass.getName() : getClass().getName(),
+          enableResultCache.ttl(), enableResultCache.maxEntries());
+    }
   }
 
   @Override
   public void delete(Long[] ids) {
     this.dao.delete(ids);
-
+    invalidateResultCacheAfterCommit();
   }
 
   @Override
   public void delete(Long id) {
     this.dao.delete(id);
+    invalidateResultCacheAfterCommit();
   }
 
   @Override
@@ -72,12 +122,72 @@ public class BaseServiceImpl<M extends AbstractEntity<Long>, D extends BaseDao<M
 
   @Override
   public Page<M> findAll(Searchable searchable) {
-    return this.dao.findAll(searchable);
+    if (!isResultCacheable()) {
+      return this.dao.findAll(searchable);
+    }
+    final String key = "page:" + SearchableKeyUtils.keyOf(searchable);
+    Object cached = resultCache.get(key);
+    if (cached instanceof CachedPage) {
+      return ((CachedPage) cached).toPage(searchable);
+    }
+    final long version = resultCache.version();
+    Page<M> page = this.dao.findAll(searchable);
+    final byte[] content = CachedPage.serialize(page);
+    if (content == null) {
+      return page;
+    }
+    if (!(page instanceof LazyCountPage) || ((LazyCountPage<?>) page).isTotalResolved()) {
+      if (!CachedPage.isTotalCacheable(page)) {
+        return page;
+      }
+      CachedPage cachedPage = new CachedPage(content, page.getTotalElements());
+      resultCache.put(key, cachedPage, version);
+      return cachedPage.toPage(searchable);
+    }
+    // 总数未统计，不为缓存执行count：返回副本，调用方需要总数时统计并放入缓存
+    final LazyCountPage<M> lazyPage = (LazyCountPage<M>) page;
+    final SearchResultCache cache = resultCache;
+    return new LazyCountPage<M>(CachedPage.<M>copyOf(content), searchable.getPage(),
+        new Supplier<Long>() {
+          @Override
+          public Long get() {
+            long total = lazyPage.getTotalElements();
+            if (lazyPage.isTotalUnknown()) {
+              return null;
+            }
+            if (lazyPage.isTotalEstimated()) {
+              return lazyPage.getCountLimit() + 1;
+            }
+            cache.put(key, new CachedPage(content, total), version);
+            return total;
+          }
+        }, lazyPage.getCountLimit());
+  }
+
+  @Override
+  public <P> Page<P> findAll(Searchable searchable, Class<P> projection) {
+    return this.dao.findAll(searchable, projection);
+  }
+
+  @Override
+  public KeysetSlice<M> findSlice(Searchable searchable) {
+    return this.dao.findSlice(searchable);
   }
 
   @Override
   public long count(Searchable searchable) {
-    return this.dao.count(searchable);
+    if (!isResultCacheable()) {
+      return this.dao.count(searchable);
+    }
+    String key = "count:" + SearchableKeyUtils.keyOf(searchable);
+    Object cached = resultCache.get(key);
+    if (cached instanceof Long) {
+      return (Long) cached;
+    }
+    long version = resultCache.version();
+    long count = this.dao.count(searchable);
+    resultCache.put(key, count, version);
+    return count;
   }
 
   @Override
@@ -88,8 +198,8 @@ public class BaseServiceImpl<M extends AbstractEntity<Long>, D extends BaseDao<M
   @Override
   public M findOneAndEvict(Long id) {
     M entity = this.dao.findOne(id);
-    //从session中清除
-    if (entity != null) {
+    //从session中清除，近端缓存返回的实体已是游离态
+    if (entity != null && em.contains(entity)) {
       //HibernateUtils.getSession(em).evict(entity);
       em.detach(entity);
     }
@@ -98,12 +208,251 @@ public class BaseServiceImpl<M extends AbstractEntity<Long>, D extends BaseDao<M
 
   @Override
   public M save(M entity) {
-    return this.dao.save(entity);
+    M saved = this.dao.save(entity);
+    invalidateResultCacheAfterCommit();
+    return saved;
   }
 
   @Override
   public List<M> save(Iterable<M> ms) {
-    return this.dao.save(ms);
+    List<M> saved = this.dao.save(ms);
+    invalidateResultCacheAfterCommit();
+    return saved;
+  }
+
+  @Override
+  public long save(Iterable<M> ms, int batchSize) {
+    long saved = this.dao.saveAll(ms, batchSize);
+    invalidateResultCacheAfterCommit();
+    return saved;
+  }
+
+  @Override
+  public CompletableFuture<M> findOneAsync(final Long id) {
+    return async(new Callable<M>() {
+
+      @Override
+      public M call() throws Exception {
+        return dao.findOne(id);
+      }
+    });
+  }
+
+  @Override
+  public CompletableFuture<Page<M>> findAllAsync(final Searchable searchable) {
+    return async(new Callable<Page<M>>() {
+
+      @Override
+      public Page<M> call() throws Exception {
+        Page<M> page = dao.findAll(searchable);
+        // 在只读事务内执行延迟的count，不留到调用方线程
+        page.getTotalElements();
+        return page;
+      }
+    });
+  }
+
+  @Override
+  public CompletableFuture<Long> countAsync(final Searchable searchable) {
+    return async(new Callable<Long>() {
+
+      @Override
+      public Long call() throws Exception {
+        return dao.count(searchable);
+      }
+    });
+  }
+
+  /**
+   * 在{@link AsyncQueryExecutor}上异步执行查询，每个查询一个只读事务(独立的EntityManager)，
+   * 配置了读写分离数据源时路由到从库.
+   * 
+   * @param <T>
+   *            the generic type
+   * @param query
+   *            the query
+   * @return the completable future
+   */
+  protected <T> CompletableFuture<T> async(final Callable<T> query) {
+    final TransactionTemplate transactionTemplate = getAsyncTransactionTemplate();
+    return AsyncQueryExecutor.supply(new Callable<T>() {
+
+      @Override
+      public T call() throws Exception {
+        DataSourceRoutingContext.enterReadOnly();
+        try {
+          return transactionTemplate.execute(new TransactionCallback<T>() {
+
+            @Override
+            public T doInTransaction(TransactionStatus status) {
+              try {
+                return query.call();
+              } catch (RuntimeException exception) {
+                throw exception;
+              } catch (Exception exception) {
+                throw new IllegalStateException(exception);
+              }
+            }
+          });
+        } finally {
+          DataSourceRoutingContext.exitReadOnly();
+        }
+      }
+    });
+  }
+
+  /**
+   * 异步查询使用的事务管理器，有多个事务管理器时子类需要覆盖.
+   * 
+   * @return the transaction manager
+   */
+  protected PlatformTransactionManager getAsyncTransactionManager() {
+    return SpringUtils.getBean(PlatformTransactionManager.class);
+  }
+
+  /**
+   * Gets the async transaction template.
+   * 
+   * @return the async transaction template
+   */
+  private TransactionTemplate getAsyncTransactionTemplate() {
+    TransactionTemplate transactionTemplate = asyncTransactionTemplate;
+    if (transactionTemplate == null) {
+      transactionTemplate = new TransactionTemplate(getAsyncTransactionManager());
+      transactionTemplate.setReadOnly(true);
+      transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+      asyncTransactionTemplate = transactionTemplate;
+    }
+    return transactionTemplate;
+  }
+
+  /**
+   * 替换查询结果缓存，null为不缓存.
+   * 
+   * @param resultCache
+   *            the new result cache
+   */
+  public void setResultCache(SearchResultCache resultCache) {
+    this.resultCache = resultCache;
+  }
+
+  /**
+   * 是否使用结果缓存，读写事务中可能读到本事务未提交的修改，不使用.
+   * 
+   * @return true, if is result cacheable
+   */
+  private boolean isResultCacheable() {
+    return resultCache != null && !(TransactionSynchronizationManager.isActualTransactionActive()
+        && !TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+  }
+
+  /**
+   * 事务提交后使结果缓存失效，没有事务时立即失效.
+   * 子类中绕过save、delete的写操作(如dao.upsertAll)需要自己调用.
+   */
+  protected void invalidateResultCacheAfterCommit() {
+    final SearchResultCache cache = resultCache;
+    if (cache == null) {
+      return;
+    }
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      cache.invalidateAll();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronizationAdapter() {
+          @Override
+          public void afterCommit() {
+            cache.invalidateAll();
+          }
+        });
+  }
+
+  /**
+   * 缓存的分页结果，内容为序列化的副本，每次命中得到新的游离态实体.
+   * 只缓存总数确定的分页，估计或未知的总数不缓存.
+   */
+  private static final class CachedPage implements Serializable {
+
+    /** The Constant serialVersionUID. */
+    private static final long serialVersionUID = 1L;
+
+    /** 序列化的内容. */
+    private final byte[] content;
+
+    /** The total. */
+    private final long total;
+
+    /**
+     * Instantiates a new cached page.
+     * 
+     * @param content
+     *            the content
+     * @param total
+     *            the total
+     */
+    private CachedPage(byte[] content, long total) {
+      this.content = content;
+      this.total = total;
+    }
+
+    /**
+     * 序列化分页内容.
+     * 
+     * @param page
+     *            the page
+     * @return 内容不能序列化时返回null
+     */
+    static byte[] serialize(Page<?> page) {
+      try {
+        return SerializationUtils.serialize(new ArrayList<Object>(page.getContent()));
+      } catch (SerializationException exception) {
+        return null;
+      }
+    }
+
+    /**
+     * 已统计的总数是否可以缓存，估计值或未知的总数不缓存.
+     * 
+     * @param page
+     *            the page
+     * @return true, if is total cacheable
+     */
+    static boolean isTotalCacheable(Page<?> page) {
+      return !(page instanceof LazyCountPage) || !(((LazyCountPage<?>) page).isTotalEstimated()
+          || ((LazyCountPage<?>) page).isTotalUnknown());
+    }
+
+    /**
+     * 反序列化出内容的副本.
+     * 
+     * @param <M>
+     *            the generic type
+     * @param content
+     *            the content
+     * @return the list
+     */
+    @SuppressWarnings("unchecked")
+    static <M> List<M> copyOf(byte[] content) {
+      return (List<M>) SerializationUtils.deserialize(content);
+    }
+
+    /**
+     * 还原为分页结果.
+     * 
+     * @param <M>
+     *            the generic type
+     * @param searchable
+     *            the searchable
+     * @return the page
+     */
+    <M> Page<M> toPage(Searchable searchable) {
+      List<M> list = copyOf(content);
+      if (!searchable.hasPageable()) {
+        return new PageImpl<M>(list);
+      }
+      return new PageImpl<M>(list, searchable.getPage(), total);
+    }
   }
 
   /** 
@@ -1,6 +1,7 @@
 package org.transformer.support.filter;
 
 import org.springframework.web.filter.OncePerRequestFilter;
+import org.transformer.support.dao.jpa.datasource.DataSourceRoutingContext;
 import org.transformer.support.context.RequestContext;
 
 import java.io.IOException;
@@ -28,6 +29,8 @@ public class RequestContextFilter extends OncePerRequestFilter {
       if (rc != null) {
         rc.end();
       }
+      //请求结束，清除写后读主库的状态
+      DataSourceRoutingContext.clear();
     }
   }
 
@@ -13,6 +13,7 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.bind.support.WebDataBinderFactory;
 import org.springframework.web.context.request.NativeWebRequest;
 import org.springframework.web.method.support.ModelAndViewContainer;
+import org.transformer.support.dao.jpa.search.KeysetPageRequest;
 import org.transformer.support.dao.jpa.search.PageableDefaults;
 
 import java.lang.annotation.Annotation;
@@ -55,6 +56,10 @@ import java.util.Set;
  * public void test(@Qualifier("test") Pageable page1, @Qualifier("test") Pageable page2);
  * 错误的用法，如果有多个请使用@Qualifier指定前缀
  * public void fail(Pageable page1, Pageable page2);
+ * 4.1、键集(seek)分页请求参数格式如下，cursor代替pn，返回KeysetPageRequest：
+ * page.size=10  分页大小
+ * page.cursor=xxx    上一页返回的nextCursor
+ * 4.2、查询时使用BaseDao.findSlice(Searchable)
  * 
  */
 public class PageableMethodArgumentResolver extends BaseMethodArgumentResolver {
@@ -71,6 +76,9 @@ public class PageableMethodArgumentResolver extends BaseMethodArgumentResolver {
   /** The Constant DEFAULT_SORT_PREFIX. */
   private static final String DEFAULT_SORT_PREFIX = "sorter";
 
+  /** 键集分页追加的主键排序字段. */
+  private static final String KEYSET_ID_PROPERTY = "id";
+
   /** The fallback pagable. */
   private Pageable fallbackPagable = DEFAULT_PAGE_REQUEST;
 
@@ -162,8 +170,13 @@ public class PageableMethodArgumentResolver extends BaseMethodArgumentResolver {
           sort == null ? defaultPageRequest.getSort() : sort);
     }
 
-    int pn = getPn(pageableMap, defaultPageRequest);
     int pageSize = getPageSize(pageableMap, defaultPageRequest);
+    String[] cursor = pageableMap.get("cursor");
+    if (cursor != null && !StringUtils.isEmpty(cursor[0])) {
+      return new KeysetPageRequest(pageSize, getKeysetSort(sort), cursor[0]);
+    }
+
+    int pn = getPn(pageableMap, defaultPageRequest);
 
     return new PageRequest(pn - 1, pageSize, sort);
 
@@ -226,6 +239,28 @@ public class PageableMethodArgumentResolver extends BaseMethodArgumentResolver {
     return sort;
   }
 
+  /**
+   * 键集分页的排序，没有按主键排序时追加主键(方向与最后一个排序字段相同，与BaseDao.findSlice一致)，
+   * 请求中没有排序且没有默认排序时按主键升序.
+   * 
+   * @param sort
+   *            the sort
+   * @return the keyset sort
+   */
+  private static Sort getKeysetSort(Sort sort) {
+    Sort.Direction idDirection = Sort.Direction.ASC;
+    if (sort != null) {
+      for (Sort.Order order : sort) {
+        idDirection = order.getDirection();
+        if (KEYSET_ID_PROPERTY.equals(order.getProperty())) {
+          return sort;
+        }
+      }
+    }
+    Sort idSort = new Sort(idDirection, KEYSET_ID_PROPERTY);
+    return sort == null ? idSort : sort.and(idSort);
+  }
+
   /**
    * 防止sql注入，排序字符串只能包含字符 数字 下划线 点 ` ".
    * 